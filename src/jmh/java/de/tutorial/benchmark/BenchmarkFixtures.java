@@ -0,0 +1,80 @@
+package de.tutorial.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import de.tutorial.controller.CustomerController;
+import de.tutorial.controller.RestControllerExceptionHandler;
+import de.tutorial.model.Customer;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerService;
+
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static String name(final int index) {
+        return "customer" + index;
+    }
+
+    static Customer customer(final int index) {
+        return new Customer(name(index), "customer" + index + "@domain" + (index % 100) + ".com", 1 + index % 3);
+    }
+
+    /**
+     * @return the names of the customers that have been added, indexed like the customers
+     */
+    static String[] fill(final CustomerService service, final int size) throws Exception {
+        final String[] names = new String[size];
+        for (int index = 0; index < size; index++) {
+            final Customer customer = customer(index);
+            service.addCustomer(customer);
+            names[index] = customer.getName();
+        }
+        return names;
+    }
+
+    static CustomerService newService() {
+        return new CustomerService(new InMemoryCustomerRepository());
+    }
+
+    static void delete(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * @return an object mapper configured like the one of the running application
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+    }
+
+    static MockMvc mockMvc(final CustomerService service) {
+        return mockMvc(new CustomerController(service, objectMapper()));
+    }
+
+    /**
+     * @return a mock MVC with the message converters that serve the controller in the running application
+     */
+    static MockMvc mockMvc(final CustomerController controller) {
+        return MockMvcBuilders.standaloneSetup(controller)
+                              .setControllerAdvice(new RestControllerExceptionHandler())
+                              .setMessageConverters(new ByteArrayHttpMessageConverter(),
+                                                    new MappingJackson2HttpMessageConverter(objectMapper()))
+                              .build();
+    }
+}
@@ -0,0 +1,189 @@
+package de.tutorial.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import de.tutorial.Application;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Compares how the servlet and the reactive mode cope with many concurrent connections. Each mode is started
+ * in turn and a few fast clients measure {@code GET /customers/{name}}, first on their own and then while
+ * many slow clients keep a {@code POST /customers} open by never sending the rest of its body, like clients
+ * on a bad mobile network. Tomcat parks one of its worker threads per slow body; Netty parks none.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="1000 10 8"}; the arguments
+ * are the number of slow clients, the seconds per measurement and the number of fast clients. Measurements
+ * stay shorter than Tomcat's default connection timeout of 20 seconds, which would drop the slow clients.
+ */
+public final class ConnectionScalabilityLoadTest {
+    private static final int CUSTOMERS = 1000;
+    private static final int FAST_CLIENT_TIMEOUT_MILLIS = 1000;
+
+    private ConnectionScalabilityLoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int slowClients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int fastClients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        System.out.printf("%-9s %12s %10s %10s %10s %8s %8s%n",
+                          "mode", "slowClients", "requests/s", "p50 ms", "p99 ms", "errors", "threads");
+        for (final String mode : Arrays.asList("servlet", "reactive")) {
+            run(mode, slowClients, seconds, fastClients);
+        }
+    }
+
+    private static void run(final String mode, final int slowClients, final int seconds, final int fastClients)
+        throws Exception {
+
+        final SpringApplicationBuilder builder =
+            new SpringApplicationBuilder(Application.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=ERROR",
+                            "customer.limits.enabled=false", "spring.main.web-application-type=" + mode);
+        if (mode.equals("reactive")) {
+            builder.profiles("reactive");
+        }
+        try (ConfigurableApplicationContext context = builder.run()) {
+            final int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            BenchmarkFixtures.fill(context.getBean(CustomerService.class), CUSTOMERS);
+
+            print(mode, 0, measure(port, seconds, fastClients));
+            final List<Socket> sockets = new ArrayList<>(slowClients);
+            try {
+                for (int index = 0; index < slowClients; index++) {
+                    sockets.add(openSlowClient(port));
+                }
+                print(mode, slowClients, measure(port, seconds, fastClients));
+            } finally {
+                for (final Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    private static Result measure(final int port, final int seconds, final int fastClients) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(fastClients);
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            final List<Future<Result>> futures = new ArrayList<>();
+            for (int client = 0; client < fastClients; client++) {
+                futures.add(executor.submit(() -> fastClient(port, deadline)));
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds) / 2);
+            final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            final Result result = new Result(seconds, threads);
+            for (final Future<Result> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result fastClient(final int port, final long deadline) {
+        final Result result = new Result(0, 0);
+        final byte[] buffer = new byte[4096];
+        while (System.nanoTime() < deadline) {
+            final String name = BenchmarkFixtures.name(ThreadLocalRandom.current().nextInt(CUSTOMERS));
+            final long started = System.nanoTime();
+            try {
+                final HttpURLConnection connection =
+                    (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/customers/" + name).openConnection();
+                connection.setConnectTimeout(FAST_CLIENT_TIMEOUT_MILLIS);
+                connection.setReadTimeout(FAST_CLIENT_TIMEOUT_MILLIS);
+                try (InputStream body = connection.getInputStream()) {
+                    while (body.read(buffer) >= 0) {
+                        continue;
+                    }
+                }
+                result.latency(System.nanoTime() - started);
+            } catch (final IOException exception) {
+                result.errors++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Announces a body of a customer but only sends its first byte.
+     */
+    private static Socket openSlowClient(final int port) throws IOException {
+        final Socket socket = new Socket("127.0.0.1", port);
+        final String request = "POST /customers HTTP/1.1\r\n"
+                               + "Host: 127.0.0.1:" + port + "\r\n"
+                               + "Content-Type: application/json\r\n"
+                               + "Content-Length: 64\r\n"
+                               + "\r\n"
+                               + "{";
+        final OutputStream output = socket.getOutputStream();
+        output.write(request.getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+        return socket;
+    }
+
+    private static void print(final String mode, final int slowClients, final Result result) {
+        System.out.printf("%-9s %12d %10.0f %10.2f %10.2f %8d %8d%n", mode, slowClients, result.throughput(),
+                          result.percentile(0.5), result.percentile(0.99), result.errors, result.threads);
+    }
+
+    private static final class Result {
+        private final int seconds;
+        private final int threads;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        private Result(final int seconds, final int threads) {
+            this.seconds = seconds;
+            this.threads = threads;
+        }
+
+        private void latency(final long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        private void add(final Result other) {
+            for (int index = 0; index < other.count; index++) {
+                latency(other.latencies[index]);
+            }
+            errors += other.errors;
+        }
+
+        private double throughput() {
+            return (double) count / seconds;
+        }
+
+        private double percentile(final double percentile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            final long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.round(percentile * count))] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.tutorial.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.model.Customer;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Multi-threaded variants of {@link CustomerServiceBenchmark}: a read-mostly mix of lookups and writes, and
+ * writers on all available cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ContendedCustomerServiceBenchmark {
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    CustomerService service;
+    String[] names;
+
+    @Setup
+    public void setUp() throws Exception {
+        service = BenchmarkFixtures.newService();
+        names = BenchmarkFixtures.fill(service, size);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Optional<Customer> mixed_getCustomer() {
+        return service.getCustomer(names[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixed_addAndDeleteCustomer(final CustomerServiceBenchmark.WriterState writer) throws Exception {
+        service.addCustomer(writer.customer);
+        service.deleteCustomer(writer.customer.getName());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addAndDeleteCustomer(final CustomerServiceBenchmark.WriterState writer) throws Exception {
+        service.addCustomer(writer.customer);
+        service.deleteCustomer(writer.customer.getName());
+    }
+}
@@ -0,0 +1,90 @@
+package de.tutorial.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import de.tutorial.service.CustomerService;
+
+/**
+ * Handles complete requests through the {@link de.tutorial.controller.CustomerController}, including
+ * argument resolution, exception handling and JSON serialization, but without a servlet container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerControllerBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    MockMvc mockMvc;
+    String[] names;
+    byte[] newCustomerJson;
+    String customersETag;
+
+    @Setup
+    public void setUp() throws Exception {
+        final CustomerService service = BenchmarkFixtures.newService();
+        names = BenchmarkFixtures.fill(service, size);
+        mockMvc = BenchmarkFixtures.mockMvc(service);
+        newCustomerJson = BenchmarkFixtures.objectMapper().writeValueAsBytes(BenchmarkFixtures.customer(size));
+        customersETag = mockMvc.perform(get("/customers").param("limit", "100")).andReturn()
+                               .getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @Benchmark
+    public MvcResult getCustomer() throws Exception {
+        final String name = names[ThreadLocalRandom.current().nextInt(size)];
+        return mockMvc.perform(get("/customers/{name}", name).accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getCustomer_notFound() throws Exception {
+        return mockMvc.perform(get("/customers/{name}", "missing").accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getCustomersPage() throws Exception {
+        return mockMvc.perform(get("/customers").param("limit", "100").accept(MediaType.APPLICATION_JSON))
+                      .andReturn();
+    }
+
+    /**
+     * A polling client whose copy of the page is still current.
+     */
+    @Benchmark
+    public MvcResult getCustomersPage_notModified() throws Exception {
+        return mockMvc.perform(get("/customers").param("limit", "100").accept(MediaType.APPLICATION_JSON)
+                                                .header(HttpHeaders.IF_NONE_MATCH, customersETag))
+                      .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult postAndDeleteCustomer() throws Exception {
+        mockMvc.perform(post("/customers").content(newCustomerJson).contentType(MediaType.APPLICATION_JSON));
+        return mockMvc.perform(delete("/customers/{name}", BenchmarkFixtures.name(size))).andReturn();
+    }
+}
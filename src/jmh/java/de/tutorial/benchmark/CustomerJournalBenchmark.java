@@ -0,0 +1,124 @@
+package de.tutorial.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.persistence.CustomerJournal;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Measures the cold recovery time from a snapshot plus a log tail of 10% of the customers, and the add
+ * throughput of concurrent writers that wait for durability.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CustomerJournalBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    int size;
+
+    Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-journal-benchmark");
+        final InMemoryCustomerRepository repository = new InMemoryCustomerRepository();
+        try (CustomerJournal journal = CustomerJournal.open(repository, directory, Duration.ZERO)) {
+            final int snapshotted = size - size / 10;
+            for (int index = 0; index < size; index++) {
+                repository.addIfAbsent(BenchmarkFixtures.customer(index));
+                if (index == snapshotted) {
+                    journal.snapshot();
+                }
+            }
+            journal.awaitDurable();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixtures.delete(directory);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public InMemoryCustomerRepository recover() throws IOException {
+        final InMemoryCustomerRepository repository = new InMemoryCustomerRepository();
+        CustomerJournal.open(repository, directory, Duration.ZERO).close();
+        return repository;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(32)
+    public void addDurably(final WriterState writer) throws Exception {
+        writer.service.addCustomer(BenchmarkFixtures.customer(writer.offset + writer.next++));
+    }
+
+    /**
+     * Writers share one journal in a fresh directory per iteration, so the recovery data stays untouched.
+     */
+    @State(Scope.Benchmark)
+    public static class JournalState {
+        final AtomicInteger writers = new AtomicInteger();
+        Path directory;
+        CustomerJournal journal;
+        CustomerService service;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            writers.set(0);
+            directory = Files.createTempDirectory("customer-journal-writes");
+            final InMemoryCustomerRepository repository = new InMemoryCustomerRepository();
+            journal = CustomerJournal.open(repository, directory, Duration.ZERO);
+            service = new CustomerService(repository, Optional.of(journal));
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            journal.close();
+            BenchmarkFixtures.delete(directory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        CustomerService service;
+        int offset;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(final JournalState journal) {
+            service = journal.service;
+            offset = journal.writers.getAndIncrement() * 10_000_000;
+            next = 0;
+        }
+    }
+}
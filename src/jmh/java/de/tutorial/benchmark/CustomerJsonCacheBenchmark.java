@@ -0,0 +1,61 @@
+package de.tutorial.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import de.tutorial.controller.CustomerController;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Reads customers and the list of all customers from the controller with and without the JSON cache.
+ * Every customer fits into the cache, so the cached variant never serializes after the first round. The
+ * controller is called directly because the mock response of MockMvc copies bodies byte by byte, which
+ * would hide the difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerJsonCacheBenchmark {
+
+    @Param({"10000"})
+    int size;
+
+    @Param({"0", "33554432"})
+    long cacheBytes;
+
+    CustomerController controller;
+    String[] names;
+
+    @Setup
+    public void setUp() throws Exception {
+        final CustomerService service = BenchmarkFixtures.newService();
+        names = BenchmarkFixtures.fill(service, size);
+        controller = new CustomerController(service, BenchmarkFixtures.objectMapper(), cacheBytes, cacheBytes);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> getCustomer() throws Exception {
+        return controller.getCustomer(names[ThreadLocalRandom.current().nextInt(size)], null, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> getCustomers() {
+        return controller.getCustomers(null, 0, null, null, null, null);
+    }
+}
@@ -0,0 +1,90 @@
+package de.tutorial.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.service.CustomerService;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CustomerServiceBenchmark {
+    static final CustomerFilter CATEGORY_FILTER = CustomerFilter.of(1, null);
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    CustomerService service;
+    String[] names;
+
+    @Setup
+    public void setUp() throws Exception {
+        service = BenchmarkFixtures.newService();
+        names = BenchmarkFixtures.fill(service, size);
+    }
+
+    @Benchmark
+    public Optional<Customer> getCustomer() {
+        return service.getCustomer(names[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public Optional<Customer> getCustomer_missing() {
+        return service.getCustomer("missing");
+    }
+
+    @Benchmark
+    public void addAndDeleteCustomer(final WriterState writer) throws Exception {
+        service.addCustomer(writer.customer);
+        service.deleteCustomer(writer.customer.getName());
+    }
+
+    @Benchmark
+    public CustomerPage getCustomersPage() {
+        return service.getCustomers(CustomerFilter.NONE, ThreadLocalRandom.current().nextInt(size), 100);
+    }
+
+    @Benchmark
+    public CustomerPage getCustomersPageByCategory() {
+        return service.getCustomers(CATEGORY_FILTER, ThreadLocalRandom.current().nextInt(size), 100);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Customer> getCustomers() {
+        return service.getCustomers();
+    }
+
+    /**
+     * Every thread adds and deletes its own customer, so the store size stays constant.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        Customer customer;
+
+        @Setup
+        public void setUp() {
+            customer = new Customer("writer-" + Thread.currentThread().getId(), "writer@domain.com", 1);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.tutorial.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import de.tutorial.model.Customer;
+import de.tutorial.repository.CustomerRepository;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.repository.OffHeapCustomerRepository;
+
+/**
+ * Reports the bytes per customer of the plain {@code ArrayList<Customer>} the service started out with, of the
+ * sharded {@link InMemoryCustomerRepository} and of the {@link OffHeapCustomerRepository}, split into heap
+ * and direct buffer memory. Each layout is filled on its own and measured as the difference of the used
+ * memory after a full garbage collection before and after filling it.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec@memory-report -Dmemory.args="1000000"}; the argument
+ * is the number of customers. The heap has to hold the largest layout; tens of millions of customers need a
+ * larger heap than the default of {@code -Dmemory.jvm.args="-Xmx4g"}.
+ */
+public final class CustomerStoreMemoryReport {
+    // keeps the measured store reachable
+    private static volatile Object retained;
+
+    private CustomerStoreMemoryReport() {
+    }
+
+    public static void main(final String[] args) {
+        final int customers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.printf("%-20s %12s %12s %12s %14s%n",
+                          "layout", "customers", "heap MB", "direct MB", "bytes/customer");
+        report("ArrayList<Customer>", customers, () -> {
+            final List<Customer> list = new ArrayList<>();
+            for (int index = 0; index < customers; index++) {
+                list.add(BenchmarkFixtures.customer(index));
+            }
+            return list;
+        });
+        report("in-memory", customers, () -> fill(new InMemoryCustomerRepository(), customers));
+        report("off-heap", customers, () -> fill(new OffHeapCustomerRepository(), customers));
+    }
+
+    private static CustomerRepository fill(final CustomerRepository repository, final int customers) {
+        for (int index = 0; index < customers; index++) {
+            repository.addIfAbsent(BenchmarkFixtures.customer(index));
+        }
+        return repository;
+    }
+
+    private static void report(final String layout, final int customers, final Supplier<Object> store) {
+        final long heapBefore = usedHeap();
+        final long directBefore = usedDirect();
+        retained = store.get();
+        final long heap = usedHeap() - heapBefore;
+        final long direct = usedDirect() - directBefore;
+        retained = null;
+        System.out.printf("%-20s %12d %12.1f %12.1f %14.1f%n", layout, customers, heap / 1048576.0,
+                          direct / 1048576.0, (double) (heap + direct) / customers);
+    }
+
+    private static long usedHeap() {
+        for (int run = 0; run < 3; run++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        long used = 0;
+        for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+}
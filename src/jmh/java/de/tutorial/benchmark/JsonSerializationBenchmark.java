@@ -0,0 +1,72 @@
+package de.tutorial.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.ErrorResponse;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    ObjectWriter writer;
+    ObjectReader customerReader;
+    Customer customer;
+    List<Customer> customers;
+    ErrorResponse errorResponse;
+    byte[] customerJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        final ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        writer = objectMapper.writer();
+        customerReader = objectMapper.readerFor(Customer.class);
+        customer = BenchmarkFixtures.customer(1);
+        customers = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            customers.add(BenchmarkFixtures.customer(index));
+        }
+        errorResponse = new ErrorResponse("A customer with name customer1 does not exist",
+                                          "Consider calling GET /customers to receive a list of all available customers");
+        customerJson = writer.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public byte[] writeCustomer() throws Exception {
+        return writer.writeValueAsBytes(customer);
+    }
+
+    @Benchmark
+    public byte[] writeCustomerList() throws Exception {
+        return writer.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public byte[] writeErrorResponse() throws Exception {
+        return writer.writeValueAsBytes(errorResponse);
+    }
+
+    @Benchmark
+    public Customer readCustomer() throws Exception {
+        return customerReader.readValue(customerJson);
+    }
+}
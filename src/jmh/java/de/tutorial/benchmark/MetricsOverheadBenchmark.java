@@ -0,0 +1,97 @@
+package de.tutorial.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.model.Customer;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Compares instrumented operations against the same operations without metrics. The Prometheus registry is
+ * configured like the application, with p50, p99 and p999 for the request timers only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"none", "prometheus"})
+    String metrics;
+
+    CustomerService service;
+    Timer requestTimer;
+    Customer customer;
+
+    @Setup
+    public void setUp() throws Exception {
+        final MeterRegistry registry = "none".equals(metrics) ? new CompositeMeterRegistry() : prometheusRegistry();
+        final InMemoryCustomerRepository repository = new InMemoryCustomerRepository();
+        repository.bindTo(registry);
+        service = new CustomerService(repository, Optional.empty(), registry);
+        BenchmarkFixtures.fill(service, 10_000);
+        requestTimer = Timer.builder("http.server.requests").tag("uri", "/customers/{name}").register(registry);
+        customer = BenchmarkFixtures.customer(10_000);
+    }
+
+    @Benchmark
+    public void addAndDeleteCustomer() throws Exception {
+        service.addCustomer(customer);
+        service.deleteCustomer(customer.getName());
+    }
+
+    /**
+     * The cost the metrics filter adds to every request on top of resolving its tags.
+     */
+    @Benchmark
+    public void recordRequest() {
+        requestTimer.record(1_234_567, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordRequest_contended() {
+        requestTimer.record(1_234_567, TimeUnit.NANOSECONDS);
+    }
+
+    private static MeterRegistry prometheusRegistry() {
+        final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(final Meter.Id id, final DistributionStatisticConfig config) {
+                if (id.getName().equals("http.server.requests")) {
+                    return DistributionStatisticConfig.builder()
+                                                      .percentiles(0.5, 0.99, 0.999)
+                                                      .build()
+                                                      .merge(config);
+                }
+                return config;
+            }
+        });
+        return registry;
+    }
+}
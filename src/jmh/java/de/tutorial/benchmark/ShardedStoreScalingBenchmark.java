@@ -0,0 +1,155 @@
+package de.tutorial.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tutorial.model.Customer;
+import de.tutorial.persistence.CustomerJournal;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerChangeFeed;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Add and delete throughput of the store from 1 to 32 writer threads, with a single shard, which is as good
+ * as one lock for all writers, and with the maximum number of shards. Each thread cycles through customers
+ * of its own, so the threads only contend where their customers share a shard. The score is the throughput
+ * of all threads together, so it grows with the threads as long as they have cores of their own.
+ * <p>
+ * With {@code listeners=production} the writes go through a {@link CustomerService} with the listeners of the
+ * running application, which are called while the shard is locked: the journal, the change feed and the name
+ * index. The writers do not wait for the changes to become durable, so the score shows how much the journal
+ * append, which all shards share, serializes them, and not the time of the sync:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=ShardedStoreScaling
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShardedStoreScalingBenchmark {
+    private static final int CUSTOMERS_PER_THREAD = 1024;
+
+    @Param({"1", "64"})
+    int shards;
+
+    @Param({"none", "production"})
+    String listeners;
+
+    InMemoryCustomerRepository repository;
+    Path journalDirectory;
+    CustomerJournal journal;
+    CustomerService service;
+    final AtomicInteger threads = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        repository = new InMemoryCustomerRepository(shards);
+        if (listeners.equals("production")) {
+            journalDirectory = Files.createTempDirectory("sharded-store-scaling");
+            journal = CustomerJournal.open(repository, journalDirectory, Duration.ZERO);
+            service = new CustomerService(repository, Optional.of(journal));
+            new CustomerChangeFeed(service);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+            BenchmarkFixtures.delete(journalDirectory);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addAndDelete_01(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void addAndDelete_02(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addAndDelete_04(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void addAndDelete_08(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void addAndDelete_16(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void addAndDelete_32(final WriterState writer) {
+        addAndDelete(writer);
+    }
+
+    private void addAndDelete(final WriterState writer) {
+        final Customer customer = writer.next();
+        if (service == null) {
+            repository.addIfAbsent(customer);
+            repository.remove(customer.getName());
+        } else {
+            service.addCustomerAsync(customer);
+            writer.durable = service.deleteCustomerAsync(customer.getName(), null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        Customer[] customers;
+        int next;
+        // the latest pending deletion, kept so the benchmark cannot drop the futures
+        CompletableFuture<Void> durable;
+
+        @Setup
+        public void setUp(final ShardedStoreScalingBenchmark benchmark) {
+            final int thread = benchmark.threads.getAndIncrement();
+            customers = new Customer[CUSTOMERS_PER_THREAD];
+            for (int index = 0; index < customers.length; index++) {
+                customers[index] = BenchmarkFixtures.customer(thread * CUSTOMERS_PER_THREAD + index);
+            }
+        }
+
+        Customer next() {
+            final Customer customer = customers[next];
+            next = (next + 1) % customers.length;
+            return customer;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.tutorial.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a new instance takes until it serves {@code GET /customers} and how much memory it
+ * holds by then. Each mode is started in a fresh JVM: the {@code standard} {@code Application} with
+ * component scanning and the full auto-configuration, the {@code functional} {@code FunctionalApplication}
+ * and, once {@code mvn -Pcds package} has dumped the archive, the functional one with class-data sharing.
+ * The resident set size is read from {@code /proc}, so it is only reported on Linux.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec@startup -Dstartup.args="10"}; the arguments are
+ * the number of starts per mode and the file the results are written to as JSON.
+ */
+public final class StartupBenchmark {
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final Path CDS_DIRECTORY = Paths.get("target", "cds");
+    private static final Path CDS_ARCHIVE = CDS_DIRECTORY.resolve("app.jsa");
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final Path resultFile = Paths.get(args.length > 1 ? args[1] : "target/startup-result.json");
+
+        final String classpath = Files.exists(CDS_ARCHIVE) ? cdsClasspath() : System.getProperty("java.class.path");
+        final List<Mode> modes = new ArrayList<>(Arrays.asList(
+            new Mode("standard", "de.tutorial.Application"),
+            new Mode("functional", "de.tutorial.FunctionalApplication")));
+        if (Files.exists(CDS_ARCHIVE)) {
+            modes.add(new Mode("functional-cds", "de.tutorial.FunctionalApplication",
+                               "-Xshare:on", "-XX:SharedArchiveFile=" + CDS_ARCHIVE));
+        }
+
+        System.out.printf("%-15s %6s %12s %12s %12s %12s%n",
+                          "mode", "runs", "p50 ms", "min ms", "rss MiB", "peak MiB");
+        final StringBuilder json = new StringBuilder("[");
+        for (final Mode mode : modes) {
+            final Result result = new Result(runs);
+            for (int run = 0; run < runs; run++) {
+                start(mode, classpath, result);
+            }
+            System.out.printf("%-15s %6d %12.0f %12.0f %12.1f %12.1f%n", mode.name, runs, result.median(result.millis),
+                              result.min(result.millis), result.median(result.rss) / 1024,
+                              result.median(result.peak) / 1024);
+            json.append(json.length() > 1 ? "," : "")
+                .append(String.format("{\"mode\":\"%s\",\"runs\":%d,\"startupMillis\":%.1f,\"minStartupMillis\":%.1f,"
+                                      + "\"rssKiB\":%.0f,\"peakRssKiB\":%.0f}",
+                                      mode.name, runs, result.median(result.millis), result.min(result.millis),
+                                      result.median(result.rss), result.median(result.peak)));
+        }
+        Files.write(resultFile, json.append(']').toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void start(final Mode mode, final String classpath, final Result result) throws Exception {
+        final int port = freePort();
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmArgs);
+        command.addAll(Arrays.asList("-classpath", classpath, mode.mainClass, "--server.port=" + port,
+                                     "--spring.main.banner-mode=off", "--logging.level.root=WARN"));
+
+        final long started = System.nanoTime();
+        final Process process = new ProcessBuilder(command).inheritIO().start();
+        try {
+            while (!serves(port)) {
+                if (!process.isAlive() || System.nanoTime() - started > TIMEOUT_NANOS) {
+                    throw new IllegalStateException(mode.name + " did not start");
+                }
+                Thread.sleep(5);
+            }
+            result.millis.add((System.nanoTime() - started) / 1_000_000.0);
+            final long pid = pid(process);
+            result.rss.add(status(pid, "VmRSS"));
+            result.peak.add(status(pid, "VmHWM"));
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static boolean serves(final int port) {
+        try {
+            final HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/customers").openConnection();
+            try (InputStream body = connection.getInputStream()) {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (final IOException exception) {
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Uses {@code Process.pid()} on Java 9 and later, and the field of the Unix process on Java 8.
+     */
+    private static long pid(final Process process) throws ReflectiveOperationException {
+        try {
+            final Method pid = Process.class.getMethod("pid");
+            return (Long) pid.invoke(process);
+        } catch (final NoSuchMethodException exception) {
+            final Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getInt(process);
+        }
+    }
+
+    /**
+     * Reads a memory line of {@code /proc/<pid>/status} in KiB, or {@code NaN} where there is none.
+     */
+    private static double status(final long pid, final String key) throws IOException {
+        final Path status = Paths.get("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return Double.NaN;
+        }
+        for (final String line : Files.readAllLines(status, StandardCharsets.US_ASCII)) {
+            if (line.startsWith(key + ":")) {
+                return Long.parseLong(line.substring(key.length() + 1).replace("kB", "").trim());
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * The archive only maps classes loaded from the jars it was dumped with, in the same order.
+     */
+    private static String cdsClasspath() throws IOException {
+        final File[] jars = CDS_DIRECTORY.toFile().listFiles((directory, name) -> name.endsWith(".jar"));
+        if (jars == null || jars.length != 1) {
+            throw new IllegalStateException("Expected the application jar in " + CDS_DIRECTORY);
+        }
+        final String dependencies =
+            new String(Files.readAllBytes(CDS_DIRECTORY.resolve("classpath.txt")), StandardCharsets.UTF_8).trim();
+        return jars[0].getPath() + File.pathSeparator + dependencies;
+    }
+
+    private static final class Mode {
+        private final String name;
+        private final String mainClass;
+        private final List<String> jvmArgs;
+
+        private Mode(final String name, final String mainClass, final String... jvmArgs) {
+            this.name = name;
+            this.mainClass = mainClass;
+            this.jvmArgs = Arrays.asList(jvmArgs);
+        }
+    }
+
+    private static final class Result {
+        private final List<Double> millis;
+        private final List<Double> rss;
+        private final List<Double> peak;
+
+        private Result(final int runs) {
+            this.millis = new ArrayList<>(runs);
+            this.rss = new ArrayList<>(runs);
+            this.peak = new ArrayList<>(runs);
+        }
+
+        private double median(final List<Double> values) {
+            final double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            return sorted.length == 0 ? Double.NaN : sorted[sorted.length / 2];
+        }
+
+        private double min(final List<Double> values) {
+            return values.stream().mapToDouble(Double::doubleValue).min().orElse(Double.NaN);
+        }
+    }
+}
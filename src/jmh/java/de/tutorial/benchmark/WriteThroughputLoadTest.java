@@ -0,0 +1,178 @@
+package de.tutorial.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import de.tutorial.Application;
+
+/**
+ * Compares how the servlet mode handles many concurrent writers with persistence enabled. Each client adds a
+ * customer and deletes it again in a loop, so every request waits for the write-ahead log to force its change
+ * to disk:
+ * <ul>
+ * <li>{@code blocking}: each request applies its change and waits for durability on its Tomcat worker thread
+ * <li>{@code batched}: a single writer applies the changes in batches while the worker threads wait
+ * <li>{@code async}: the single writer as before, but the worker threads are released while the requests
+ * wait, so more requests are in flight than Tomcat has threads
+ * </ul>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec@write-load-test -Dwrite.load.args="800 10 200"};
+ * the arguments are the number of clients, the seconds per measurement and Tomcat's maximum number of
+ * worker threads.
+ */
+public final class WriteThroughputLoadTest {
+    private static final int WRITE_BATCH_SIZE = 256;
+    private static final int CLIENT_TIMEOUT_MILLIS = 10_000;
+
+    private WriteThroughputLoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int clients = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int workerThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.printf("%-9s %8s %10s %10s %10s %8s%n", "mode", "clients", "writes/s", "p50 ms", "p99 ms",
+                          "errors");
+        for (final String mode : Arrays.asList("blocking", "batched", "async")) {
+            run(mode, clients, seconds, workerThreads);
+        }
+    }
+
+    private static void run(final String mode, final int clients, final int seconds, final int workerThreads)
+        throws Exception {
+
+        final Path directory = Files.createTempDirectory("customers-");
+        final SpringApplicationBuilder builder =
+            new SpringApplicationBuilder(Application.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=ERROR",
+                            "server.tomcat.max-threads=" + workerThreads, "customer.limits.enabled=false",
+                            "customer.persistence.enabled=true", "customer.persistence.directory=" + directory,
+                            "customer.writes.batch-size=" + (mode.equals("blocking") ? 0 : WRITE_BATCH_SIZE),
+                            "customer.writes.async=" + mode.equals("async"));
+        try (ConfigurableApplicationContext context = builder.run()) {
+            final int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            final Result result = measure(port, clients, seconds);
+            System.out.printf("%-9s %8d %10.0f %10.2f %10.2f %8d%n", mode, clients, result.throughput(),
+                              result.percentile(0.5), result.percentile(0.99), result.errors);
+        } finally {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static Result measure(final int port, final int clients, final int seconds) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            final List<Future<Result>> futures = new ArrayList<>(clients);
+            for (int client = 0; client < clients; client++) {
+                final String name = "client" + client;
+                futures.add(executor.submit(() -> client(port, name, deadline)));
+            }
+            final Result result = new Result(seconds);
+            for (final Future<Result> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result client(final int port, final String name, final long deadline) {
+        final Result result = new Result(0);
+        final byte[] customer = ("{\"name\":\"" + name + "\",\"mailAddress\":\"" + name + "@mail.com\",\"category\":1}")
+            .getBytes(StandardCharsets.UTF_8);
+        while (System.nanoTime() < deadline) {
+            write(result, port, "POST", "/customers", customer, 201);
+            write(result, port, "DELETE", "/customers/" + name, null, 200);
+        }
+        return result;
+    }
+
+    private static void write(final Result result, final int port, final String method, final String path,
+                              final byte[] body, final int expectedStatus) {
+        final long started = System.nanoTime();
+        try {
+            final HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(CLIENT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(CLIENT_TIMEOUT_MILLIS);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream output = connection.getOutputStream()) {
+                    output.write(body);
+                }
+            }
+            final int status = connection.getResponseCode();
+            try (InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                while (response != null && response.read() >= 0) {
+                    continue;
+                }
+            }
+            if (status == expectedStatus) {
+                result.latency(System.nanoTime() - started);
+            } else {
+                result.errors++;
+            }
+        } catch (final IOException exception) {
+            result.errors++;
+        }
+    }
+
+    private static final class Result {
+        private final int seconds;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        private Result(final int seconds) {
+            this.seconds = seconds;
+        }
+
+        private void latency(final long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        private void add(final Result other) {
+            for (int index = 0; index < other.count; index++) {
+                latency(other.latencies[index]);
+            }
+            errors += other.errors;
+        }
+
+        private double throughput() {
+            return (double) count / seconds;
+        }
+
+        private double percentile(final double percentile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            final long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.round(percentile * count))] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.model.Customer;
+import de.tutorial.model.ErrorResponse;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Compares the 404 and 409 paths from the service call to the response body with the previous approach of
+ * a stack-capturing exception, a formatted message and a serialized {@link ErrorResponse}. Lives in the
+ * controller package to call the exception handler directly; run it with {@code -prof gc} to see the
+ * allocation per operation:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=ErrorPath -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    CustomerService service;
+    RestControllerExceptionHandler handler;
+    ObjectMapper objectMapper;
+    Customer existing;
+    MockHttpServletRequest request;
+    DiscardingResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        service = new CustomerService(new InMemoryCustomerRepository());
+        handler = new RestControllerExceptionHandler();
+        objectMapper = new ObjectMapper();
+        existing = new Customer("customerA", "customerA@mail.com", 1);
+        service.addCustomer(existing);
+        request = new MockHttpServletRequest();
+        response = new DiscardingResponse();
+    }
+
+    @Benchmark
+    public DiscardingResponse notFound() throws Exception {
+        try {
+            service.deleteCustomer("missing");
+            throw new IllegalStateException("missing customer has been deleted");
+        } catch (final CustomerNotFoundException exception) {
+            handler.handleCustomerNotFound(exception, request, response);
+            return response;
+        }
+    }
+
+    @Benchmark
+    public DiscardingResponse alreadyExists() throws Exception {
+        try {
+            service.addCustomer(existing);
+            throw new IllegalStateException("existing customer has been added");
+        } catch (final CustomerAlreadyExistsException exception) {
+            handler.handleCustomerAlreadyExists(exception, request, response);
+            return response;
+        }
+    }
+
+    @Benchmark
+    public DiscardingResponse notFound_previous() throws Exception {
+        try {
+            if (!service.getCustomer("missing").isPresent()) {
+                throw new StackCapturingException(
+                    String.format("A customer with name %s does not exist", "missing"));
+            }
+            throw new IllegalStateException("missing customer has been found");
+        } catch (final StackCapturingException exception) {
+            final ErrorResponse body =
+                new ErrorResponse(exception.getMessage(), RestControllerExceptionHandler.NOT_FOUND_HINT);
+            final ResponseEntity<ErrorResponse> entity = ResponseEntity.status(HttpStatus.NOT_FOUND).body(body);
+            response.setStatus(entity.getStatusCodeValue());
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), entity.getBody());
+            return response;
+        }
+    }
+
+    /**
+     * Keeps only the status and the number of written bytes, so the benchmark measures the handlers rather
+     * than the bookkeeping of the mock.
+     */
+    public static final class DiscardingResponse extends MockHttpServletResponse {
+        int status;
+        long written;
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(final int value) {
+                written++;
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) {
+                written += length;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+            }
+        };
+
+        @Override
+        public void setStatus(final int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void setContentType(final String contentType) {
+        }
+
+        @Override
+        public void setContentLength(final int contentLength) {
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    private static final class StackCapturingException extends Exception {
+        private StackCapturingException(final String message) {
+            super(message);
+        }
+    }
+}
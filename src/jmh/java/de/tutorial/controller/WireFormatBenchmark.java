@@ -0,0 +1,167 @@
+package de.tutorial.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import de.tutorial.model.Customer;
+
+/**
+ * Encodes and decodes a customer and a list of customers in JSON and in each {@link BinaryFormat}. The setup
+ * prints the payload sizes, since they matter as much as the time on slow networks:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.includes=WireFormat -Djmh.args="-prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final int LIST_SIZE = 100;
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    String format;
+
+    Codec codec;
+    Customer customer;
+    List<Customer> customers;
+    byte[] encodedCustomer;
+    byte[] encodedCustomers;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec = format.equals("json")
+                ? new JsonCodec()
+                : new BinaryFormatCodec(BinaryFormat.valueOf(format.toUpperCase()));
+        customer = customer(0);
+        customers = new ArrayList<>(LIST_SIZE);
+        for (int index = 0; index < LIST_SIZE; index++) {
+            customers.add(customer(index));
+        }
+        encodedCustomer = codec.writeCustomer(customer);
+        encodedCustomers = codec.writeCustomers(customers);
+        System.out.printf("%n%s: customer %d bytes, %d customers %d bytes%n",
+                          format, encodedCustomer.length, LIST_SIZE, encodedCustomers.length);
+    }
+
+    @Benchmark
+    public byte[] encodeCustomer() throws IOException {
+        return codec.writeCustomer(customer);
+    }
+
+    @Benchmark
+    public Customer decodeCustomer() throws IOException {
+        return codec.readCustomer(encodedCustomer);
+    }
+
+    @Benchmark
+    public byte[] encodeCustomers() throws IOException {
+        return codec.writeCustomers(customers);
+    }
+
+    @Benchmark
+    public List<Customer> decodeCustomers() throws IOException {
+        return codec.readCustomers(encodedCustomers);
+    }
+
+    private static Customer customer(final int index) {
+        return new Customer("customer" + index, "customer" + index + "@domain" + (index % 100) + ".com", 1 + index % 3);
+    }
+
+    interface Codec {
+        byte[] writeCustomer(Customer customer) throws IOException;
+
+        byte[] writeCustomers(List<Customer> customers) throws IOException;
+
+        Customer readCustomer(byte[] input) throws IOException;
+
+        List<Customer> readCustomers(byte[] input) throws IOException;
+    }
+
+    static final class JsonCodec implements Codec {
+        private final ObjectWriter customerWriter;
+        private final ObjectWriter customerListWriter;
+        private final ObjectReader customerReader;
+        private final ObjectReader customerListReader;
+
+        JsonCodec() {
+            final ObjectMapper objectMapper =
+                Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+            this.customerWriter = objectMapper.writerFor(Customer.class);
+            this.customerListWriter = objectMapper.writerFor(new TypeReference<List<Customer>>() { });
+            this.customerReader = objectMapper.readerFor(Customer.class);
+            this.customerListReader = objectMapper.readerFor(new TypeReference<List<Customer>>() { });
+        }
+
+        @Override
+        public byte[] writeCustomer(final Customer customer) throws IOException {
+            return customerWriter.writeValueAsBytes(customer);
+        }
+
+        @Override
+        public byte[] writeCustomers(final List<Customer> customers) throws IOException {
+            return customerListWriter.writeValueAsBytes(customers);
+        }
+
+        @Override
+        public Customer readCustomer(final byte[] input) throws IOException {
+            return customerReader.readValue(input);
+        }
+
+        @Override
+        public List<Customer> readCustomers(final byte[] input) throws IOException {
+            return customerListReader.readValue(input);
+        }
+    }
+
+    static final class BinaryFormatCodec implements Codec {
+        private final BinaryFormat format;
+
+        BinaryFormatCodec(final BinaryFormat format) {
+            this.format = format;
+        }
+
+        @Override
+        public byte[] writeCustomer(final Customer customer) {
+            return format.writeCustomer(customer);
+        }
+
+        @Override
+        public byte[] writeCustomers(final List<Customer> customers) {
+            return format.writeCustomers(customers);
+        }
+
+        @Override
+        public Customer readCustomer(final byte[] input) throws IOException {
+            return format.readCustomer(new ByteArrayInputStream(input));
+        }
+
+        @Override
+        public List<Customer> readCustomers(final byte[] input) throws IOException {
+            return format.readCustomers(input);
+        }
+    }
+}
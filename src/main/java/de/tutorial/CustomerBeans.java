@@ -0,0 +1,71 @@
+package de.tutorial;
+
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.Environment;
+
+import de.tutorial.controller.CustomerChangeController;
+import de.tutorial.controller.CustomerController;
+import de.tutorial.controller.RestControllerExceptionHandler;
+import de.tutorial.persistence.CustomerJournal;
+import de.tutorial.repository.CustomerRepository;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.repository.OffHeapCustomerRepository;
+import de.tutorial.service.CustomerChangeFeed;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Registers the beans {@link Application} finds by scanning, each with a supplier calling its constructor,
+ * so neither the classpath is scanned nor constructors are resolved by reflection. The properties are read
+ * with the defaults of the {@code @Value} annotations they replace.
+ */
+final class CustomerBeans implements ApplicationContextInitializer<GenericApplicationContext> {
+    /**
+     * The customers are recovered and indexed before the first request rather than during it, and the change
+     * feed records the changes made before its first subscriber.
+     */
+    static final String[] EAGER_BEANS = {"customerRepository", "customerJournal", "customerService",
+                                         "customerChangeFeed"};
+
+    @Override
+    public void initialize(final GenericApplicationContext context) {
+        final Environment environment = context.getEnvironment();
+        context.registerBean("customerRepository", CustomerRepository.class, () -> {
+            if (environment.getProperty("customer.store.off-heap", Boolean.class, false)) {
+                return new OffHeapCustomerRepository();
+            }
+            return new InMemoryCustomerRepository(environment.getProperty("customer.store.shards", Integer.class, 0));
+        });
+        context.registerBean("customerService", CustomerService.class, () -> new CustomerService(
+            context.getBean(CustomerRepository.class), optionalBean(context, CustomerJournal.class),
+            context.getBean(MeterRegistry.class),
+            environment.getProperty("customer.writes.batch-size", Integer.class, 0)));
+        context.registerBean("customerChangeFeed", CustomerChangeFeed.class, () -> new CustomerChangeFeed(
+            context.getBean(CustomerService.class),
+            environment.getProperty("customer.change-feed.capacity", Integer.class,
+                                    CustomerChangeFeed.DEFAULT_CAPACITY)));
+        context.registerBean("customerController", CustomerController.class, () -> new CustomerController(
+            context.getBean(CustomerService.class), context.getBean(ObjectMapper.class),
+            environment.getProperty("customer.json-cache.max-customer-bytes", Long.class,
+                                    CustomerController.DEFAULT_JSON_CACHE_BYTES),
+            environment.getProperty("customer.json-cache.max-list-bytes", Long.class,
+                                    CustomerController.DEFAULT_JSON_CACHE_BYTES),
+            environment.getProperty("customer.writes.async", Boolean.class, false)));
+        context.registerBean("customerChangeController", CustomerChangeController.class,
+                             () -> new CustomerChangeController(
+                                 context.getBean(CustomerChangeFeed.class), context.getBean(ObjectMapper.class),
+                                 environment.getProperty("customer.change-feed.threads", Integer.class,
+                                                         CustomerChangeController.DEFAULT_THREADS),
+                                 environment.getProperty("customer.change-feed.heartbeat",
+                                                         CustomerChangeController.DEFAULT_HEARTBEAT)));
+        context.registerBean("restControllerExceptionHandler", RestControllerExceptionHandler.class);
+    }
+
+    private static <T> Optional<T> optionalBean(final GenericApplicationContext context, final Class<T> type) {
+        return context.getBeanNamesForType(type).length == 0 ? Optional.empty() : Optional.of(context.getBean(type));
+    }
+}
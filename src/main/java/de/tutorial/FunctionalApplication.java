@@ -0,0 +1,105 @@
+package de.tutorial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.autoconfigure.endpoint.EndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.endpoint.web.WebEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.health.HealthEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.health.HealthIndicatorAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.info.InfoEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsEndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.prometheus.PrometheusMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.web.servlet.WebMvcMetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementContextAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.web.servlet.ServletManagementContextAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.ConfigurationPropertiesAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.HttpEncodingAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.error.ErrorMvcAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+
+import de.tutorial.controller.BinaryFormatConfiguration;
+import de.tutorial.controller.RequestLimitConfiguration;
+import de.tutorial.persistence.PersistenceConfiguration;
+
+/**
+ * Starts the servlet mode for fast scale-out. Instead of scanning the classpath for components and
+ * evaluating every auto-configuration on it, the customer beans are registered by {@link CustomerBeans}
+ * and only the auto-configurations the service uses are imported. All beans but the ones that recover and
+ * hold the customers are created on first use. The {@code functional} profile keeps {@link Application}
+ * from importing this class when it scans the package.
+ * <p>
+ * With {@code --customer.startup.training-run=true} the application answers one request of each kind to
+ * itself and exits, which is how the class list of the class-data-sharing archive is recorded.
+ */
+@Configuration
+@Profile(FunctionalApplication.PROFILE)
+@ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, ConfigurationPropertiesAutoConfiguration.class,
+                          JacksonAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class,
+                          ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+                          HttpEncodingAutoConfiguration.class, WebMvcAutoConfiguration.class,
+                          ErrorMvcAutoConfiguration.class, MetricsAutoConfiguration.class,
+                          CompositeMeterRegistryAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class,
+                          PrometheusMetricsExportAutoConfiguration.class, WebMvcMetricsAutoConfiguration.class,
+                          EndpointAutoConfiguration.class, WebEndpointAutoConfiguration.class,
+                          ManagementContextAutoConfiguration.class, ServletManagementContextAutoConfiguration.class,
+                          HealthIndicatorAutoConfiguration.class, HealthEndpointAutoConfiguration.class,
+                          InfoEndpointAutoConfiguration.class, MetricsEndpointAutoConfiguration.class})
+@Import({PersistenceConfiguration.class, BinaryFormatConfiguration.class, RequestLimitConfiguration.class})
+public class FunctionalApplication {
+    static final String PROFILE = "functional";
+    static final String TRAINING_RUN = "customer.startup.training-run";
+
+    public static void main(String[] args) throws IOException {
+        final ConfigurableApplicationContext context = application().run(args);
+        if (context.getEnvironment().getProperty(TRAINING_RUN, Boolean.class, false)) {
+            final int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            for (final String path : Arrays.asList("/customers", "/customers/unknown", "/actuator/prometheus")) {
+                request(port, path);
+            }
+            context.close();
+        }
+    }
+
+    static SpringApplication application() {
+        final SpringApplication application = new SpringApplication(FunctionalApplication.class);
+        application.setWebApplicationType(WebApplicationType.SERVLET);
+        application.setAdditionalProfiles(PROFILE);
+        application.addInitializers(new CustomerBeans());
+        application.addInitializers(context -> context.addBeanFactoryPostProcessor(
+            new LazyInitBeanFactoryPostProcessor(new HashSet<>(Arrays.asList(CustomerBeans.EAGER_BEANS)))));
+        return application;
+    }
+
+    private static void request(final int port, final String path) throws IOException {
+        final HttpURLConnection connection =
+            (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        try (InputStream body = connection.getResponseCode() < 400 ? connection.getInputStream()
+                                                                   : connection.getErrorStream()) {
+            while (body != null && body.read() >= 0) {
+                continue;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package de.tutorial;
+
+import java.util.Set;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * Marks all beans but the given ones as lazy, so they are created on first use instead of during startup.
+ * Infrastructure such as the web server and the post-processors is still created while the context is
+ * refreshed, since the context asks for it explicitly.
+ */
+final class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+    private final Set<String> eagerBeans;
+
+    LazyInitBeanFactoryPostProcessor(final Set<String> eagerBeans) {
+        this.eagerBeans = eagerBeans;
+    }
+
+    @Override
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) {
+        for (final String name : beanFactory.getBeanDefinitionNames()) {
+            if (!eagerBeans.contains(name)) {
+                beanFactory.getBeanDefinition(name).setLazyInit(true);
+            }
+        }
+    }
+}
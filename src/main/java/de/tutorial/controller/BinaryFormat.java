@@ -0,0 +1,169 @@
+package de.tutorial.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.ErrorResponse;
+
+/**
+ * The compact encodings that clients can ask for with the {@code Accept} and {@code Content-Type} headers
+ * instead of JSON. Smile and CBOR are binary Jackson formats that keep the field names; Protocol Buffers
+ * encodes the fields by the numbers of {@code customer.proto}, which is served next to the API. Lists are
+ * written as a {@code CustomerList} message there, since a message cannot be repeated at the top level.
+ */
+enum BinaryFormat {
+    SMILE(BinaryFormat.SMILE_VALUE, new SmileFactory(), null),
+    CBOR(BinaryFormat.CBOR_VALUE, new CBORFactory(), null),
+    PROTOBUF(BinaryFormat.PROTOBUF_VALUE, new ProtobufFactory(), loadProtobufSchema());
+
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+    static final String CBOR_VALUE = "application/cbor";
+    static final String PROTOBUF_VALUE = "application/x-protobuf";
+
+    private static final String PROTOBUF_SCHEMA = "/static/customer.proto";
+    private static final String PROTOBUF_LIST_FIELD = "customers";
+    private static final BinaryFormat[] FORMATS = values();
+
+    private final MediaType mediaType;
+    private final String mediaTypeValue;
+    private final String tagVariant;
+    private final boolean wrapsLists;
+    private final ObjectWriter customerWriter;
+    private final ObjectWriter customerListWriter;
+    private final ObjectWriter errorWriter;
+    private final ObjectReader customerReader;
+    private final ObjectReader customerListReader;
+
+    BinaryFormat(final String mediaType, final JsonFactory factory, final NativeProtobufSchema schema) {
+        final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                                                                     .factory(factory)
+                                                                     .modulesToInstall(new ParameterNamesModule())
+                                                                     .build();
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.mediaTypeValue = mediaType;
+        this.tagVariant = name().toLowerCase(Locale.ROOT);
+        this.wrapsLists = schema != null;
+        if (schema == null) {
+            this.customerWriter = objectMapper.writerFor(Customer.class);
+            this.customerListWriter = objectMapper.writerFor(new TypeReference<List<Customer>>() { });
+            this.errorWriter = objectMapper.writerFor(ErrorResponse.class);
+            this.customerReader = objectMapper.readerFor(Customer.class);
+            this.customerListReader = objectMapper.readerFor(new TypeReference<List<Customer>>() { });
+        } else {
+            final TypeReference<Map<String, List<Customer>>> listMessage =
+                new TypeReference<Map<String, List<Customer>>>() { };
+            this.customerWriter = objectMapper.writerFor(Customer.class).with(schema.forType("Customer"));
+            this.customerListWriter = objectMapper.writerFor(listMessage).with(schema.forType("CustomerList"));
+            this.errorWriter = objectMapper.writerFor(ErrorResponse.class).with(schema.forType("ErrorResponse"));
+            this.customerReader = objectMapper.readerFor(Customer.class).with(schema.forType("Customer"));
+            this.customerListReader = objectMapper.readerFor(listMessage).with(schema.forType("CustomerList"));
+        }
+    }
+
+    /**
+     * @return the binary format that the {@code Accept} header prefers over JSON, or {@code null} for JSON,
+     * which is also what clients get that accept anything
+     */
+    static BinaryFormat negotiate(final String accept) {
+        if (accept == null || !(accept.contains("smile") || accept.contains("cbor") || accept.contains("protobuf"))) {
+            return null;
+        }
+        final List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(accept);
+        } catch (final InvalidMediaTypeException exception) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (final MediaType candidate : acceptable) {
+            if (candidate.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return null;
+            }
+            for (final BinaryFormat format : FORMATS) {
+                if (candidate.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    MediaType getMediaType() {
+        return mediaType;
+    }
+
+    String getMediaTypeValue() {
+        return mediaTypeValue;
+    }
+
+    /**
+     * @return the suffix that tells the entity tags of this representation from the ones of the JSON
+     */
+    String getTagVariant() {
+        return tagVariant;
+    }
+
+    byte[] writeCustomer(final Customer customer) {
+        return write(customerWriter, customer);
+    }
+
+    byte[] writeCustomers(final List<Customer> customers) {
+        final Object message = wrapsLists ? Collections.singletonMap(PROTOBUF_LIST_FIELD, customers) : customers;
+        return write(customerListWriter, message);
+    }
+
+    byte[] writeError(final ErrorResponse errorResponse) {
+        return write(errorWriter, errorResponse);
+    }
+
+    Customer readCustomer(final InputStream input) throws IOException {
+        return customerReader.readValue(input);
+    }
+
+    List<Customer> readCustomers(final byte[] input) throws IOException {
+        if (!wrapsLists) {
+            return customerListReader.readValue(input);
+        }
+        final Map<String, List<Customer>> message = customerListReader.readValue(input);
+        final List<Customer> customers = message.get(PROTOBUF_LIST_FIELD);
+        return customers == null ? Collections.emptyList() : customers;
+    }
+
+    private static byte[] write(final ObjectWriter writer, final Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (final JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static NativeProtobufSchema loadProtobufSchema() {
+        try {
+            return ProtobufSchemaLoader.std.loadNative(BinaryFormat.class.getResource(PROTOBUF_SCHEMA));
+        } catch (final IOException exception) {
+            throw new UncheckedIOException("Could not load " + PROTOBUF_SCHEMA, exception);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.tutorial.controller;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the converters of the {@link BinaryFormat}s ahead of the ones Spring registers for the same media
+ * types.
+ */
+@Configuration
+@Profile("!reactive")
+public class BinaryFormatConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(final List<HttpMessageConverter<?>> converters) {
+        for (final BinaryFormat format : BinaryFormat.values()) {
+            converters.add(0, new BinaryFormatHttpMessageConverter(format));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.tutorial.controller;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import de.tutorial.model.Customer;
+
+/**
+ * Reads and writes customers in a {@link BinaryFormat}. Spring registers Smile and CBOR converters of its
+ * own, but their object mappers lack the parameter names module that {@link Customer} needs.
+ */
+final class BinaryFormatHttpMessageConverter extends AbstractHttpMessageConverter<Customer> {
+    private final BinaryFormat format;
+
+    BinaryFormatHttpMessageConverter(final BinaryFormat format) {
+        super(format.getMediaType());
+        this.format = format;
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return Customer.class == clazz;
+    }
+
+    @Override
+    protected Customer readInternal(final Class<? extends Customer> clazz, final HttpInputMessage inputMessage)
+        throws IOException {
+        try {
+            return format.readCustomer(inputMessage.getBody());
+        } catch (final JsonProcessingException exception) {
+            throw new HttpMessageNotReadableException("Could not read " + format.getMediaTypeValue() + " customer",
+                                                      exception);
+        }
+    }
+
+    @Override
+    protected void writeInternal(final Customer customer, final HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(format.writeCustomer(customer));
+    }
+}
@@ -0,0 +1,111 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * Limits the number of requests handled at the same time and adapts the limit to their latency. The
+ * average latency of each window is compared with a long term average: while it stays within
+ * {@code tolerance} times of it, the limit grows by its square root per window, in which the limit was at
+ * least half used. Once requests queue up and take longer, the limit shrinks in proportion, down to half
+ * per window, so requests beyond it are rejected before the latency of all of them collapses.
+ * <p>
+ * Admitting and releasing a request only touch an atomic counter and striped adders; the limit is
+ * recomputed by the one request that closes a window.
+ */
+final class ConcurrencyLimiter {
+    private static final int MIN_SAMPLES = 10;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_TERM_WINDOWS = 20;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final LongAdder latencies = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AtomicLong windowEnd;
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longTermLatency;
+
+    ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit, final double tolerance,
+                       final long windowNanos) {
+        Assert.isTrue(minLimit >= 1 && minLimit <= initialLimit && initialLimit <= maxLimit,
+                      "The limits must satisfy 1 <= min <= initial <= max");
+        Assert.isTrue(tolerance >= 1, "The tolerance must be at least 1");
+        Assert.isTrue(windowNanos > 0, "The window must be positive");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.windowNanos = windowNanos;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.windowEnd = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * @return whether the request is admitted; each admitted request has to be released
+     */
+    boolean tryAcquire() {
+        final int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        if (current > maxInFlight.get()) {
+            maxInFlight.accumulateAndGet(current, Math::max);
+        }
+        return true;
+    }
+
+    void release(final long latencyNanos, final long now) {
+        inFlight.decrementAndGet();
+        latencies.add(latencyNanos);
+        samples.increment();
+        final long end = windowEnd.get();
+        if (now - end >= 0 && windowEnd.compareAndSet(end, now + windowNanos)) {
+            update();
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Runs once per window, so the monitor is never contended; it publishes the averages to the request
+     * closing the next window.
+     */
+    private synchronized void update() {
+        final long count = samples.sumThenReset();
+        final long sum = latencies.sumThenReset();
+        final int utilized = maxInFlight.getAndSet(inFlight.get());
+        if (count < MIN_SAMPLES) {
+            return;
+        }
+        final double latency = (double) sum / count;
+        if (longTermLatency == 0) {
+            longTermLatency = latency;
+        } else {
+            longTermLatency += (latency - longTermLatency) / LONG_TERM_WINDOWS;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermLatency / Math.max(latency, 1)));
+        if (gradient == 1.0 && utilized < estimatedLimit / 2) {
+            return;
+        }
+        final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING)
+                                                               + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
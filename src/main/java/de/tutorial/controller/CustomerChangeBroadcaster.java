@@ -0,0 +1,259 @@
+package de.tutorial.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.CustomerChange;
+import de.tutorial.service.CustomerChangeFeed;
+
+/**
+ * Streams the {@link CustomerChangeFeed} to many subscribers as Server-Sent Events. Every change is encoded
+ * into its event once, and the same bytes are handed to every subscriber. A writer only wakes a single
+ * dispatch task; the dispatcher then schedules a drain for each subscriber that is behind, and each drain
+ * sends the changes after the subscriber's own cursor. At most one drain per subscriber runs at a time, and
+ * it only sends what the sink demands. Sinks never block, so a subscriber that stops reading holds no thread
+ * of the pool and delays neither writers nor other subscribers. A subscriber that falls behind by more than
+ * the capacity of the feed is closed, by its next drain or, if it stopped reading, by the next heartbeat.
+ * <p>
+ * Idle subscribers receive a comment line every heartbeat interval, which keeps proxies from closing the
+ * connection and lets the servlet container notice clients that went away.
+ */
+final class CustomerChangeBroadcaster implements Closeable {
+    static final int MAX_EVENTS_PER_DRAIN = 256;
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final CustomerChangeFeed feed;
+    private final ObjectWriter customerWriter;
+    private final AtomicReferenceArray<Event> events;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+    private final Runnable wakeUp = this::wakeUp;
+
+    CustomerChangeBroadcaster(final CustomerChangeFeed feed, final ObjectWriter customerWriter, final int threads,
+                              final Duration heartbeat) {
+        this.feed = feed;
+        this.customerWriter = customerWriter;
+        this.events = new AtomicReferenceArray<>(feed.getCapacity());
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "customer-changes-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!heartbeat.isZero() && !heartbeat.isNegative()) {
+            final long interval = heartbeat.toMillis();
+            executor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        feed.addListener(wakeUp);
+    }
+
+    /**
+     * Starts following the changes after the event with the given id, or only new changes for {@code null}.
+     * The subscription does not send anything before it is {@link Subscription#start started}.
+     *
+     * @throws CustomerChangesExpiredException if the id has not been issued by this instance of the feed, or
+     *                                         the change following it is no longer retained
+     */
+    Subscription subscribe(final String afterEventId) throws CustomerChangesExpiredException {
+        if (afterEventId == null) {
+            return new Subscription(feed.getLastSequence());
+        }
+        final long afterSequence = feed.sequenceOf(afterEventId);
+        feed.getChanges(afterSequence, 0);
+        return new Subscription(afterSequence);
+    }
+
+    int subscribers() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void close() {
+        feed.removeListener(wakeUp);
+        executor.shutdownNow();
+        subscriptions.forEach(Subscription::close);
+    }
+
+    /**
+     * @return the event of the change, encoded by the first subscriber that sends it; subscribers that
+     * encode it concurrently return the bytes of the one that stored them first
+     */
+    byte[] encode(final CustomerChange change) {
+        final int slot = (int) change.getSequence() & (events.length() - 1);
+        final Event cached = events.get(slot);
+        if (cached != null && cached.sequence == change.getSequence()) {
+            return cached.bytes;
+        }
+        final ByteArrayOutputStream event = new ByteArrayOutputStream(128);
+        try {
+            final String type = change.getType().name().toLowerCase(Locale.ROOT);
+            event.write(("id:" + feed.eventId(change.getSequence()) + "\nevent:" + type + "\ndata:")
+                            .getBytes(StandardCharsets.UTF_8));
+            customerWriter.writeValue(event, change.getCustomer());
+            event.write('\n');
+            event.write('\n');
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        final Event encoded = new Event(change.getSequence(), event.toByteArray());
+        if (events.compareAndSet(slot, cached, encoded)) {
+            return encoded.bytes;
+        }
+        final Event concurrent = events.get(slot);
+        return concurrent.sequence == change.getSequence() ? concurrent.bytes : encoded.bytes;
+    }
+
+    private void wakeUp() {
+        if (dispatching.compareAndSet(false, true)) {
+            execute(this::dispatch);
+        }
+    }
+
+    /**
+     * Drops the task once the broadcaster is closed, since writers and sinks may still call in.
+     */
+    private void execute(final Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException closed) {
+            // nothing is sent anymore
+        }
+    }
+
+    private void dispatch() {
+        dispatching.set(false);
+        subscriptions.forEach(Subscription::schedule);
+    }
+
+    private void heartbeat() {
+        subscriptions.forEach(Subscription::scheduleHeartbeat);
+    }
+
+    /**
+     * Receives the events of one subscription. Calls are never concurrent.
+     */
+    interface Sink {
+
+        /**
+         * @return the number of events the sink accepts right now without blocking
+         */
+        long demand();
+
+        /**
+         * Sends or queues the event without blocking; the broadcaster sends no more than the demand.
+         */
+        void send(byte[] event) throws IOException;
+
+        void close();
+    }
+
+    final class Subscription {
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile Sink sink;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+        // only written by the drain
+        private volatile long cursor;
+
+        private Subscription(final long cursor) {
+            this.cursor = cursor;
+        }
+
+        void start(final Sink sink) {
+            this.sink = sink;
+            subscriptions.add(this);
+            schedule();
+        }
+
+        /**
+         * Drains the subscription unless it is already being drained or has nothing to send; sinks call it
+         * when their demand grows.
+         */
+        void schedule() {
+            final Sink current = sink;
+            if (current != null && !closed && (heartbeatDue || cursor < feed.getLastSequence())
+                && current.demand() > 0 && draining.compareAndSet(false, true)) {
+                execute(this::drain);
+            }
+        }
+
+        void cancel() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+
+        private void scheduleHeartbeat() {
+            if (cursor < feed.getLastSequence() - feed.getCapacity() && draining.compareAndSet(false, true)) {
+                // a subscriber without demand is not drained, so the overwritten changes are noticed here
+                close();
+                draining.set(false);
+                return;
+            }
+            heartbeatDue = true;
+            schedule();
+        }
+
+        private void drain() {
+            try {
+                boolean sent = false;
+                long demand;
+                while (!closed && (demand = sink.demand()) > 0 && cursor < feed.getLastSequence()) {
+                    final List<CustomerChange> changes =
+                        feed.getChanges(cursor, (int) Math.min(demand, MAX_EVENTS_PER_DRAIN));
+                    for (final CustomerChange change : changes) {
+                        sink.send(encode(change));
+                        cursor = change.getSequence();
+                    }
+                    sent = true;
+                }
+                if (heartbeatDue && !closed && !sent && sink.demand() > 0) {
+                    sink.send(HEARTBEAT);
+                }
+                heartbeatDue = false;
+            } catch (final CustomerChangesExpiredException | IOException | RuntimeException exception) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && cursor < feed.getLastSequence()) {
+                schedule();
+            }
+        }
+
+        private void close() {
+            if (!closed) {
+                cancel();
+                sink.close();
+            }
+        }
+    }
+
+    private static final class Event {
+        private final long sequence;
+        private final byte[] bytes;
+
+        private Event(final long sequence, final byte[] bytes) {
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+}
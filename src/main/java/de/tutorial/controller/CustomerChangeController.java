@@ -0,0 +1,202 @@
+package de.tutorial.controller;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.Customer;
+import de.tutorial.service.CustomerChangeFeed;
+
+/**
+ * Streams added and removed customers as Server-Sent Events. Each event carries its sequence as id, its
+ * type as name and the customer as JSON data. A consumer resumes after a sequence with the {@code after}
+ * parameter or the {@code Last-Event-ID} header that browsers send when they reconnect; without either it
+ * only receives new changes. Resuming after a change that is no longer retained fails with
+ * {@code 410 Gone}, and the consumer has to start over with {@code GET /customers}.
+ * <p>
+ * The events are written by the threads of the {@link CustomerChangeBroadcaster} with the non-blocking
+ * output of the servlet container, so a client that stops reading never holds one of them. Each connection
+ * queues at most {@value #PENDING_EVENTS} events while the container cannot take more, and reports the free
+ * part of that window as its demand. The connection holds no request thread and never times out, so clients
+ * that went away are only noticed by the heartbeat.
+ */
+@RestController
+@RequestMapping("/customers/changes")
+@Profile("!reactive")
+public class CustomerChangeController {
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+    public static final int DEFAULT_THREADS = 8;
+    public static final String DEFAULT_HEARTBEAT = "15s";
+    static final int PENDING_EVENTS = 64;
+
+    final CustomerChangeBroadcaster broadcaster;
+
+    public CustomerChangeController(final CustomerChangeFeed changeFeed, final ObjectMapper objectMapper) {
+        this(changeFeed, objectMapper, DEFAULT_THREADS, DEFAULT_HEARTBEAT);
+    }
+
+    @Autowired
+    public CustomerChangeController(final CustomerChangeFeed changeFeed, final ObjectMapper objectMapper,
+                                    @Value("${customer.change-feed.threads:" + DEFAULT_THREADS + "}")
+                                    final int threads,
+                                    @Value("${customer.change-feed.heartbeat:" + DEFAULT_HEARTBEAT + "}")
+                                    final String heartbeat) {
+        Assert.notNull(changeFeed, "CustomerChangeFeed must not be null");
+        Assert.notNull(objectMapper, "ObjectMapper must not be null");
+        this.broadcaster = new CustomerChangeBroadcaster(changeFeed, objectMapper.writerFor(Customer.class),
+                                                         threads, DurationStyle.detectAndParse(heartbeat));
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamChanges(@RequestParam(value = "after", required = false) final String after,
+                              @RequestHeader(value = LAST_EVENT_ID, required = false) final String lastEventId,
+                              final HttpServletRequest request, final HttpServletResponse response)
+        throws CustomerChangesExpiredException, IOException {
+
+        final CustomerChangeBroadcaster.Subscription subscription =
+            broadcaster.subscribe(after != null ? after : lastEventId);
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        final NonBlockingSink sink = new NonBlockingSink(subscription, asyncContext, response.getOutputStream());
+        asyncContext.addListener(sink);
+        subscription.start(sink);
+        response.getOutputStream().setWriteListener(sink);
+    }
+
+    @PreDestroy
+    public void close() {
+        broadcaster.close();
+    }
+
+    /**
+     * Writes the events as long as the container takes them without blocking and queues the rest. The
+     * container calls back once it can take more, and the queued events are written before the subscription
+     * is asked for new ones. The broadcaster and the container call in from different threads.
+     */
+    private static final class NonBlockingSink implements CustomerChangeBroadcaster.Sink, WriteListener,
+                                                          AsyncListener {
+        private final CustomerChangeBroadcaster.Subscription subscription;
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final Queue<byte[]> pending = new ArrayDeque<>(PENDING_EVENTS);
+        // false until the container first reports the output as writable
+        private boolean ready;
+        private boolean closed;
+
+        private NonBlockingSink(final CustomerChangeBroadcaster.Subscription subscription,
+                                final AsyncContext asyncContext, final ServletOutputStream output) {
+            this.subscription = subscription;
+            this.asyncContext = asyncContext;
+            this.output = output;
+        }
+
+        @Override
+        public synchronized long demand() {
+            return closed ? 0 : PENDING_EVENTS - pending.size();
+        }
+
+        @Override
+        public synchronized void send(final byte[] event) throws IOException {
+            if (ready && pending.isEmpty()) {
+                write(event);
+            } else {
+                pending.add(event);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                pending.clear();
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                ready = true;
+                while (ready && !pending.isEmpty()) {
+                    write(pending.poll());
+                }
+                if (!ready) {
+                    return;
+                }
+                // sends the headers before the first event
+                output.flush();
+                if (!output.isReady()) {
+                    ready = false;
+                    return;
+                }
+            }
+            subscription.schedule();
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            subscription.cancel();
+            close();
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // the listener is added to the only async cycle of the request
+        }
+
+        /**
+         * Writes and flushes the event; if the container cannot take all of it, it sends the rest on its own
+         * and calls {@link #onWritePossible} once it is done.
+         */
+        private void write(final byte[] event) throws IOException {
+            output.write(event);
+            ready = output.isReady();
+            if (ready) {
+                output.flush();
+                ready = output.isReady();
+            }
+        }
+    }
+}
@@ -1,11 +1,33 @@
 package de.tutorial.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
 
 import javax.validation.constraints.NotNull;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,50 +35,339 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import de.tutorial.exception.CustomerAlreadyExistsException;
 import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.BatchImportResult;
 import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
 import de.tutorial.service.CustomerService;
 
 @RestController
 @RequestMapping("/customers")
+@Profile("!reactive")
 public class CustomerController {
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final int MAX_PAGE_SIZE = 1000;
+    static final String DEFAULT_SEARCH_LIMIT = "10";
+    static final String DEFAULT_SEARCH_DISTANCE = "2";
+    public static final long DEFAULT_JSON_CACHE_BYTES = 32L * 1024 * 1024;
+
     final CustomerService customerService;
+    final ObjectWriter customerWriter;
+    final ObjectWriter customerListWriter;
+    final ObjectReader customerReader;
+    final EntityTags entityTags = new EntityTags();
+    final CustomerJsonCache jsonCache;
+    final boolean asyncWrites;
+
+    public CustomerController(final CustomerService customerService, final ObjectMapper objectMapper) {
+        this(customerService, objectMapper, DEFAULT_JSON_CACHE_BYTES, DEFAULT_JSON_CACHE_BYTES);
+    }
+
+    public CustomerController(final CustomerService customerService, final ObjectMapper objectMapper,
+                              final long maxCachedCustomerBytes, final long maxCachedListBytes) {
+        this(customerService, objectMapper, maxCachedCustomerBytes, maxCachedListBytes, false);
+    }
 
-    public CustomerController(final CustomerService customerService) {
+    /**
+     * @param asyncWrites whether additions and deletions release the worker thread while they wait to be
+     *                    applied and to become durable
+     */
+    @Autowired
+    public CustomerController(final CustomerService customerService, final ObjectMapper objectMapper,
+                              @Value("${customer.json-cache.max-customer-bytes:" + DEFAULT_JSON_CACHE_BYTES + "}")
+                              final long maxCachedCustomerBytes,
+                              @Value("${customer.json-cache.max-list-bytes:" + DEFAULT_JSON_CACHE_BYTES + "}")
+                              final long maxCachedListBytes,
+                              @Value("${customer.writes.async:false}") final boolean asyncWrites) {
         Assert.notNull(customerService, "CustomerService must not be null");
+        Assert.notNull(objectMapper, "ObjectMapper must not be null");
         this.customerService = customerService;
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                                          .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.customerListWriter = objectMapper.writerFor(new TypeReference<List<Customer>>() { });
+        this.customerReader = objectMapper.readerFor(Customer.class);
+        this.jsonCache = new CustomerJsonCache(maxCachedCustomerBytes, maxCachedListBytes);
+        this.asyncWrites = asyncWrites;
+        customerService.addListener(jsonCache);
     }
 
-    @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getCustomers();
+    /**
+     * The tag of every variant is the version of all customers, read before the customers, so a client
+     * polling with {@code If-None-Match} receives 304 without the customers being copied or serialized.
+     * The JSON of the unfiltered list is cached until the next change; the {@link BinaryFormat}s are
+     * encoded per request.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, BinaryFormat.SMILE_VALUE, BinaryFormat.CBOR_VALUE,
+                            BinaryFormat.PROTOBUF_VALUE})
+    public ResponseEntity<?> getCustomers(
+        @RequestParam(value = "limit", required = false) final Integer limit,
+        @RequestParam(value = "after", defaultValue = "0") final long after,
+        @RequestParam(value = "category", required = false) final Integer category,
+        @RequestParam(value = "mailDomain", required = false) final String mailDomain,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) final String accept) {
+
+        if (limit != null && (limit < 1 || after < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        final BinaryFormat format = BinaryFormat.negotiate(accept);
+        final String variant = format == null ? null : format.getTagVariant();
+        final long version = customerService.getVersion();
+        final String etag = entityTags.of(version, variant);
+        if (entityTags.noneMatchFails(ifNoneMatch, version, variant)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        final CustomerFilter filter = CustomerFilter.of(category, mailDomain);
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+        if (format == null && limit == null && filter.isEmpty()) {
+            byte[] json = jsonCache.getCustomers(version);
+            if (json == null) {
+                json = serialize(customerListWriter, customerService.getCustomers());
+                jsonCache.putCustomers(version, json);
+            }
+            return response.contentType(MediaType.APPLICATION_JSON_UTF8).body(json);
+        }
+        final List<Customer> customers;
+        if (limit == null) {
+            customers = filter.isEmpty() ? customerService.getCustomers() : customerService.getCustomers(filter);
+        } else {
+            final int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+            final CustomerPage page = customerService.getCustomers(filter, after, pageSize);
+            final OptionalLong nextCursor = page.getNextCursor();
+            if (nextCursor.isPresent()) {
+                final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                                                               .replaceQueryParam("limit", pageSize)
+                                                               .replaceQueryParam("after", nextCursor.getAsLong())
+                                                               .toUriString();
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            customers = page.getCustomers();
+        }
+        if (format == null) {
+            return response.body(customers);
+        }
+        return response.contentType(format.getMediaType()).body(format.writeCustomers(customers));
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCustomers() {
+        final StreamingResponseBody body = this::writeCustomersAsNdjson;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Finds customers whose name starts with the prefix, ignoring case, ordered by name.
+     */
+    @GetMapping(value = "/search", params = "prefix", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Customer>> searchCustomersByPrefix(
+        @RequestParam("prefix") final String prefix,
+        @RequestParam(value = "limit", defaultValue = DEFAULT_SEARCH_LIMIT) final int limit) {
+
+        if (limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(customerService.searchCustomersByPrefix(prefix, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+
+    /**
+     * Finds customers by a possibly misspelled name, the closest first.
+     */
+    @GetMapping(value = "/search", params = "q", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CustomerMatch>> searchCustomersByName(
+        @RequestParam("q") final String query,
+        @RequestParam(value = "distance", defaultValue = DEFAULT_SEARCH_DISTANCE) final int distance,
+        @RequestParam(value = "limit", defaultValue = DEFAULT_SEARCH_LIMIT) final int limit) {
+
+        if (!isValidSearch(query, distance, limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(
+            customerService.searchCustomersByName(query, distance, Math.min(limit, MAX_PAGE_SIZE)));
     }
 
     @GetMapping("/{name}")
-    public ResponseEntity<Customer> getCustomer(@PathVariable("name") final @NotNull String name)
+    public ResponseEntity<byte[]> getCustomer(
+        @PathVariable("name") final @NotNull String name,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) final String accept)
         throws CustomerNotFoundException {
 
-        final Optional<Customer> customer = customerService.getCustomer(name);
-        if (customer.isPresent()) {
-            return ResponseEntity.ok(customer.get());
+        final Optional<VersionedCustomer> customer = customerService.getVersionedCustomer(name);
+        if (!customer.isPresent()) {
+            throw CustomerNotFoundException.forName(name);
+        }
+        final BinaryFormat format = BinaryFormat.negotiate(accept);
+        final String variant = format == null ? null : format.getTagVariant();
+        final long version = customer.get().getVersion();
+        final String etag = entityTags.of(version, variant);
+        if (entityTags.noneMatchFails(ifNoneMatch, version, variant)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
         }
-        throw new CustomerNotFoundException(String.format("A customer with name %s does not exist", name));
+        if (format != null) {
+            return ResponseEntity.ok()
+                                 .eTag(etag)
+                                 .varyBy(HttpHeaders.ACCEPT)
+                                 .contentType(format.getMediaType())
+                                 .body(format.writeCustomer(customer.get().getCustomer()));
+        }
+        byte[] json = jsonCache.getCustomer(name, version);
+        if (json == null) {
+            json = serialize(customerWriter, customer.get().getCustomer());
+            jsonCache.putCustomer(name, version, json);
+        }
+        return ResponseEntity.ok()
+                             .eTag(etag)
+                             .varyBy(HttpHeaders.ACCEPT)
+                             .contentType(MediaType.APPLICATION_JSON_UTF8)
+                             .body(json);
     }
 
+    /**
+     * With async writes the request completes when the returned future does. Otherwise the customer is added
+     * on the worker thread and {@code null} tells Spring that the response is complete.
+     */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public void addCustomer(@RequestBody final Customer customer) throws CustomerAlreadyExistsException {
+    public CompletableFuture<Void> addCustomer(@RequestBody final Customer customer)
+        throws CustomerAlreadyExistsException, CustomerTooLargeException {
+
+        if (asyncWrites) {
+            return customerService.addCustomerAsync(customer);
+        }
         customerService.addCustomer(customer);
+        return null;
+    }
+
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchImportResult> importCustomers(
+        @RequestParam(value = "mode", defaultValue = "BEST_EFFORT") final BatchImportMode mode,
+        final InputStream body) throws IOException, MalformedCustomerBatchException, CustomerTooLargeException {
+
+        final BatchImportResult result = importCustomers(customerService, customerReader, body, mode);
+        return ResponseEntity.status(result.isApplied() ? HttpStatus.OK : HttpStatus.CONFLICT).body(result);
     }
 
+    /**
+     * Completes like {@link #addCustomer(Customer)}.
+     */
     @DeleteMapping("/{name}")
     @ResponseStatus(HttpStatus.OK)
-    public void deleteCustomer(@PathVariable("name") final String name) throws CustomerNotFoundException {
-        customerService.deleteCustomer(name);
+    public CompletableFuture<Void> deleteCustomer(
+        @PathVariable("name") final String name,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch)
+        throws CustomerNotFoundException, CustomerVersionMismatchException {
+
+        final Collection<Long> expectedVersions = EntityTags.isAny(ifMatch) ? null : entityTags.versionsOf(ifMatch);
+        if (asyncWrites) {
+            return customerService.deleteCustomerAsync(name, expectedVersions);
+        }
+        if (expectedVersions == null) {
+            customerService.deleteCustomer(name);
+        } else {
+            customerService.deleteCustomer(name, expectedVersions);
+        }
+        return null;
+    }
+
+    static byte[] serialize(final ObjectWriter writer, final Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (final JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Reads the customers while the service imports them. A body that is not readable as customers fails
+     * the import with the position of the customer only, since the messages of the parser quote the body.
+     */
+    static BatchImportResult importCustomers(final CustomerService customerService, final ObjectReader reader,
+                                             final InputStream body, final BatchImportMode mode)
+        throws IOException, MalformedCustomerBatchException, CustomerTooLargeException {
+
+        final MappingIterator<Customer> customers;
+        try {
+            customers = reader.readValues(body);
+        } catch (final JsonProcessingException exception) {
+            throw malformedBatch(0, exception);
+        }
+        final CountingIterator<Customer> counted = new CountingIterator<>(customers);
+        try {
+            return customerService.importCustomers(counted, mode);
+        } catch (final RuntimeException exception) {
+            if (exception.getCause() instanceof JsonProcessingException) {
+                throw malformedBatch(counted.count, (JsonProcessingException) exception.getCause());
+            }
+            throw exception;
+        } finally {
+            customers.close();
+        }
+    }
+
+    private static MalformedCustomerBatchException malformedBatch(final long index,
+                                                                  final JsonProcessingException exception) {
+        final JsonLocation location = exception.getLocation();
+        return MalformedCustomerBatchException.at(index, location != null ? location.getLineNr() : -1);
+    }
+
+    static boolean isValidSearch(final String query, final int distance, final int limit) {
+        return !query.isEmpty() && distance >= 0 && distance <= CustomerService.MAX_SEARCH_DISTANCE && limit >= 1;
+    }
+
+    private void writeCustomersAsNdjson(final OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = customerWriter.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            customerService.forEachCustomer(customer -> writeNdjsonLine(generator, customer));
+        }
+    }
+
+    private void writeNdjsonLine(final JsonGenerator generator, final Customer customer) {
+        try {
+            customerWriter.writeValue(generator, customer);
+            generator.writeRaw('\n');
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Counts the customers read so far, which is the position of the customer a parser error stops at.
+     */
+    private static final class CountingIterator<T> implements Iterator<T> {
+        private final Iterator<T> delegate;
+        private long count;
+
+        private CountingIterator(final Iterator<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public T next() {
+            final T next = delegate.next();
+            count++;
+            return next;
+        }
     }
 }
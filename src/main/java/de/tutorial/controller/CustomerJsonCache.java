@@ -0,0 +1,146 @@
+package de.tutorial.controller;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import de.tutorial.model.Customer;
+import de.tutorial.repository.CustomerRepositoryListener;
+
+/**
+ * Keeps the serialized JSON of recently read customers and of the list of all customers. Every entry is
+ * stored with the version it has been serialized from and only returned for that version, so an entry that
+ * is put after a concurrent change is never served. Changes additionally drop the affected entries to free
+ * their memory early.
+ * <p>
+ * Customers are spread over segments that are each bounded by their share of the byte budget and evict
+ * their least recently read entries first. The list is only cached while it fits into its own budget.
+ */
+final class CustomerJsonCache implements CustomerRepositoryListener {
+    /**
+     * Approximate size of the map entry, the cached value and the array header besides the JSON itself.
+     */
+    static final int ENTRY_OVERHEAD = 96;
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxListBytes;
+    private volatile CachedJson list;
+
+    /**
+     * @param maxCustomerBytes the memory budget of all customer entries; zero disables caching customers
+     * @param maxListBytes     the largest list to cache; zero disables caching the list
+     */
+    CustomerJsonCache(final long maxCustomerBytes, final long maxListBytes) {
+        for (int index = 0; index < SEGMENTS; index++) {
+            segments[index] = new Segment(maxCustomerBytes / SEGMENTS);
+        }
+        this.maxListBytes = maxListBytes;
+    }
+
+    /**
+     * @return the cached JSON of the given version of the customer, or {@code null}
+     */
+    byte[] getCustomer(final String name, final long version) {
+        return segment(name).get(name, version);
+    }
+
+    void putCustomer(final String name, final long version, final byte[] json) {
+        segment(name).put(name, version, json);
+    }
+
+    /**
+     * @return the cached JSON of the list of all customers at the given version, or {@code null}
+     */
+    byte[] getCustomers(final long version) {
+        final CachedJson cached = list;
+        return cached != null && cached.version == version ? cached.json : null;
+    }
+
+    long getMaxListBytes() {
+        return maxListBytes;
+    }
+
+    void putCustomers(final long version, final byte[] json) {
+        if (json.length <= maxListBytes) {
+            list = new CachedJson(version, json);
+        }
+    }
+
+    @Override
+    public void customerAdded(final Customer customer) {
+        list = null;
+    }
+
+    @Override
+    public void customerRemoved(final Customer customer) {
+        list = null;
+        segment(customer.getName()).remove(customer.getName());
+    }
+
+    long customerBytes() {
+        long bytes = 0;
+        for (final Segment segment : segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    private Segment segment(final String name) {
+        final int hash = name.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static long weight(final byte[] json) {
+        return json.length + ENTRY_OVERHEAD;
+    }
+
+    private static final class CachedJson {
+        private final long version;
+        private final byte[] json;
+
+        private CachedJson(final long version, final byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private static final class Segment {
+        private final LinkedHashMap<String, CachedJson> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxBytes;
+        private long bytes;
+
+        private Segment(final long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized byte[] get(final String name, final long version) {
+            final CachedJson cached = entries.get(name);
+            return cached != null && cached.version == version ? cached.json : null;
+        }
+
+        private synchronized void put(final String name, final long version, final byte[] json) {
+            final long weight = weight(json);
+            if (weight > maxBytes) {
+                return;
+            }
+            final CachedJson previous = entries.put(name, new CachedJson(version, json));
+            bytes += weight - (previous == null ? 0 : weight(previous.json));
+            final Iterator<CachedJson> leastRecentlyRead = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= weight(leastRecentlyRead.next().json);
+                leastRecentlyRead.remove();
+            }
+        }
+
+        private synchronized void remove(final String name) {
+            final CachedJson removed = entries.remove(name);
+            if (removed != null) {
+                bytes -= weight(removed.json);
+            }
+        }
+
+        private synchronized long bytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.tutorial.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Maps versions to strong entity tags and back. Versions start over when the application is restarted, so
+ * every tag carries a random epoch and tags of earlier runs never match. Representations other than JSON
+ * append a variant to the tag, since a strong tag must only match identical bytes.
+ */
+final class EntityTags {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+    private static final char VARIANT_SEPARATOR = '-';
+
+    private final String prefix;
+
+    EntityTags() {
+        this(Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36));
+    }
+
+    EntityTags(final String epoch) {
+        this.prefix = "\"" + epoch + "-";
+    }
+
+    String of(final long version) {
+        return prefix + version + "\"";
+    }
+
+    /**
+     * @param variant the variant of the representation, {@code null} for JSON
+     */
+    String of(final long version, final String variant) {
+        return variant == null ? of(version) : prefix + version + VARIANT_SEPARATOR + variant + "\"";
+    }
+
+    boolean noneMatchFails(final String ifNoneMatch, final long version) {
+        return noneMatchFails(ifNoneMatch, version, null);
+    }
+
+    /**
+     * Evaluates an {@code If-None-Match} header with the weak comparison.
+     */
+    boolean noneMatchFails(final String ifNoneMatch, final long version, final String variant) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals(ANY)) {
+            return true;
+        }
+        final String tag = of(version, variant);
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = candidate.trim();
+            final String opaqueTag =
+                trimmed.startsWith(WEAK_PREFIX) ? trimmed.substring(WEAK_PREFIX.length()) : trimmed;
+            if (opaqueTag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isAny(final String ifMatch) {
+        return ifMatch == null || ifMatch.trim().equals(ANY);
+    }
+
+    /**
+     * @return the versions of the strong tags of an {@code If-Match} header that have been issued by this
+     * instance, whatever their variant; weak and foreign tags can never match
+     */
+    Collection<Long> versionsOf(final String ifMatch) {
+        final List<Long> versions = new ArrayList<>(1);
+        for (final String candidate : ifMatch.split(",")) {
+            final String tag = candidate.trim();
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                final int variantStart = tag.indexOf(VARIANT_SEPARATOR, prefix.length());
+                final int versionEnd = variantStart < 0 ? tag.length() - 1 : variantStart;
+                try {
+                    versions.add(Long.parseLong(tag.substring(prefix.length(), versionEnd)));
+                } catch (final NumberFormatException ignored) {
+                    // a tag that has not been issued by this instance
+                }
+            }
+        }
+        return versions;
+    }
+}
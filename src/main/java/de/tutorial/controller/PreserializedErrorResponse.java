@@ -0,0 +1,140 @@
+package de.tutorial.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.util.BufferRecyclers;
+
+import de.tutorial.model.ErrorResponse;
+
+/**
+ * Renders the JSON of an {@link ErrorResponse} with a constant hint. Everything but the reason is encoded
+ * once, so a response costs a single byte array plus the quoted reason instead of a serializer run. A body
+ * created for the message of an exception also encodes the text of the reason around its single argument,
+ * so the reason is rendered from the argument without building the message.
+ */
+final class PreserializedErrorResponse {
+    private static final byte[] PREFIX = "{\"reason\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final String NAME_ARGUMENT = "\u0000";
+    private static final int NUMBER_ARGUMENT = Integer.MIN_VALUE;
+
+    private final String hint;
+    private final byte[] reasonStart;
+    private final byte[] reasonEnd;
+    private final byte[] suffix;
+
+    PreserializedErrorResponse(final String hint) {
+        this(hint, "", "");
+    }
+
+    private PreserializedErrorResponse(final String hint, final String reasonStart, final String reasonEnd) {
+        this.hint = hint;
+        final JsonStringEncoder encoder = BufferRecyclers.getJsonStringEncoder();
+        this.reasonStart = encoder.quoteAsUTF8(reasonStart);
+        this.reasonEnd = encoder.quoteAsUTF8(reasonEnd);
+        final String quotedHint = new String(encoder.quoteAsString(hint));
+        this.suffix = ("\",\"hint\":\"" + quotedHint + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param message builds the reason from a name, like the {@code message} methods of the exceptions
+     */
+    static PreserializedErrorResponse forName(final Function<String, String> message, final String hint) {
+        return forArgument(message.apply(NAME_ARGUMENT), NAME_ARGUMENT, hint);
+    }
+
+    /**
+     * @param message builds the reason from a number, like the {@code message} methods of the exceptions
+     */
+    static PreserializedErrorResponse forNumber(final IntFunction<String> message, final String hint) {
+        return forArgument(message.apply(NUMBER_ARGUMENT), Integer.toString(NUMBER_ARGUMENT), hint);
+    }
+
+    private static PreserializedErrorResponse forArgument(final String reason, final String argument,
+                                                          final String hint) {
+        final int start = reason.indexOf(argument);
+        if (start < 0 || reason.indexOf(argument, start + 1) >= 0) {
+            throw new IllegalArgumentException("The reason must contain its argument once: " + reason);
+        }
+        return new PreserializedErrorResponse(hint, reason.substring(0, start),
+                                              reason.substring(start + argument.length()));
+    }
+
+    String getHint() {
+        return hint;
+    }
+
+    /**
+     * @return the body with the reason built from the argument, or with the argument as reason for a body
+     * created with a hint only
+     */
+    byte[] render(final String argument) {
+        if (isPlainAscii(argument)) {
+            final byte[] body = new byte[PREFIX.length + reasonStart.length + argument.length() + reasonEnd.length
+                                         + suffix.length];
+            int position = copy(body, 0, PREFIX);
+            position = copy(body, position, reasonStart);
+            for (int index = 0; index < argument.length(); index++) {
+                body[position++] = (byte) argument.charAt(index);
+            }
+            position = copy(body, position, reasonEnd);
+            copy(body, position, suffix);
+            return body;
+        }
+        return render(BufferRecyclers.getJsonStringEncoder().quoteAsUTF8(argument));
+    }
+
+    /**
+     * @param name the argument of the reason, or {@code null} if the exception was created with a message of
+     * its own, which is then the reason
+     */
+    byte[] render(final String name, final Exception exception) {
+        return name != null ? render(name) : renderReason(exception.getMessage());
+    }
+
+    /**
+     * @param number the argument of the reason, or a negative number if the exception was created with a
+     * message of its own, which is then the reason
+     */
+    byte[] render(final long number, final Exception exception) {
+        return number >= 0 ? render(Long.toString(number)) : renderReason(exception.getMessage());
+    }
+
+    private byte[] renderReason(final String reason) {
+        final byte[] quotedReason = BufferRecyclers.getJsonStringEncoder().quoteAsUTF8(reason);
+        final byte[] body = new byte[PREFIX.length + quotedReason.length + suffix.length];
+        copy(body, copy(body, copy(body, 0, PREFIX), quotedReason), suffix);
+        return body;
+    }
+
+    private byte[] render(final byte[] quotedArgument) {
+        final byte[] body = new byte[PREFIX.length + reasonStart.length + quotedArgument.length + reasonEnd.length
+                                     + suffix.length];
+        int position = copy(body, 0, PREFIX);
+        position = copy(body, position, reasonStart);
+        position = copy(body, position, quotedArgument);
+        position = copy(body, position, reasonEnd);
+        copy(body, position, suffix);
+        return body;
+    }
+
+    private static int copy(final byte[] body, final int position, final byte[] part) {
+        System.arraycopy(part, 0, body, position, part.length);
+        return position + part.length;
+    }
+
+    /**
+     * @return whether the string can be copied into the JSON as is, which is the case for nearly every reason
+     */
+    private static boolean isPlainAscii(final String value) {
+        for (int index = 0; index < value.length(); index++) {
+            final char character = value.charAt(index);
+            if (character < 0x20 || character > 0x7e || character == '"' || character == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
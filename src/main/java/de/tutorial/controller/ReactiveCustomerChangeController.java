@@ -0,0 +1,84 @@
+package de.tutorial.controller;
+
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.Customer;
+import de.tutorial.service.CustomerChangeFeed;
+
+/**
+ * Serves the change feed of {@link CustomerChangeController} in the {@code reactive} profile. Events are
+ * only sent as far as the connection has asked for them; the shared bytes of an event are wrapped, not
+ * copied, into the buffer of each subscriber.
+ */
+@RestController
+@RequestMapping("/customers/changes")
+@Profile("reactive")
+public class ReactiveCustomerChangeController {
+    final CustomerChangeBroadcaster broadcaster;
+
+    public ReactiveCustomerChangeController(
+        final CustomerChangeFeed changeFeed, final ObjectMapper objectMapper,
+        @Value("${customer.change-feed.threads:" + CustomerChangeController.DEFAULT_THREADS + "}") final int threads,
+        @Value("${customer.change-feed.heartbeat:" + CustomerChangeController.DEFAULT_HEARTBEAT + "}")
+        final String heartbeat) {
+        Assert.notNull(changeFeed, "CustomerChangeFeed must not be null");
+        Assert.notNull(objectMapper, "ObjectMapper must not be null");
+        this.broadcaster = new CustomerChangeBroadcaster(changeFeed, objectMapper.writerFor(Customer.class),
+                                                         threads, DurationStyle.detectAndParse(heartbeat));
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<DataBuffer>> streamChanges(
+        @RequestParam(value = "after", required = false) final String after,
+        @RequestHeader(value = CustomerChangeController.LAST_EVENT_ID, required = false) final String lastEventId,
+        final ServerHttpResponse response) throws CustomerChangesExpiredException {
+
+        final CustomerChangeBroadcaster.Subscription subscription =
+            broadcaster.subscribe(after != null ? after : lastEventId);
+        final DataBufferFactory bufferFactory = response.bufferFactory();
+        final Flux<DataBuffer> body = Flux.create(sink -> {
+            sink.onRequest(requested -> subscription.schedule());
+            sink.onDispose(subscription::cancel);
+            subscription.start(new CustomerChangeBroadcaster.Sink() {
+                @Override
+                public long demand() {
+                    return sink.requestedFromDownstream();
+                }
+
+                @Override
+                public void send(final byte[] event) {
+                    sink.next(bufferFactory.wrap(event));
+                }
+
+                @Override
+                public void close() {
+                    sink.complete();
+                }
+            });
+        });
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(body);
+    }
+
+    @PreDestroy
+    public void close() {
+        broadcaster.close();
+    }
+}
@@ -0,0 +1,393 @@
+package de.tutorial.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.BatchImportResult;
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Serves the API of {@link CustomerController} on WebFlux in the {@code reactive} profile. Reads of the
+ * in-memory store never block and run on the event loop; writes complete when the journal reports them
+ * durable, without a thread waiting for the sync. The off-heap store guards its slabs with a read-write
+ * lock, so with {@code customer.store.off-heap=true} every access to the store runs on the elastic
+ * scheduler instead, as does the batch import, since it parses the body with a blocking reader. The list of
+ * all customers is read and written one page at a time, so it never holds the event loop for long.
+ */
+@RestController
+@RequestMapping("/customers")
+@Profile("reactive")
+public class ReactiveCustomerController {
+    static final int STREAM_PAGE_SIZE = 256;
+    static final int IMPORT_PREFETCH_BUFFERS = 16;
+
+    private static final MediaType APPLICATION_NDJSON =
+        MediaType.parseMediaType(CustomerController.APPLICATION_NDJSON_VALUE);
+
+    final CustomerService customerService;
+    final ObjectWriter customerWriter;
+    final ObjectReader customerReader;
+    final EntityTags entityTags = new EntityTags();
+    final CustomerJsonCache jsonCache;
+    final Scheduler storeScheduler;
+
+    public ReactiveCustomerController(
+        final CustomerService customerService, final ObjectMapper objectMapper,
+        @Value("${customer.json-cache.max-customer-bytes:" + CustomerController.DEFAULT_JSON_CACHE_BYTES + "}")
+        final long maxCachedCustomerBytes,
+        @Value("${customer.json-cache.max-list-bytes:" + CustomerController.DEFAULT_JSON_CACHE_BYTES + "}")
+        final long maxCachedListBytes,
+        @Value("${customer.store.off-heap:false}") final boolean offHeapStore) {
+        Assert.notNull(customerService, "CustomerService must not be null");
+        Assert.notNull(objectMapper, "ObjectMapper must not be null");
+        this.customerService = customerService;
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                                          .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.customerReader = objectMapper.readerFor(Customer.class);
+        this.jsonCache = new CustomerJsonCache(maxCachedCustomerBytes, maxCachedListBytes);
+        this.storeScheduler = offHeapStore ? Schedulers.elastic() : Schedulers.immediate();
+        customerService.addListener(jsonCache);
+    }
+
+    /**
+     * Streams all customers as a JSON array one page at a time like {@link #streamCustomers}, unless the array
+     * of the current version is cached. The streamed array is cached once it is complete if it fits and the
+     * version has not changed meanwhile. Pages read after a concurrent change may already contain it, but
+     * the change has moved the version on, so the entity tag of the response never matches again.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, params = {"!limit", "!category", "!mailDomain"})
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getAllCustomers(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+        final ServerHttpResponse response) {
+
+        final DataBufferFactory bufferFactory = response.bufferFactory();
+        return Mono.fromSupplier(() -> {
+            final long version = customerService.getVersion();
+            final String etag = entityTags.of(version);
+            if (entityTags.noneMatchFails(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<Flux<DataBuffer>>build();
+            }
+            final byte[] json = jsonCache.getCustomers(version);
+            final Flux<DataBuffer> body =
+                json != null ? Flux.just(bufferFactory.wrap(json)) : jsonArray(bufferFactory, version);
+            return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+        }).subscribeOn(storeScheduler);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<?>> getCustomers(
+        @RequestParam(value = "limit", required = false) final Integer limit,
+        @RequestParam(value = "after", defaultValue = "0") final long after,
+        @RequestParam(value = "category", required = false) final Integer category,
+        @RequestParam(value = "mailDomain", required = false) final String mailDomain,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch,
+        final ServerHttpRequest request) {
+
+        final CustomerFilter filter = CustomerFilter.of(category, mailDomain);
+        return Mono.<ResponseEntity<?>>fromSupplier(() -> customers(limit, after, filter, ifNoneMatch, request))
+                   .subscribeOn(storeScheduler);
+    }
+
+    /**
+     * Streams all customers one page at a time; the next page is only read from the store when the
+     * connection has asked for more, so a slow client holds neither a thread nor more than a page.
+     */
+    @GetMapping(produces = CustomerController.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<DataBuffer>> streamCustomers(final ServerHttpResponse response) {
+        final DataBufferFactory bufferFactory = response.bufferFactory();
+        final Flux<DataBuffer> body = pages().map(customers -> writeNdjson(bufferFactory, customers))
+                                             .subscribeOn(storeScheduler);
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/search", params = "prefix", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Customer>>> searchCustomersByPrefix(
+        @RequestParam("prefix") final String prefix,
+        @RequestParam(value = "limit", defaultValue = CustomerController.DEFAULT_SEARCH_LIMIT) final int limit) {
+
+        if (limit < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.fromSupplier(() -> ResponseEntity.ok(
+            customerService.searchCustomersByPrefix(prefix, Math.min(limit, CustomerController.MAX_PAGE_SIZE))))
+                   .subscribeOn(storeScheduler);
+    }
+
+    @GetMapping(value = "/search", params = "q", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<CustomerMatch>>> searchCustomersByName(
+        @RequestParam("q") final String query,
+        @RequestParam(value = "distance", defaultValue = CustomerController.DEFAULT_SEARCH_DISTANCE)
+        final int distance,
+        @RequestParam(value = "limit", defaultValue = CustomerController.DEFAULT_SEARCH_LIMIT) final int limit) {
+
+        if (!CustomerController.isValidSearch(query, distance, limit)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return Mono.fromSupplier(() -> ResponseEntity.ok(customerService.searchCustomersByName(
+            query, distance, Math.min(limit, CustomerController.MAX_PAGE_SIZE))))
+                   .subscribeOn(storeScheduler);
+    }
+
+    @GetMapping("/{name}")
+    public Mono<ResponseEntity<byte[]>> getCustomer(
+        @PathVariable("name") final String name,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) final String ifNoneMatch) {
+
+        return Mono.defer(() -> {
+            final Optional<VersionedCustomer> customer = customerService.getVersionedCustomer(name);
+            if (!customer.isPresent()) {
+                return Mono.error(CustomerNotFoundException.forName(name));
+            }
+            return Mono.just(customer(name, customer.get(), ifNoneMatch));
+        }).subscribeOn(storeScheduler);
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Void> addCustomer(@RequestBody final Mono<Customer> customer) {
+        return customer.flatMap(added -> Mono.defer(() -> completion(customerService.addCustomerAsync(added)))
+                                             .subscribeOn(storeScheduler));
+    }
+
+    /**
+     * The body is parsed by the same blocking reader as in the servlet mode, fed from the request buffers
+     * as they arrive, so the import holds a thread of the elastic scheduler but never the whole body.
+     */
+    @PostMapping(value = "/batch",
+                 consumes = {MediaType.APPLICATION_JSON_VALUE, CustomerController.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<BatchImportResult>> importCustomers(
+        @RequestParam(value = "mode", defaultValue = "BEST_EFFORT") final BatchImportMode mode,
+        @RequestBody final Flux<DataBuffer> body) {
+
+        return Mono.fromCallable(() -> importCustomers(mode, body.toIterable(IMPORT_PREFETCH_BUFFERS).iterator()))
+                   .subscribeOn(Schedulers.elastic());
+    }
+
+    @DeleteMapping("/{name}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Void> deleteCustomer(
+        @PathVariable("name") final String name,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
+
+        return Mono.defer(() -> completion(customerService.deleteCustomerAsync(
+            name, EntityTags.isAny(ifMatch) ? null : entityTags.versionsOf(ifMatch))))
+                   .subscribeOn(storeScheduler);
+    }
+
+    private ResponseEntity<?> customers(final Integer limit, final long after, final CustomerFilter filter,
+                                        final String ifNoneMatch, final ServerHttpRequest request) {
+        if (limit != null && (limit < 1 || after < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        final long version = customerService.getVersion();
+        final String etag = entityTags.of(version);
+        if (entityTags.noneMatchFails(ifNoneMatch, version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        if (limit == null) {
+            return ResponseEntity.ok().eTag(etag).body(customerService.getCustomers(filter));
+        }
+        final int pageSize = Math.min(limit, CustomerController.MAX_PAGE_SIZE);
+        final CustomerPage page = customerService.getCustomers(filter, after, pageSize);
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        final OptionalLong nextCursor = page.getNextCursor();
+        if (nextCursor.isPresent()) {
+            final String next = UriComponentsBuilder.fromHttpRequest(request)
+                                                    .replaceQueryParam("limit", pageSize)
+                                                    .replaceQueryParam("after", nextCursor.getAsLong())
+                                                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getCustomers());
+    }
+
+    private ResponseEntity<byte[]> customer(final String name, final VersionedCustomer customer,
+                                            final String ifNoneMatch) {
+        final long version = customer.getVersion();
+        if (entityTags.noneMatchFails(ifNoneMatch, version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTags.of(version)).build();
+        }
+        byte[] json = jsonCache.getCustomer(name, version);
+        if (json == null) {
+            json = CustomerController.serialize(customerWriter, customer.getCustomer());
+            jsonCache.putCustomer(name, version, json);
+        }
+        return ResponseEntity.ok()
+                             .eTag(entityTags.of(version))
+                             .contentType(MediaType.APPLICATION_JSON_UTF8)
+                             .body(json);
+    }
+
+    /**
+     * Closing the stream also closes the buffers that have not been read, which releases them and drains
+     * the rest of the request body.
+     */
+    private ResponseEntity<BatchImportResult> importCustomers(final BatchImportMode mode,
+                                                              final Iterator<DataBuffer> buffers)
+        throws IOException, MalformedCustomerBatchException, CustomerTooLargeException {
+
+        final Enumeration<InputStream> streams = new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return buffers.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return buffers.next().asInputStream(true);
+            }
+        };
+        try (InputStream body = new SequenceInputStream(streams)) {
+            final BatchImportResult result =
+                CustomerController.importCustomers(customerService, customerReader, body, mode);
+            return ResponseEntity.status(result.isApplied() ? HttpStatus.OK : HttpStatus.CONFLICT).body(result);
+        }
+    }
+
+    /**
+     * @return the non-empty pages of all customers, each read from the store once it is requested
+     */
+    private Flux<List<Customer>> pages() {
+        return Flux.<CustomerPage, OptionalLong>generate(() -> OptionalLong.of(0), (cursor, sink) -> {
+            final CustomerPage page =
+                customerService.getCustomers(CustomerFilter.NONE, cursor.getAsLong(), STREAM_PAGE_SIZE);
+            sink.next(page);
+            if (!page.getNextCursor().isPresent()) {
+                sink.complete();
+            }
+            return page.getNextCursor();
+        }).map(CustomerPage::getCustomers).filter(customers -> !customers.isEmpty());
+    }
+
+    /**
+     * Every subscription copies the bytes it sends for the cache and drops the copy once it exceeds the
+     * budget of the cached list.
+     */
+    private Flux<DataBuffer> jsonArray(final DataBufferFactory bufferFactory, final long version) {
+        return Flux.defer(() -> {
+            final AtomicReference<ByteArrayOutputStream> copy = new AtomicReference<>(new ByteArrayOutputStream());
+            final Flux<DataBuffer> customers = pages().index().map(
+                page -> writeJsonArrayPage(bufferFactory, page.getT1() == 0, page.getT2()));
+            return Flux.concat(Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] {'['})), customers,
+                               Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] {']'})))
+                       .doOnNext(buffer -> {
+                           final ByteArrayOutputStream bytes = copy.get();
+                           if (bytes == null) {
+                               return;
+                           }
+                           if (bytes.size() + buffer.readableByteCount() > jsonCache.getMaxListBytes()) {
+                               copy.set(null);
+                               return;
+                           }
+                           final byte[] page = new byte[buffer.readableByteCount()];
+                           buffer.asByteBuffer().get(page);
+                           bytes.write(page, 0, page.length);
+                       })
+                       .doOnComplete(() -> {
+                           final ByteArrayOutputStream bytes = copy.get();
+                           if (bytes != null && customerService.getVersion() == version) {
+                               jsonCache.putCustomers(version, bytes.toByteArray());
+                           }
+                       });
+        }).subscribeOn(storeScheduler);
+    }
+
+    private DataBuffer writeJsonArrayPage(final DataBufferFactory bufferFactory, final boolean first,
+                                          final List<Customer> customers) {
+        final DataBuffer buffer = bufferFactory.allocateBuffer();
+        try (OutputStream output = buffer.asOutputStream();
+             JsonGenerator generator = customerWriter.getFactory().createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            boolean separated = first;
+            for (final Customer customer : customers) {
+                if (!separated) {
+                    generator.writeRaw(',');
+                }
+                customerWriter.writeValue(generator, customer);
+                separated = false;
+            }
+        } catch (final IOException exception) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(exception);
+        }
+        return buffer;
+    }
+
+    private DataBuffer writeNdjson(final DataBufferFactory bufferFactory, final List<Customer> customers) {
+        final DataBuffer buffer = bufferFactory.allocateBuffer();
+        try (OutputStream output = buffer.asOutputStream();
+             JsonGenerator generator = customerWriter.getFactory().createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            for (final Customer customer : customers) {
+                customerWriter.writeValue(generator, customer);
+                generator.writeRaw('\n');
+            }
+        } catch (final IOException exception) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(exception);
+        }
+        return buffer;
+    }
+
+    /**
+     * Futures of the service fail with the plain exception, dependent stages with a
+     * {@link CompletionException}; the exception handlers expect the plain one.
+     */
+    private static Mono<Void> completion(final CompletableFuture<Void> future) {
+        return Mono.fromFuture(future).onErrorMap(CompletionException.class, Throwable::getCause);
+    }
+}
@@ -0,0 +1,94 @@
+package de.tutorial.controller;
+
+import java.net.InetSocketAddress;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import de.tutorial.exception.RequestRateLimitedException;
+import de.tutorial.exception.ServiceOverloadedException;
+
+/**
+ * Puts the {@link RequestLimits} in front of the customer controllers in the {@code reactive} profile. Web
+ * filters run before the exception handlers of the controllers are in reach, so rejections are written
+ * here, with the same bodies and counters as in {@link RestControllerExceptionHandler}.
+ */
+@Configuration
+@Profile("reactive")
+@ConditionalOnProperty(prefix = "customer.limits", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(RequestLimitProperties.class)
+public class ReactiveRequestLimitConfiguration {
+
+    @Bean
+    public WebFilter requestLimitFilter(final RequestLimitProperties properties,
+                                        final ObjectProvider<MeterRegistry> meterRegistry) {
+        final MeterRegistry registry = meterRegistry.getIfAvailable(CompositeMeterRegistry::new);
+        final RequestLimits limits = new RequestLimits(properties, registry);
+        final Counter rateLimitedCounter = RestControllerExceptionHandler.errorCounter(registry, "rateLimited");
+        final Counter overloadedCounter = RestControllerExceptionHandler.errorCounter(registry, "overloaded");
+        return (exchange, chain) -> filter(limits, exchange, chain, rateLimitedCounter, overloadedCounter);
+    }
+
+    private static Mono<Void> filter(final RequestLimits limits, final ServerWebExchange exchange,
+                                     final WebFilterChain chain, final Counter rateLimitedCounter,
+                                     final Counter overloadedCounter) {
+        final ServerHttpRequest request = exchange.getRequest();
+        final RequestLimits.Route route =
+            limits.route(request.getMethodValue(), request.getPath().pathWithinApplication());
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        final long now = System.nanoTime();
+        final boolean concurrencyLimited;
+        try {
+            concurrencyLimited = limits.admit(route, client(request), now);
+        } catch (final RequestRateLimitedException exception) {
+            rateLimitedCounter.increment();
+            final long retryAfterSeconds = exception.getRetryAfterSeconds();
+            return reject(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds,
+                          RestControllerExceptionHandler.RATE_LIMITED_BODY.render(retryAfterSeconds, exception));
+        } catch (final ServiceOverloadedException exception) {
+            overloadedCounter.increment();
+            return reject(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE,
+                          RestControllerExceptionHandler.OVERLOADED_RETRY_AFTER_SECONDS,
+                          RestControllerExceptionHandler.OVERLOADED_BODY.render(exception.getLimit(), exception));
+        }
+        if (!concurrencyLimited) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).doFinally(signal -> limits.release(now));
+    }
+
+    private static String client(final ServerHttpRequest request) {
+        final InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return "";
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+    private static Mono<Void> reject(final ServerHttpResponse response, final HttpStatus status,
+                                     final long retryAfterSeconds, final byte[] body) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,110 @@
+package de.tutorial.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.exception.ServiceOverloadedException;
+import de.tutorial.model.ErrorResponse;
+
+/**
+ * Answers with the same bodies and counts the same errors as {@link RestControllerExceptionHandler} in the
+ * {@code reactive} profile.
+ */
+@ControllerAdvice
+@Profile("reactive")
+public class ReactiveRestControllerExceptionHandler {
+    private final Counter notFoundCounter;
+    private final Counter alreadyExistsCounter;
+    private final Counter versionMismatchCounter;
+    private final Counter changesExpiredCounter;
+    private final Counter tooLargeCounter;
+    private final Counter malformedBatchCounter;
+    private final Counter overloadedCounter;
+
+    public ReactiveRestControllerExceptionHandler(final ObjectProvider<MeterRegistry> meterRegistry) {
+        final MeterRegistry registry = meterRegistry.getIfAvailable(CompositeMeterRegistry::new);
+        this.notFoundCounter = RestControllerExceptionHandler.errorCounter(registry, "notFound");
+        this.alreadyExistsCounter = RestControllerExceptionHandler.errorCounter(registry, "alreadyExists");
+        this.versionMismatchCounter = RestControllerExceptionHandler.errorCounter(registry, "versionMismatch");
+        this.changesExpiredCounter = RestControllerExceptionHandler.errorCounter(registry, "changesExpired");
+        this.tooLargeCounter = RestControllerExceptionHandler.errorCounter(registry, "tooLarge");
+        this.malformedBatchCounter = RestControllerExceptionHandler.errorCounter(registry, "malformedBatch");
+        this.overloadedCounter = RestControllerExceptionHandler.errorCounter(registry, "overloaded");
+    }
+
+    @ExceptionHandler(value = {CustomerNotFoundException.class})
+    protected ResponseEntity<byte[]> handleCustomerNotFound(final CustomerNotFoundException exception) {
+        notFoundCounter.increment();
+        return json(HttpStatus.NOT_FOUND,
+                    RestControllerExceptionHandler.NOT_FOUND_BODY.render(exception.getName(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerAlreadyExistsException.class})
+    protected ResponseEntity<byte[]> handleCustomerAlreadyExists(final CustomerAlreadyExistsException exception) {
+        alreadyExistsCounter.increment();
+        return json(HttpStatus.CONFLICT,
+                    RestControllerExceptionHandler.ALREADY_EXISTS_BODY.render(exception.getName(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerVersionMismatchException.class})
+    protected ResponseEntity<byte[]> handleCustomerVersionMismatch(final CustomerVersionMismatchException exception) {
+        versionMismatchCounter.increment();
+        return json(HttpStatus.PRECONDITION_FAILED,
+                    RestControllerExceptionHandler.VERSION_MISMATCH_BODY.render(exception.getName(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerChangesExpiredException.class})
+    protected ResponseEntity<byte[]> handleCustomerChangesExpired(final CustomerChangesExpiredException exception) {
+        changesExpiredCounter.increment();
+        return json(HttpStatus.GONE, RestControllerExceptionHandler.CHANGES_EXPIRED_BODY
+                                         .render(exception.getAfterEventId(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerTooLargeException.class})
+    protected ResponseEntity<byte[]> handleCustomerTooLarge(final CustomerTooLargeException exception) {
+        tooLargeCounter.increment();
+        return json(HttpStatus.BAD_REQUEST,
+                    RestControllerExceptionHandler.TOO_LARGE_BODY.render(exception.getLimit(), exception));
+    }
+
+    /**
+     * Changes rejected because the queue of the customer writer is full.
+     */
+    @ExceptionHandler(value = {ServiceOverloadedException.class})
+    protected ResponseEntity<byte[]> handleServiceOverloaded(final ServiceOverloadedException exception) {
+        overloadedCounter.increment();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER,
+                                     Long.toString(RestControllerExceptionHandler.OVERLOADED_RETRY_AFTER_SECONDS))
+                             .contentType(MediaType.APPLICATION_JSON_UTF8)
+                             .body(RestControllerExceptionHandler.OVERLOADED_BODY.render(exception.getLimit(),
+                                                                                         exception));
+    }
+
+    @ExceptionHandler(value = {MalformedCustomerBatchException.class})
+    protected ResponseEntity<ErrorResponse> handleMalformedBatch(final MalformedCustomerBatchException exception) {
+        malformedBatchCounter.increment();
+        final ErrorResponse response =
+            new ErrorResponse(exception.getMessage(), RestControllerExceptionHandler.MALFORMED_BATCH_HINT);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    private static ResponseEntity<byte[]> json(final HttpStatus status, final byte[] body) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON_UTF8).body(body);
+    }
+}
@@ -0,0 +1,35 @@
+package de.tutorial.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the {@link RequestLimits} in front of the customer controllers in the servlet mode.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "customer.limits", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(RequestLimitProperties.class)
+public class RequestLimitConfiguration implements WebMvcConfigurer {
+    private final RequestLimits limits;
+
+    /**
+     * Uses the registry of the application if there is one; sliced test contexts run without.
+     */
+    public RequestLimitConfiguration(final RequestLimitProperties properties,
+                                     final ObjectProvider<MeterRegistry> meterRegistry) {
+        this.limits = new RequestLimits(properties, meterRegistry.getIfAvailable(CompositeMeterRegistry::new));
+    }
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(new RequestLimitInterceptor(limits)).addPathPatterns("/customers", "/customers/**");
+    }
+}
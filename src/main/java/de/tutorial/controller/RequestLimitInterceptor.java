@@ -0,0 +1,54 @@
+package de.tutorial.controller;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Applies the {@link RequestLimits} before a handler runs. Rejections are thrown from here, so they are
+ * answered by {@link RestControllerExceptionHandler} like every other error. A request handled
+ * asynchronously keeps its place in the concurrency limit until it is dispatched back and completed.
+ */
+final class RequestLimitInterceptor implements HandlerInterceptor {
+    private static final String ADMITTED_ATTRIBUTE = RequestLimitInterceptor.class.getName() + ".admitted";
+
+    private final RequestLimits limits;
+
+    RequestLimitInterceptor(final RequestLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+                             final Object handler) throws Exception {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        final Object lookupPath = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        final RequestLimits.Route route = limits.route(
+            request.getMethod(), PathContainer.parsePath(lookupPath != null ? lookupPath.toString()
+                                                                            : request.getRequestURI()));
+        if (route == null) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        if (limits.admit(route, request.getRemoteAddr(), now)) {
+            request.setAttribute(ADMITTED_ATTRIBUTE, now);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+                                final Object handler, final Exception exception) {
+        final Object admitted = request.getAttribute(ADMITTED_ATTRIBUTE);
+        if (admitted != null && !request.isAsyncStarted()) {
+            request.removeAttribute(ADMITTED_ATTRIBUTE);
+            limits.release((Long) admitted);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.tutorial.controller;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "customer.limits")
+public class RequestLimitProperties {
+    /**
+     * Whether requests are rate limited per client and shed when the service is overloaded.
+     */
+    private boolean enabled;
+
+    /**
+     * The number of clients whose rate is tracked per route before idle ones are dropped.
+     */
+    private int maxClients = 100_000;
+
+    /**
+     * The limited routes; a request is limited by the first route it matches, or not at all.
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    private final Concurrency concurrency = new Concurrency();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(final int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(final List<Route> routes) {
+        this.routes = routes;
+    }
+
+    public Concurrency getConcurrency() {
+        return concurrency;
+    }
+
+    public static class Route {
+        /**
+         * The HTTP method of the route; any method if not set.
+         */
+        private String method;
+
+        /**
+         * The path pattern of the route, such as {@code /customers/{name}}.
+         */
+        private String path;
+
+        /**
+         * The requests per second allowed per client; zero disables rate limiting.
+         */
+        private double rate;
+
+        /**
+         * The requests a client may send at once after being idle.
+         */
+        private int burst = 1;
+
+        /**
+         * Whether requests count towards the concurrency limit; disable it for long lived streams.
+         */
+        private boolean concurrencyLimited = true;
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(final String method) {
+            this.method = method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(final String path) {
+            this.path = path;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(final double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(final int burst) {
+            this.burst = burst;
+        }
+
+        public boolean isConcurrencyLimited() {
+            return concurrencyLimited;
+        }
+
+        public void setConcurrencyLimited(final boolean concurrencyLimited) {
+            this.concurrencyLimited = concurrencyLimited;
+        }
+    }
+
+    public static class Concurrency {
+        /**
+         * Whether requests are shed once the adaptive concurrency limit is reached.
+         */
+        private boolean enabled = true;
+
+        private int initialLimit = 64;
+
+        private int minLimit = 8;
+
+        private int maxLimit = 1000;
+
+        /**
+         * How many times the long term average latency requests may take before the limit shrinks.
+         */
+        private double tolerance = 2.0;
+
+        /**
+         * The interval in which the limit is adapted to the average latency.
+         */
+        private Duration window = Duration.ofMillis(250);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(final int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(final int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(final int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(final double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(final Duration window) {
+            this.window = window;
+        }
+    }
+}
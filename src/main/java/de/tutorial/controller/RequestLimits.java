@@ -0,0 +1,107 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.Assert;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import de.tutorial.exception.RequestRateLimitedException;
+import de.tutorial.exception.ServiceOverloadedException;
+
+/**
+ * Admits requests to the configured routes, for the servlet and the reactive mode alike. A request is first
+ * checked against the rate of its client on the route and then against the concurrency limit shared by all
+ * routes, so a client hammering one route is rejected before it takes capacity from the others.
+ */
+final class RequestLimits {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Route[] routes;
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    RequestLimits(final RequestLimitProperties properties, final MeterRegistry meterRegistry) {
+        Assert.notNull(properties, "RequestLimitProperties must not be null");
+        Assert.notNull(meterRegistry, "MeterRegistry must not be null");
+        final PathPatternParser parser = new PathPatternParser();
+        this.routes = properties.getRoutes()
+                                .stream()
+                                .map(route -> new Route(route, parser.parse(route.getPath()),
+                                                        properties.getMaxClients()))
+                                .toArray(Route[]::new);
+        final RequestLimitProperties.Concurrency concurrency = properties.getConcurrency();
+        if (concurrency.isEnabled()) {
+            this.concurrencyLimiter = new ConcurrencyLimiter(
+                concurrency.getInitialLimit(), concurrency.getMinLimit(), concurrency.getMaxLimit(),
+                concurrency.getTolerance(), concurrency.getWindow().toNanos());
+            Gauge.builder("customer.requests.limit", concurrencyLimiter, ConcurrencyLimiter::getLimit)
+                 .description("The adaptive limit of requests handled at the same time")
+                 .register(meterRegistry);
+            Gauge.builder("customer.requests.in-flight", concurrencyLimiter, ConcurrencyLimiter::getInFlight)
+                 .description("The requests counting towards the concurrency limit")
+                 .register(meterRegistry);
+        } else {
+            this.concurrencyLimiter = null;
+        }
+    }
+
+    /**
+     * @return the first route matching the request, or {@code null} if it is not limited
+     */
+    Route route(final String method, final PathContainer path) {
+        for (final Route route : routes) {
+            if ((route.method == null || route.method.equalsIgnoreCase(method)) && route.pattern.matches(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Admits a request received at {@code now}. If the request counts towards the concurrency limit,
+     * {@link #release} has to be called with the same time once it is completed.
+     *
+     * @return whether the request counts towards the concurrency limit
+     */
+    boolean admit(final Route route, final String client, final long now)
+        throws RequestRateLimitedException, ServiceOverloadedException {
+
+        if (route.rateLimiter != null) {
+            final long wait = route.rateLimiter.tryAcquire(client, now);
+            if (wait > 0) {
+                throw RequestRateLimitedException.retryAfter((wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+            }
+        }
+        if (concurrencyLimiter == null || !route.concurrencyLimited) {
+            return false;
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            throw ServiceOverloadedException.withLimit(concurrencyLimiter.getLimit());
+        }
+        return true;
+    }
+
+    void release(final long admitted) {
+        final long now = System.nanoTime();
+        concurrencyLimiter.release(now - admitted, now);
+    }
+
+    static final class Route {
+        private final String method;
+        private final PathPattern pattern;
+        private final RequestRateLimiter rateLimiter;
+        private final boolean concurrencyLimited;
+
+        private Route(final RequestLimitProperties.Route route, final PathPattern pattern, final int maxClients) {
+            this.method = route.getMethod();
+            this.pattern = pattern;
+            this.rateLimiter = route.getRate() > 0
+                ? new RequestRateLimiter(route.getRate(), route.getBurst(), maxClients)
+                : null;
+            this.concurrencyLimited = route.isConcurrencyLimited();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * A token bucket per client, holding up to {@code burst} requests and refilled with {@code rate} requests
+ * per second. Each bucket is a single {@link AtomicLong} with the time at which it will be full again, so
+ * taking a token is one compare-and-set and never allocates for a known client.
+ * <p>
+ * Full buckets carry no information and are dropped once more than {@code maxClients} are kept, at most
+ * once per second. A client whose bucket is dropped while it takes a token may get one extra burst.
+ */
+final class RequestRateLimiter {
+    private static final long EVICTION_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final long interval;
+    private final long tolerance;
+    private final int maxClients;
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+
+    RequestRateLimiter(final double rate, final int burst, final int maxClients) {
+        Assert.isTrue(rate > 0, "The rate must be positive");
+        Assert.isTrue(burst >= 1, "The burst must be at least 1");
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.tolerance = interval * burst;
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Takes a token from the bucket of the client.
+     *
+     * @return zero if the request is allowed, otherwise the nanoseconds until the bucket holds a token again
+     */
+    long tryAcquire(final String client, final long now) {
+        AtomicLong fullAt = buckets.get(client);
+        if (fullAt == null) {
+            if (buckets.size() >= maxClients) {
+                evictFullBuckets(now);
+            }
+            fullAt = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        }
+        while (true) {
+            final long current = fullAt.get();
+            final long next = Math.max(current, now) + interval;
+            final long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    int clients() {
+        return buckets.size();
+    }
+
+    private void evictFullBuckets(final long now) {
+        final long scheduled = nextEviction.get();
+        if (now - scheduled >= 0 && nextEviction.compareAndSet(scheduled, now + EVICTION_INTERVAL)) {
+            buckets.values().removeIf(fullAt -> fullAt.get() - now <= 0);
+        }
+    }
+}
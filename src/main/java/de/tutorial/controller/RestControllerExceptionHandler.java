@@ -1,28 +1,197 @@
 package de.tutorial.controller;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.CustomerChangesExpiredException;
 import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.exception.RequestRateLimitedException;
+import de.tutorial.exception.ServiceOverloadedException;
 import de.tutorial.model.ErrorResponse;
 
 @ControllerAdvice
+@Profile("!reactive")
 public class RestControllerExceptionHandler {
     static final String NOT_FOUND_HINT = "Consider calling GET /customers to receive a list of all available customers";
     static final String ALREADY_EXISTS_HINT = NOT_FOUND_HINT;
+    static final String VERSION_MISMATCH_HINT =
+        "Call GET /customers/<name> to receive the current ETag of the customer before retrying";
+    static final String CHANGES_EXPIRED_HINT =
+        "Call GET /customers to receive all customers, then follow GET /customers/changes without a sequence";
+    static final String TOO_LARGE_HINT = "Shorten the name or the mail address of the customer";
+    static final String MALFORMED_BATCH_HINT =
+        "Send either a JSON array of customers or one JSON customer per line as application/x-ndjson";
+    static final String RATE_LIMITED_HINT =
+        "Wait for the seconds in the Retry-After header; poll with If-None-Match or follow GET /customers/changes";
+    static final String OVERLOADED_HINT = "Retry after the seconds in the Retry-After header";
+    static final long OVERLOADED_RETRY_AFTER_SECONDS = 1;
+
+    static final PreserializedErrorResponse NOT_FOUND_BODY =
+        PreserializedErrorResponse.forName(CustomerNotFoundException::message, NOT_FOUND_HINT);
+    static final PreserializedErrorResponse ALREADY_EXISTS_BODY =
+        PreserializedErrorResponse.forName(CustomerAlreadyExistsException::message, ALREADY_EXISTS_HINT);
+    static final PreserializedErrorResponse VERSION_MISMATCH_BODY =
+        PreserializedErrorResponse.forName(CustomerVersionMismatchException::message, VERSION_MISMATCH_HINT);
+    static final PreserializedErrorResponse CHANGES_EXPIRED_BODY =
+        PreserializedErrorResponse.forName(CustomerChangesExpiredException::message, CHANGES_EXPIRED_HINT);
+    static final PreserializedErrorResponse TOO_LARGE_BODY =
+        PreserializedErrorResponse.forNumber(CustomerTooLargeException::message, TOO_LARGE_HINT);
+    static final PreserializedErrorResponse RATE_LIMITED_BODY =
+        PreserializedErrorResponse.forNumber(RequestRateLimitedException::message, RATE_LIMITED_HINT);
+    static final PreserializedErrorResponse OVERLOADED_BODY =
+        PreserializedErrorResponse.forNumber(ServiceOverloadedException::message, OVERLOADED_HINT);
+
+    private final Counter notFoundCounter;
+    private final Counter alreadyExistsCounter;
+    private final Counter versionMismatchCounter;
+    private final Counter changesExpiredCounter;
+    private final Counter tooLargeCounter;
+    private final Counter malformedBatchCounter;
+    private final Counter rateLimitedCounter;
+    private final Counter overloadedCounter;
+
+    public RestControllerExceptionHandler() {
+        this(new CompositeMeterRegistry());
+    }
+
+    /**
+     * Uses the registry of the application if there is one; sliced test contexts run without.
+     */
+    @Autowired
+    public RestControllerExceptionHandler(final ObjectProvider<MeterRegistry> meterRegistry) {
+        this(meterRegistry.getIfAvailable(CompositeMeterRegistry::new));
+    }
+
+    RestControllerExceptionHandler(final MeterRegistry meterRegistry) {
+        this.notFoundCounter = errorCounter(meterRegistry, "notFound");
+        this.alreadyExistsCounter = errorCounter(meterRegistry, "alreadyExists");
+        this.versionMismatchCounter = errorCounter(meterRegistry, "versionMismatch");
+        this.changesExpiredCounter = errorCounter(meterRegistry, "changesExpired");
+        this.tooLargeCounter = errorCounter(meterRegistry, "tooLarge");
+        this.malformedBatchCounter = errorCounter(meterRegistry, "malformedBatch");
+        this.rateLimitedCounter = errorCounter(meterRegistry, "rateLimited");
+        this.overloadedCounter = errorCounter(meterRegistry, "overloaded");
+    }
 
     @ExceptionHandler(value = {CustomerNotFoundException.class})
-    protected ResponseEntity<ErrorResponse> handleCustomerNotFound(final CustomerNotFoundException exception) {
-        final ErrorResponse response = new ErrorResponse(exception.getMessage(), NOT_FOUND_HINT);
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    protected void handleCustomerNotFound(final CustomerNotFoundException exception,
+                                          final HttpServletRequest request,
+                                          final HttpServletResponse response) throws IOException {
+        notFoundCounter.increment();
+        writeError(request, response, HttpStatus.NOT_FOUND, NOT_FOUND_BODY, exception,
+                   NOT_FOUND_BODY.render(exception.getName(), exception));
     }
 
     @ExceptionHandler(value = {CustomerAlreadyExistsException.class})
-    protected ResponseEntity<ErrorResponse> handleCustomerAlreadyExists(final CustomerAlreadyExistsException exception) {
-        final ErrorResponse response = new ErrorResponse(exception.getMessage(), ALREADY_EXISTS_HINT);
-        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    protected void handleCustomerAlreadyExists(final CustomerAlreadyExistsException exception,
+                                               final HttpServletRequest request,
+                                               final HttpServletResponse response) throws IOException {
+        alreadyExistsCounter.increment();
+        writeError(request, response, HttpStatus.CONFLICT, ALREADY_EXISTS_BODY, exception,
+                   ALREADY_EXISTS_BODY.render(exception.getName(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerVersionMismatchException.class})
+    protected void handleCustomerVersionMismatch(final CustomerVersionMismatchException exception,
+                                                 final HttpServletRequest request,
+                                                 final HttpServletResponse response) throws IOException {
+        versionMismatchCounter.increment();
+        writeError(request, response, HttpStatus.PRECONDITION_FAILED, VERSION_MISMATCH_BODY, exception,
+                   VERSION_MISMATCH_BODY.render(exception.getName(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerChangesExpiredException.class})
+    protected void handleCustomerChangesExpired(final CustomerChangesExpiredException exception,
+                                                final HttpServletRequest request,
+                                                final HttpServletResponse response) throws IOException {
+        changesExpiredCounter.increment();
+        writeError(request, response, HttpStatus.GONE, CHANGES_EXPIRED_BODY, exception,
+                   CHANGES_EXPIRED_BODY.render(exception.getAfterEventId(), exception));
+    }
+
+    @ExceptionHandler(value = {CustomerTooLargeException.class})
+    protected void handleCustomerTooLarge(final CustomerTooLargeException exception,
+                                          final HttpServletRequest request,
+                                          final HttpServletResponse response) throws IOException {
+        tooLargeCounter.increment();
+        writeError(request, response, HttpStatus.BAD_REQUEST, TOO_LARGE_BODY, exception,
+                   TOO_LARGE_BODY.render(exception.getLimit(), exception));
+    }
+
+    @ExceptionHandler(value = {RequestRateLimitedException.class})
+    protected void handleRequestRateLimited(final RequestRateLimitedException exception,
+                                            final HttpServletRequest request,
+                                            final HttpServletResponse response) throws IOException {
+        rateLimitedCounter.increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(exception.getRetryAfterSeconds()));
+        writeError(request, response, HttpStatus.TOO_MANY_REQUESTS, RATE_LIMITED_BODY, exception,
+                   RATE_LIMITED_BODY.render(exception.getRetryAfterSeconds(), exception));
+    }
+
+    @ExceptionHandler(value = {ServiceOverloadedException.class})
+    protected void handleServiceOverloaded(final ServiceOverloadedException exception,
+                                           final HttpServletRequest request,
+                                           final HttpServletResponse response) throws IOException {
+        overloadedCounter.increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(OVERLOADED_RETRY_AFTER_SECONDS));
+        writeError(request, response, HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED_BODY, exception,
+                   OVERLOADED_BODY.render(exception.getLimit(), exception));
+    }
+
+    @ExceptionHandler(value = {MalformedCustomerBatchException.class})
+    protected ResponseEntity<ErrorResponse> handleMalformedBatch(final MalformedCustomerBatchException exception) {
+        malformedBatchCounter.increment();
+        final ErrorResponse response = new ErrorResponse(exception.getMessage(), MALFORMED_BATCH_HINT);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    static Counter errorCounter(final MeterRegistry meterRegistry, final String reason) {
+        return Counter.builder("customer.errors")
+                      .tag("reason", reason)
+                      .description("Requests answered with an error response")
+                      .register(meterRegistry);
+    }
+
+    /**
+     * Writes the body without a {@link ResponseEntity} and the message converters, since misses are frequent
+     * and their JSON is already serialized. Clients that asked for a {@link BinaryFormat} get the error in it.
+     */
+    private static void writeError(final HttpServletRequest request, final HttpServletResponse response,
+                                   final HttpStatus status, final PreserializedErrorResponse body,
+                                   final Exception exception, final byte[] json) throws IOException {
+        final BinaryFormat format = BinaryFormat.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        if (format == null) {
+            write(response, status, MediaType.APPLICATION_JSON_UTF8_VALUE, json);
+        } else {
+            write(response, status, format.getMediaTypeValue(),
+                  format.writeError(new ErrorResponse(exception.getMessage(), body.getHint())));
+        }
+    }
+
+    private static void write(final HttpServletResponse response, final HttpStatus status,
+                              final String contentType, final byte[] body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
     }
 }
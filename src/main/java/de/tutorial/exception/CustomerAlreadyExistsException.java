@@ -1,7 +1,43 @@
 package de.tutorial.exception;
 
+/**
+ * Thrown for every attempt to add a customer whose name is already taken. Like
+ * {@link CustomerNotFoundException} it captures no stack trace and builds its message lazily.
+ */
 public class CustomerAlreadyExistsException extends Exception {
+    private final String name;
+    private String message;
+
     public CustomerAlreadyExistsException(final String message) {
-        super(message);
+        this(null, message);
+    }
+
+    private CustomerAlreadyExistsException(final String name, final String message) {
+        super(null, null, false, false);
+        this.name = name;
+        this.message = message;
+    }
+
+    public static CustomerAlreadyExistsException forName(final String name) {
+        return new CustomerAlreadyExistsException(name, null);
+    }
+
+    public static String message(final String name) {
+        return "A customer with name " + name + " already exists";
+    }
+
+    /**
+     * @return the name of the existing customer, or {@code null} if the exception was created with a message
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(name);
+        }
+        return message;
     }
 }
@@ -0,0 +1,45 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when a consumer of the change feed resumes after a change that is no longer retained, because it
+ * has been overwritten by newer changes or was published before the application restarted. Like
+ * {@link CustomerNotFoundException} it captures no stack trace and builds its message lazily.
+ */
+public class CustomerChangesExpiredException extends Exception {
+    private final String afterEventId;
+    private String message;
+
+    public CustomerChangesExpiredException(final String message) {
+        this(null, message);
+    }
+
+    private CustomerChangesExpiredException(final String afterEventId, final String message) {
+        super(null, null, false, false);
+        this.afterEventId = afterEventId;
+        this.message = message;
+    }
+
+    public static CustomerChangesExpiredException after(final String afterEventId) {
+        return new CustomerChangesExpiredException(afterEventId, null);
+    }
+
+    public static String message(final String afterEventId) {
+        return "The changes after " + afterEventId + " are no longer available";
+    }
+
+    /**
+     * @return the id of the event the changes were requested after, or {@code null} if the exception was
+     * created with a message
+     */
+    public String getAfterEventId() {
+        return afterEventId;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(afterEventId);
+        }
+        return message;
+    }
+}
@@ -1,7 +1,43 @@
 package de.tutorial.exception;
 
+/**
+ * Thrown for every request of a missing customer, which is a regular outcome rather than a failure. The
+ * exception therefore captures no stack trace and only builds its message when it is requested.
+ */
 public class CustomerNotFoundException extends Exception {
+    private final String name;
+    private String message;
+
     public CustomerNotFoundException(final String message) {
-        super(message);
+        this(null, message);
+    }
+
+    private CustomerNotFoundException(final String name, final String message) {
+        super(null, null, false, false);
+        this.name = name;
+        this.message = message;
+    }
+
+    public static CustomerNotFoundException forName(final String name) {
+        return new CustomerNotFoundException(name, null);
+    }
+
+    public static String message(final String name) {
+        return "A customer with name " + name + " does not exist";
+    }
+
+    /**
+     * @return the name of the missing customer, or {@code null} if the exception was created with a message
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(name);
+        }
+        return message;
     }
 }
@@ -0,0 +1,43 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when the name or the mail address of a customer to add is longer than every store and the journal
+ * accept. Like {@link CustomerNotFoundException} it captures no stack trace and builds its message lazily.
+ */
+public class CustomerTooLargeException extends Exception {
+    private final int limit;
+    private String message;
+
+    public CustomerTooLargeException(final String message) {
+        this(-1, message);
+    }
+
+    private CustomerTooLargeException(final int limit, final String message) {
+        super(null, null, false, false);
+        this.limit = limit;
+        this.message = message;
+    }
+
+    public static CustomerTooLargeException withLimit(final int limit) {
+        return new CustomerTooLargeException(limit, null);
+    }
+
+    public static String message(final int limit) {
+        return "The name and the mail address of a customer are limited to " + limit + " bytes of UTF-8 each";
+    }
+
+    /**
+     * @return the limit that has been exceeded, or {@code -1} if the exception was created with a message
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(limit);
+        }
+        return message;
+    }
+}
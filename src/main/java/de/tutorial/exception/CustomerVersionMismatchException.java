@@ -0,0 +1,43 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when a conditional change expected another version of a customer than the stored one. Like
+ * {@link CustomerNotFoundException} it captures no stack trace and builds its message lazily.
+ */
+public class CustomerVersionMismatchException extends Exception {
+    private final String name;
+    private String message;
+
+    public CustomerVersionMismatchException(final String message) {
+        this(null, message);
+    }
+
+    private CustomerVersionMismatchException(final String name, final String message) {
+        super(null, null, false, false);
+        this.name = name;
+        this.message = message;
+    }
+
+    public static CustomerVersionMismatchException forName(final String name) {
+        return new CustomerVersionMismatchException(name, null);
+    }
+
+    public static String message(final String name) {
+        return "The customer with name " + name + " has been modified";
+    }
+
+    /**
+     * @return the name of the modified customer, or {@code null} if the exception was created with a message
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(name);
+        }
+        return message;
+    }
+}
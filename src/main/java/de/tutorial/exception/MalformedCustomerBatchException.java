@@ -0,0 +1,59 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when the body of a batch import cannot be read as customers. The message only names where the
+ * batch stopped being readable, so nothing of the parser or of the body is echoed to the client. Like
+ * {@link CustomerNotFoundException} it captures no stack trace and builds its message lazily.
+ */
+public class MalformedCustomerBatchException extends Exception {
+    private final long index;
+    private final int line;
+    private String message;
+
+    public MalformedCustomerBatchException(final String message) {
+        this(-1, -1, message);
+    }
+
+    private MalformedCustomerBatchException(final long index, final int line, final String message) {
+        super(null, null, false, false);
+        this.index = index;
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * @param index the position of the customer in the batch, starting at 0
+     * @param line  the line of the body, starting at 1, or a negative number if it is not known
+     */
+    public static MalformedCustomerBatchException at(final long index, final int line) {
+        return new MalformedCustomerBatchException(index, line, null);
+    }
+
+    public static String message(final long index, final int line) {
+        final String customer = "Customer " + index + " of the batch";
+        return line > 0 ? customer + " at line " + line + " is malformed" : customer + " is malformed";
+    }
+
+    /**
+     * @return the position of the malformed customer, or {@code -1} if the exception was created with a
+     * message
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the line of the malformed customer, or {@code -1} if it is not known
+     */
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(index, line);
+        }
+        return message;
+    }
+}
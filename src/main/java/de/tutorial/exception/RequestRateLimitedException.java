@@ -0,0 +1,42 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when a client sends more requests to a route than its rate limit allows. Rejections are most
+ * frequent exactly when the service is under pressure, so like {@link CustomerNotFoundException} it captures
+ * no stack trace and builds its message lazily.
+ */
+public class RequestRateLimitedException extends Exception {
+    private final long retryAfterSeconds;
+    private String message;
+
+    public RequestRateLimitedException(final String message) {
+        this(1, message);
+    }
+
+    private RequestRateLimitedException(final long retryAfterSeconds, final String message) {
+        super(null, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.message = message;
+    }
+
+    public static RequestRateLimitedException retryAfter(final long retryAfterSeconds) {
+        return new RequestRateLimitedException(retryAfterSeconds, null);
+    }
+
+    public static String message(final long retryAfterSeconds) {
+        return "The request rate limit is exceeded, the next request is allowed in " + retryAfterSeconds
+               + " seconds";
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(retryAfterSeconds);
+        }
+        return message;
+    }
+}
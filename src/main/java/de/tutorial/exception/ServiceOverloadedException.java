@@ -0,0 +1,44 @@
+package de.tutorial.exception;
+
+/**
+ * Thrown when a request is shed because the service already handles as many requests as it can without
+ * their latency rising. Like {@link RequestRateLimitedException} it captures no stack trace and builds its
+ * message lazily.
+ */
+public class ServiceOverloadedException extends Exception {
+    private final int limit;
+    private String message;
+
+    public ServiceOverloadedException(final String message) {
+        this(-1, message);
+    }
+
+    private ServiceOverloadedException(final int limit, final String message) {
+        super(null, null, false, false);
+        this.limit = limit;
+        this.message = message;
+    }
+
+    public static ServiceOverloadedException withLimit(final int limit) {
+        return new ServiceOverloadedException(limit, null);
+    }
+
+    public static String message(final int limit) {
+        return "The service is already handling its limit of " + limit + " concurrent requests";
+    }
+
+    /**
+     * @return the limit that has been reached, or {@code -1} if the exception was created with a message
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = message(limit);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,12 @@
+package de.tutorial.model;
+
+public enum BatchImportMode {
+    /**
+     * Adds every customer that does not conflict and reports the conflicting ones.
+     */
+    BEST_EFFORT,
+    /**
+     * Adds the customers only if none of them conflicts; otherwise nothing is added.
+     */
+    ALL_OR_NOTHING
+}
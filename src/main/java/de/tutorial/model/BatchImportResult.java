@@ -0,0 +1,34 @@
+package de.tutorial.model;
+
+import java.util.List;
+
+public class BatchImportResult {
+    private final boolean applied;
+    private final long created;
+    private final long conflicts;
+    private final List<BatchItemError> errors;
+
+    public BatchImportResult(final boolean applied, final long created, final long conflicts,
+                             final List<BatchItemError> errors) {
+        this.applied = applied;
+        this.created = created;
+        this.conflicts = conflicts;
+        this.errors = errors;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public List<BatchItemError> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,25 @@
+package de.tutorial.model;
+
+public class BatchItemError {
+    private final long index;
+    private final String name;
+    private final String reason;
+
+    public BatchItemError(final long index, final String name, final String reason) {
+        this.index = index;
+        this.name = name;
+        this.reason = reason;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -1,6 +1,11 @@
 package de.tutorial.model;
 
 public class Customer {
+    /**
+     * The longest name or mail address in bytes of UTF-8 that the stores and the journal accept.
+     */
+    public static final int MAX_FIELD_BYTES = 0xfffe;
+
     private final String name;
     private final String mailAddress;
     private final int category;
@@ -0,0 +1,34 @@
+package de.tutorial.model;
+
+public class CustomerChange {
+    private final long sequence;
+    private final Type type;
+    private final Customer customer;
+
+    public CustomerChange(final long sequence, final Type type, final Customer customer) {
+        this.sequence = sequence;
+        this.type = type;
+        this.customer = customer;
+    }
+
+    /**
+     * @return the position of the change in the change feed; every change has a higher sequence than all
+     * earlier ones
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public enum Type {
+        ADDED,
+        REMOVED
+    }
+}
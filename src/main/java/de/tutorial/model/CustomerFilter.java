@@ -0,0 +1,76 @@
+package de.tutorial.model;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+public final class CustomerFilter {
+    public static final CustomerFilter NONE = new CustomerFilter(OptionalInt.empty(), Optional.empty());
+
+    private final OptionalInt category;
+    private final Optional<String> mailDomain;
+
+    private CustomerFilter(final OptionalInt category, final Optional<String> mailDomain) {
+        this.category = category;
+        this.mailDomain = mailDomain;
+    }
+
+    public static CustomerFilter of(final Integer category, final String mailDomain) {
+        if (category == null && mailDomain == null) {
+            return NONE;
+        }
+        return new CustomerFilter(category == null ? OptionalInt.empty() : OptionalInt.of(category),
+                                  Optional.ofNullable(mailDomain).map(CustomerFilter::normalizeDomain));
+    }
+
+    /**
+     * @return the lower case part after the last {@code @} of the mail address, or {@code null} if the address
+     * has no domain
+     */
+    public static String mailDomainOf(final String mailAddress) {
+        if (mailAddress == null) {
+            return null;
+        }
+        final int at = mailAddress.lastIndexOf('@');
+        return at < 0 ? null : normalizeDomain(mailAddress.substring(at + 1));
+    }
+
+    public OptionalInt getCategory() {
+        return category;
+    }
+
+    public Optional<String> getMailDomain() {
+        return mailDomain;
+    }
+
+    public boolean isEmpty() {
+        return !category.isPresent() && !mailDomain.isPresent();
+    }
+
+    public boolean matches(final Customer customer) {
+        return (!category.isPresent() || category.getAsInt() == customer.getCategory())
+               && (!mailDomain.isPresent() || mailDomain.get().equals(mailDomainOf(customer.getMailAddress())));
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        final CustomerFilter filter = (CustomerFilter) other;
+        return category.equals(filter.category) && mailDomain.equals(filter.mailDomain);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, mailDomain);
+    }
+
+    private static String normalizeDomain(final String domain) {
+        return domain.toLowerCase(Locale.ROOT);
+    }
+}
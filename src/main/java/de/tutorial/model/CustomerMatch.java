@@ -0,0 +1,23 @@
+package de.tutorial.model;
+
+public class CustomerMatch {
+    private final Customer customer;
+    private final int distance;
+
+    public CustomerMatch(final Customer customer, final int distance) {
+        this.customer = customer;
+        this.distance = distance;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * @return the number of inserted, deleted, replaced or swapped adjacent characters that turn the lower case
+     * name into the lower case query
+     */
+    public int getDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,25 @@
+package de.tutorial.model;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+public class CustomerPage {
+    private final List<Customer> customers;
+    private final OptionalLong nextCursor;
+
+    public CustomerPage(final List<Customer> customers, final OptionalLong nextCursor) {
+        this.customers = customers;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    /**
+     * @return the cursor to pass as {@code after} to fetch the next page, or an empty optional on the last page
+     */
+    public OptionalLong getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,23 @@
+package de.tutorial.model;
+
+public class VersionedCustomer {
+    private final Customer customer;
+    private final long version;
+
+    public VersionedCustomer(final Customer customer, final long version) {
+        this.customer = customer;
+        this.version = version;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * @return a number that is unique among all customers ever stored, so it changes whenever a customer of
+     * the same name is removed and added again
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,266 @@
+package de.tutorial.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tutorial.model.Customer;
+import de.tutorial.repository.CustomerRepository;
+import de.tutorial.repository.CustomerRepositoryListener;
+
+/**
+ * Makes the customers of a {@link CustomerRepository} survive restarts. Every change is appended to a
+ * {@link WriteAheadLog}; periodic snapshots of the whole repository allow to delete older log segments.
+ * <p>
+ * A snapshot of generation {@code n} is taken right after the log has been rotated to segment {@code n}, so
+ * recovery loads the latest snapshot and replays the segments from the same generation on. Since the
+ * snapshot is written while the repository keeps changing, it may already contain some of the changes of
+ * segment {@code n}; replaying them again is harmless because additions of existing names and removals of
+ * missing names have no effect.
+ * <p>
+ * Only the latest segment may end with an incomplete record, written while the process or the machine
+ * crashed; it is discarded. Any other invalid record, in a snapshot, in an older segment or followed by
+ * intact records, means the files have been damaged, and recovery fails rather than silently dropping the
+ * changes after it.
+ */
+public class CustomerJournal implements CustomerRepositoryListener, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerJournal.class);
+    private static final Pattern FILE_NAME = Pattern.compile("customers-(\\d{19})\\.(wal|snapshot)");
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+
+    private final CustomerRepository repository;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    private CustomerJournal(final CustomerRepository repository, final Path directory, final long generation,
+                            final Duration snapshotInterval) throws IOException {
+        this.repository = repository;
+        this.directory = directory;
+        this.log = new WriteAheadLog(directory, generation);
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "customer-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!snapshotInterval.isZero() && !snapshotInterval.isNegative()) {
+            final long interval = snapshotInterval.toMillis();
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and the following log segments from the directory into the repository and
+     * starts journaling its changes. The repository is expected to be empty and must not be changed by
+     * others until this method returns.
+     *
+     * @param snapshotInterval the delay between snapshots; zero disables periodic snapshots
+     */
+    public static CustomerJournal open(final CustomerRepository repository, final Path directory,
+                                       final Duration snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> incompleteSnapshots = Files.newDirectoryStream(directory, "*.snapshot.tmp")) {
+            for (final Path incompleteSnapshot : incompleteSnapshots) {
+                Files.delete(incompleteSnapshot);
+            }
+        }
+        final List<Long> snapshots = generations(directory, "snapshot");
+        final List<Long> segments = generations(directory, "wal");
+        final long snapshot = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+
+        final long started = System.nanoTime();
+        final CustomerRecords.Visitor replay = new CustomerRecords.Visitor() {
+            @Override
+            public void added(final Customer customer) {
+                repository.addIfAbsent(customer);
+            }
+
+            @Override
+            public void removed(final String name) {
+                repository.remove(name);
+            }
+        };
+        if (snapshot > 0) {
+            final Path file = snapshotFile(directory, snapshot);
+            final long validLength = CustomerRecords.read(file, replay);
+            if (validLength < Files.size(file)) {
+                throw corrupt(file, validLength, "a snapshot");
+            }
+        }
+        final long latestSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        long generation = snapshot;
+        for (final long segment : segments) {
+            if (segment >= snapshot) {
+                final Path file = WriteAheadLog.segment(directory, segment);
+                final long validLength = CustomerRecords.read(file, replay);
+                if (validLength < Files.size(file)) {
+                    if (segment != latestSegment) {
+                        throw corrupt(file, validLength, "an older log segment");
+                    }
+                    if (CustomerRecords.containsRecordAfter(file, validLength)) {
+                        throw corrupt(file, validLength, "the middle of the latest log segment");
+                    }
+                    truncate(file, validLength);
+                }
+            }
+            generation = Math.max(generation, segment);
+        }
+        LOGGER.info("Recovered {} customers from {} in {} ms", repository.size(), directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        final CustomerJournal journal = new CustomerJournal(repository, directory, generation + 1, snapshotInterval);
+        repository.addListener(journal);
+        return journal;
+    }
+
+    @Override
+    public void customerAdded(final Customer customer) {
+        log.append(CustomerRecords.added(customer));
+    }
+
+    @Override
+    public void customerRemoved(final Customer customer) {
+        log.append(CustomerRecords.removed(customer));
+    }
+
+    /**
+     * Blocks until all changes that have been applied to the repository before this call are durable.
+     *
+     * @throws UncheckedIOException if the changes could not be written
+     */
+    public void awaitDurable() {
+        log.awaitDurable(log.appendedPosition());
+    }
+
+    /**
+     * Returns a future that completes once all changes that have been applied to the repository before this
+     * call are durable, or completes exceptionally with an {@link UncheckedIOException} if they could not be
+     * written. Dependent actions run on the thread that forces the log and must not block.
+     */
+    public CompletableFuture<Void> whenDurable() {
+        return log.whenDurable(log.appendedPosition());
+    }
+
+    /**
+     * Writes a snapshot of the repository and deletes the log segments and snapshots it supersedes.
+     */
+    public synchronized void snapshot() throws IOException {
+        final long generation = log.rotate();
+        final Path snapshot = snapshotFile(directory, generation);
+        final Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary), SNAPSHOT_BUFFER_SIZE)) {
+            repository.forEach(customer -> write(output, CustomerRecords.added(customer)));
+        } catch (final UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        force(temporary);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        force(directory);
+
+        for (final long older : generations(directory, "snapshot")) {
+            if (older < generation) {
+                Files.deleteIfExists(snapshotFile(directory, older));
+            }
+        }
+        for (final long older : generations(directory, "wal")) {
+            if (older < generation) {
+                Files.deleteIfExists(WriteAheadLog.segment(directory, older));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        repository.removeListener(this);
+        snapshotScheduler.shutdown();
+        try {
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            final long started = System.nanoTime();
+            snapshot();
+            LOGGER.info("Wrote snapshot of {} customers in {} ms", repository.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (final IOException | RuntimeException exception) {
+            LOGGER.error("Could not write a snapshot to {}", directory, exception);
+        }
+    }
+
+    private static void write(final OutputStream output, final byte[] record) {
+        try {
+            output.write(record);
+        } catch (final IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static Path snapshotFile(final Path directory, final long generation) {
+        return directory.resolve(String.format("customers-%019d.snapshot", generation));
+    }
+
+    private static List<Long> generations(final Path directory, final String extension) throws IOException {
+        final List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (final Path file : files) {
+                final Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && matcher.group(2).equals(extension)) {
+                    generations.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static IOException corrupt(final Path file, final long position, final String location) {
+        return new IOException("Invalid record at byte " + position + " of " + file + " in " + location
+                               + "; only an incomplete record at the end of the latest log segment is discarded"
+                               + " on recovery, so the customers are not loaded until the file is restored");
+    }
+
+    private static void truncate(final Path file, final long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                LOGGER.warn("Discarding {} bytes of incomplete records at the end of {}", channel.size() - length, file);
+                channel.truncate(length);
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Forces the content of a file, or the entries of a directory, to disk.
+     */
+    static void force(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package de.tutorial.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import de.tutorial.model.Customer;
+
+/**
+ * Binary encoding of the records of write-ahead logs and snapshots. Every record is framed by its payload
+ * length and a CRC32 checksum of the payload, so a torn write at the end of a log is detected on recovery,
+ * and an intact record following a corrupt one tells corruption in the middle of a file from a torn write.
+ */
+final class CustomerRecords {
+    static final byte ADDED = 1;
+    static final byte REMOVED = 2;
+
+    private static final int HEADER_SIZE = 8;
+    /**
+     * The largest payload recovery reads; records are checked against it when they are written, so no
+     * acknowledged change is read back as corrupt. The largest customer the service accepts, with a name
+     * and a mail address of {@link Customer#MAX_FIELD_BYTES} each, takes an eighth of it.
+     */
+    static final int MAX_PAYLOAD_SIZE = 1 << 20;
+    private static final long MAX_MAPPING_SIZE = 256L << 20;
+
+    private CustomerRecords() {
+    }
+
+    static byte[] added(final Customer customer) {
+        final byte[] name = encode(customer.getName());
+        final byte[] mailAddress = encode(customer.getMailAddress());
+        final ByteBuffer payload = ByteBuffer.allocate(1 + sizeOf(name) + sizeOf(mailAddress) + 4);
+        payload.put(ADDED);
+        putString(payload, name);
+        putString(payload, mailAddress);
+        payload.putInt(customer.getCategory());
+        return frame(payload.array());
+    }
+
+    static byte[] removed(final Customer customer) {
+        final byte[] name = encode(customer.getName());
+        final ByteBuffer payload = ByteBuffer.allocate(1 + sizeOf(name));
+        payload.put(REMOVED);
+        putString(payload, name);
+        return frame(payload.array());
+    }
+
+    /**
+     * Reads the records of the given file through memory mappings of at most 256 MB and passes them to the
+     * visitor in file order. Reading stops at the first incomplete or corrupt record.
+     *
+     * @return the length of the valid prefix of the file
+     */
+    static long read(final Path file, final Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                final MappedByteBuffer mapping =
+                    channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAX_MAPPING_SIZE));
+                final int consumed = readRecords(mapping, visitor);
+                if (consumed == 0) {
+                    break;
+                }
+                position += consumed;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Tells whether an intact record starts anywhere after the given position. Only positions with a
+     * plausible length and record type are checksummed.
+     */
+    static boolean containsRecordAfter(final Path file, final long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long start = position + 1;
+            while (size - start > HEADER_SIZE) {
+                final long length = Math.min(size - start, MAX_MAPPING_SIZE);
+                final MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                final boolean last = start + length == size;
+                // records starting in the last megabyte of a mapping are checked with the next one
+                final int candidates = last ? (int) length : (int) length - HEADER_SIZE - MAX_PAYLOAD_SIZE;
+                for (int offset = 0; offset < candidates; offset++) {
+                    if (isRecord(mapping, offset)) {
+                        return true;
+                    }
+                }
+                if (last) {
+                    break;
+                }
+                start += candidates;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isRecord(final ByteBuffer mapping, final int offset) {
+        if (mapping.limit() - offset <= HEADER_SIZE) {
+            return false;
+        }
+        final int length = mapping.getInt(offset);
+        if (length <= 0 || length > MAX_PAYLOAD_SIZE || mapping.limit() - offset - HEADER_SIZE < length) {
+            return false;
+        }
+        final byte type = mapping.get(offset + HEADER_SIZE);
+        if (type != ADDED && type != REMOVED) {
+            return false;
+        }
+        final ByteBuffer payload = mapping.duplicate();
+        payload.limit(offset + HEADER_SIZE + length).position(offset + HEADER_SIZE);
+        final CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        return (int) checksum.getValue() == mapping.getInt(offset + 4);
+    }
+
+    private static int readRecords(final ByteBuffer mapping, final Visitor visitor) {
+        final CRC32 checksum = new CRC32();
+        while (mapping.remaining() >= HEADER_SIZE) {
+            final int start = mapping.position();
+            final int length = mapping.getInt();
+            final int expectedChecksum = mapping.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD_SIZE || mapping.remaining() < length) {
+                mapping.position(start);
+                break;
+            }
+            final ByteBuffer payload = mapping.slice();
+            payload.limit(length);
+            checksum.reset();
+            checksum.update(payload);
+            if ((int) checksum.getValue() != expectedChecksum) {
+                mapping.position(start);
+                break;
+            }
+            payload.rewind();
+            visit(payload, visitor);
+            mapping.position(mapping.position() + length);
+        }
+        return mapping.position();
+    }
+
+    private static void visit(final ByteBuffer payload, final Visitor visitor) {
+        final byte type = payload.get();
+        final String name = getString(payload);
+        if (type == ADDED) {
+            final String mailAddress = getString(payload);
+            visitor.added(new Customer(name, mailAddress, payload.getInt()));
+        } else {
+            visitor.removed(name);
+        }
+    }
+
+    private static byte[] frame(final byte[] payload) {
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("A record of " + payload.length + " bytes exceeds the "
+                                               + MAX_PAYLOAD_SIZE + " bytes that recovery reads");
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                         .putInt(payload.length)
+                         .putInt((int) checksum.getValue())
+                         .put(payload)
+                         .array();
+    }
+
+    private static byte[] encode(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(final byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(final ByteBuffer buffer, final byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    interface Visitor {
+        void added(Customer customer);
+
+        void removed(String name);
+    }
+}
@@ -0,0 +1,24 @@
+package de.tutorial.persistence;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import de.tutorial.repository.CustomerRepository;
+
+@Configuration
+@ConditionalOnProperty(prefix = "customer.persistence", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PersistenceProperties.class)
+public class PersistenceConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public CustomerJournal customerJournal(final CustomerRepository customerRepository,
+                                           final PersistenceProperties properties) throws IOException {
+        return CustomerJournal.open(customerRepository, Paths.get(properties.getDirectory()),
+                                    properties.getSnapshotInterval());
+    }
+}
@@ -0,0 +1,47 @@
+package de.tutorial.persistence;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "customer.persistence")
+public class PersistenceProperties {
+    /**
+     * Whether customers are written to a write-ahead log and recovered on startup.
+     */
+    private boolean enabled;
+
+    /**
+     * The directory of the write-ahead log segments and snapshots.
+     */
+    private String directory = "data";
+
+    /**
+     * The delay between two snapshots; zero disables periodic snapshots.
+     */
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(final String directory) {
+        this.directory = directory;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(final Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+}
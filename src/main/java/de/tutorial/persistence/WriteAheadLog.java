@@ -0,0 +1,249 @@
+package de.tutorial.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Append-only log split into numbered segments. Appending only copies the record into an in-memory buffer;
+ * a single committer thread writes everything appended since its last run and forces it to disk with one
+ * {@code fsync}, so concurrent writers share the cost of a sync (group commit).
+ */
+final class WriteAheadLog implements Closeable {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Object appendLock = new Object();
+    private final Object channelLock = new Object();
+    private final Thread committer;
+
+    // guarded by appendLock
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    private long appendedRecords;
+    private long durableRecords;
+    private IOException failure;
+    private boolean closed;
+    private final PriorityQueue<DurabilityWaiter> waiters = new PriorityQueue<>();
+
+    // guarded by channelLock
+    private FileChannel channel;
+    private long generation;
+
+    WriteAheadLog(final Path directory, final long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = openSegment(generation);
+        this.committer = new Thread(this::commitLoop, "customer-wal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * @return the position of the record, to be passed to {@link #awaitDurable(long)}
+     */
+    long append(final byte[] record) {
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("The write-ahead log has been closed");
+            }
+            pending.write(record, 0, record.length);
+            appendedRecords++;
+            appendLock.notifyAll();
+            return appendedRecords;
+        }
+    }
+
+    long appendedPosition() {
+        synchronized (appendLock) {
+            return appendedRecords;
+        }
+    }
+
+    /**
+     * Blocks until all records up to the given position have been forced to disk.
+     *
+     * @throws UncheckedIOException if the log could not be written
+     */
+    void awaitDurable(final long position) {
+        boolean interrupted = false;
+        synchronized (appendLock) {
+            while (durableRecords < position && failure == null) {
+                try {
+                    appendLock.wait();
+                } catch (final InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableRecords < position) {
+                throw writeFailure(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns a future that completes once all records up to the given position have been forced to disk,
+     * without blocking the caller. The future is completed by the committer thread, so dependent actions must
+     * not block.
+     */
+    CompletableFuture<Void> whenDurable(final long position) {
+        final DurabilityWaiter waiter = new DurabilityWaiter(position);
+        synchronized (appendLock) {
+            if (durableRecords >= position) {
+                waiter.future.complete(null);
+            } else if (failure == null) {
+                waiters.add(waiter);
+            } else {
+                waiter.future.completeExceptionally(writeFailure(failure));
+            }
+        }
+        return waiter.future;
+    }
+
+    /**
+     * Forces all records appended so far into the current segment and continues in a new one.
+     *
+     * @return the generation of the new segment
+     */
+    long rotate() throws IOException {
+        synchronized (channelLock) {
+            commit();
+            channel.close();
+            generation++;
+            channel = openSegment(generation);
+            return generation;
+        }
+    }
+
+    static Path segment(final Path directory, final long generation) {
+        return directory.resolve(String.format("customers-%019d.wal", generation));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+            appendLock.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            channel.close();
+        }
+    }
+
+    private void commitLoop() {
+        while (awaitPending()) {
+            try {
+                synchronized (channelLock) {
+                    commit();
+                }
+            } catch (final IOException exception) {
+                final List<DurabilityWaiter> failed;
+                synchronized (appendLock) {
+                    failure = exception;
+                    appendLock.notifyAll();
+                    failed = new ArrayList<>(waiters);
+                    waiters.clear();
+                }
+                failed.forEach(waiter -> waiter.future.completeExceptionally(writeFailure(exception)));
+                return;
+            }
+        }
+    }
+
+    private boolean awaitPending() {
+        synchronized (appendLock) {
+            while (pending.size() == 0 && !closed) {
+                try {
+                    appendLock.wait();
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return pending.size() > 0;
+        }
+    }
+
+    // must hold channelLock
+    private void commit() throws IOException {
+        final ByteArrayOutputStream batch;
+        final long batchEnd;
+        synchronized (appendLock) {
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending;
+            batchEnd = appendedRecords;
+            pending = new ByteArrayOutputStream(Math.max(INITIAL_BUFFER_SIZE, batch.size()));
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        final List<DurabilityWaiter> completed = new ArrayList<>();
+        synchronized (appendLock) {
+            durableRecords = batchEnd;
+            appendLock.notifyAll();
+            while (!waiters.isEmpty() && waiters.peek().position <= batchEnd) {
+                completed.add(waiters.poll());
+            }
+        }
+        completed.forEach(waiter -> waiter.future.complete(null));
+    }
+
+    private static UncheckedIOException writeFailure(final IOException cause) {
+        return new UncheckedIOException("Could not write the write-ahead log", cause);
+    }
+
+    /**
+     * Forces the directory once a segment has been created, so the records forced into it are not lost with
+     * its directory entry after a crash.
+     */
+    private FileChannel openSegment(final long segmentGeneration) throws IOException {
+        final Path segment = segment(directory, segmentGeneration);
+        final boolean created = !Files.exists(segment);
+        final FileChannel segmentChannel =
+            FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (created) {
+            try {
+                CustomerJournal.force(directory);
+            } catch (final IOException exception) {
+                segmentChannel.close();
+                throw exception;
+            }
+        }
+        return segmentChannel;
+    }
+
+    private static final class DurabilityWaiter implements Comparable<DurabilityWaiter> {
+        private final long position;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private DurabilityWaiter(final long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(final DurabilityWaiter other) {
+            return Long.compare(position, other.position);
+        }
+    }
+}
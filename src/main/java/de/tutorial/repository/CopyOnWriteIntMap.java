@@ -0,0 +1,119 @@
+package de.tutorial.repository;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Map from primitive {@code int} keys to non-null values that are looked up far more often than keys are
+ * added or removed. Lookups read an immutable open addressing table without locking or boxing; adding or
+ * removing a key copies the table.
+ */
+final class CopyOnWriteIntMap<V> {
+    private volatile Table<V> table = new Table<>(8);
+
+    V get(final int key) {
+        return table.get(key);
+    }
+
+    int size() {
+        return table.size;
+    }
+
+    /**
+     * Passes every key of the current table to the given action.
+     */
+    void forEachKey(final IntConsumer action) {
+        final Table<V> current = table;
+        for (int index = 0; index < current.keys.length; index++) {
+            if (current.values[index] != null) {
+                action.accept(current.keys[index]);
+            }
+        }
+    }
+
+    V computeIfAbsent(final int key, final IntFunction<? extends V> factory) {
+        final V existing = table.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            final Table<V> current = table;
+            final V raced = current.get(key);
+            if (raced != null) {
+                return raced;
+            }
+            final V created = factory.apply(key);
+            table = current.with(key, created);
+            return created;
+        }
+    }
+
+    void remove(final int key) {
+        synchronized (this) {
+            final Table<V> current = table;
+            if (current.get(key) != null) {
+                table = current.without(key);
+            }
+        }
+    }
+
+    private static final class Table<V> {
+        private final int[] keys;
+        private final Object[] values;
+        private int size;
+
+        private Table(final int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        private V get(final int key) {
+            final int mask = keys.length - 1;
+            for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+                final Object value = values[index];
+                if (value == null || keys[index] == key) {
+                    return (V) value;
+                }
+            }
+        }
+
+        private Table<V> with(final int key, final V value) {
+            final int capacity = (size + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+            final Table<V> copy = new Table<>(capacity);
+            for (int index = 0; index < keys.length; index++) {
+                if (values[index] != null) {
+                    copy.put(keys[index], values[index]);
+                }
+            }
+            copy.put(key, value);
+            return copy;
+        }
+
+        private Table<V> without(final int key) {
+            final Table<V> copy = new Table<>(keys.length);
+            for (int index = 0; index < keys.length; index++) {
+                if (values[index] != null && keys[index] != key) {
+                    copy.put(keys[index], values[index]);
+                }
+            }
+            return copy;
+        }
+
+        private void put(final int key, final Object value) {
+            final int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        private static int hash(final int key) {
+            final int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
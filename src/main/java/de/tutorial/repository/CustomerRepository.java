@@ -0,0 +1,87 @@
+package de.tutorial.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+
+/**
+ * Thread-safe storage of customers, keyed by their unique name.
+ */
+public interface CustomerRepository {
+    long NOT_ADDED = -1;
+
+    /**
+     * @return an unmodifiable snapshot of all customers in insertion order
+     */
+    List<Customer> findAll();
+
+    /**
+     * @return an unmodifiable list of the customers matching the filter in insertion order
+     */
+    List<Customer> findAll(CustomerFilter filter);
+
+    /**
+     * Returns up to {@code limit} customers matching the filter in insertion order, starting after the given
+     * cursor. A cursor of {@code 0} starts at the first customer.
+     */
+    CustomerPage findPage(CustomerFilter filter, long afterCursor, int limit);
+
+    /**
+     * Passes every customer in insertion order to the given action without copying the store. Concurrent
+     * modifications may or may not be reflected.
+     */
+    void forEach(Consumer<? super Customer> action);
+
+    Optional<Customer> findByName(String name);
+
+    Optional<VersionedCustomer> findVersionedByName(String name);
+
+    /**
+     * Atomically adds the customer unless a customer with the same name is already stored.
+     *
+     * @return {@code true} if the customer has been added
+     */
+    boolean addIfAbsent(Customer customer);
+
+    /**
+     * Atomically adds the customer like {@link #addIfAbsent(Customer)}, for callers that may later remove
+     * exactly the customer they added with {@link #removeIf(String, LongPredicate)}.
+     *
+     * @return the version of the added customer, or {@link #NOT_ADDED} if a customer with the same name is
+     * already stored
+     */
+    long addIfAbsentVersioned(Customer customer);
+
+    /**
+     * Atomically removes the customer with the given name.
+     *
+     * @return the removed customer, or an empty optional if no such customer was stored
+     */
+    Optional<Customer> remove(String name);
+
+    /**
+     * Atomically removes the customer with the given name if its version matches.
+     *
+     * @return the removed customer, or an empty optional if no such customer was stored or its version did not
+     * match
+     */
+    Optional<Customer> removeIf(String name, LongPredicate version);
+
+    int size();
+
+    /**
+     * @return a number that increases with every change of the repository; a change is visible to readers
+     * before its version is
+     */
+    long version();
+
+    void addListener(CustomerRepositoryListener listener);
+
+    void removeListener(CustomerRepositoryListener listener);
+}
@@ -0,0 +1,16 @@
+package de.tutorial.repository;
+
+import de.tutorial.model.Customer;
+
+/**
+ * Gets notified about every change of a {@link CustomerRepository}. The callbacks are invoked while the
+ * repository holds the lock of the changed name, after the change has been applied, so changes of the same
+ * name are observed in the order they are applied. Implementations must therefore return quickly and must
+ * not call back into the repository.
+ */
+public interface CustomerRepositoryListener {
+
+    void customerAdded(Customer customer);
+
+    void customerRemoved(Customer customer);
+}
@@ -0,0 +1,437 @@
+package de.tutorial.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+
+/**
+ * Partitions the customers by the hash of their name into shards, so writers of different shards never
+ * contend. Each shard keeps its customers in a {@link ConcurrentHashMap} for constant time lookups by name
+ * and in a {@link ConcurrentSkipListMap} keyed by an insertion sequence to preserve insertion order.
+ * Secondary indexes by category and mail domain hold the same sequence keys, so filtered queries only visit
+ * matching customers. All maps of a shard are only modified while holding the lock of the shard, so adding
+ * and removing a customer is atomic with respect to other writers of the same name, while readers never
+ * block. Queries over all customers merge the shards by their sequence keys.
+ * <p>
+ * The sequence is taken from the monotonic clock instead of a shared counter, with the shard in its lowest
+ * bits to tell apart customers added in the same tick. It never decreases within a shard or a thread, so
+ * customers added one after another keep their order; customers added concurrently to different shards
+ * are ordered by the clock. The sequence doubles as the version of a customer. The version of the
+ * repository is the sum of the versions of the shards, each of which is only increased after a change has
+ * been applied to all maps of the shard, so a reader that sees a version also sees all changes up to it.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "customer.store", name = "off-heap", havingValue = "false", matchIfMissing = true)
+public class InMemoryCustomerRepository implements CustomerRepository, MeterBinder {
+    static final int MAX_SHARDS = 64;
+
+    private static final int SHARD_BITS = Integer.numberOfTrailingZeros(MAX_SHARDS);
+    /**
+     * A tick of 16 nanoseconds leaves room for 73 years of uptime in the 57 bits left by the shard.
+     */
+    private static final int TICK_SHIFT = 4;
+    private static final long EPOCH_NANOS = System.nanoTime();
+    private static final ThreadLocal<long[]> LAST_TICK_OF_THREAD = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Shard[] shards;
+    private final List<CustomerRepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryCustomerRepository() {
+        this(0);
+    }
+
+    /**
+     * @param shards the number of shards, or {@code 0} for twice the number of available processors
+     */
+    @Autowired
+    public InMemoryCustomerRepository(@Value("${customer.store.shards:0}") final int shards) {
+        final int count = shards == 0 ? defaultShards() : shards;
+        Assert.isTrue(count > 0 && count <= MAX_SHARDS, "The number of shards must be between 1 and " + MAX_SHARDS);
+        this.shards = new Shard[count];
+        for (int index = 0; index < count; index++) {
+            this.shards[index] = new Shard(index);
+        }
+    }
+
+    @Override
+    public List<Customer> findAll() {
+        if (shards.length == 1) {
+            return Collections.unmodifiableList(new ArrayList<>(shards[0].customersBySequence.values()));
+        }
+        final List<Customer> customers = new ArrayList<>(size());
+        iterator(CustomerFilter.NONE, 0).forEachRemaining(entry -> customers.add(entry.getValue()));
+        return Collections.unmodifiableList(customers);
+    }
+
+    @Override
+    public List<Customer> findAll(final CustomerFilter filter) {
+        final List<Customer> customers = new ArrayList<>();
+        final Iterator<Map.Entry<Long, Customer>> iterator = iterator(filter, 0);
+        while (iterator.hasNext()) {
+            final Customer customer = iterator.next().getValue();
+            if (filter.matches(customer)) {
+                customers.add(customer);
+            }
+        }
+        return Collections.unmodifiableList(customers);
+    }
+
+    @Override
+    public CustomerPage findPage(final CustomerFilter filter, final long afterCursor, final int limit) {
+        final List<Customer> customers = new ArrayList<>(limit);
+        final Iterator<Map.Entry<Long, Customer>> iterator = iterator(filter, afterCursor);
+        long lastSequence = afterCursor;
+        while (customers.size() < limit && iterator.hasNext()) {
+            final Map.Entry<Long, Customer> entry = iterator.next();
+            if (filter.matches(entry.getValue())) {
+                customers.add(entry.getValue());
+                lastSequence = entry.getKey();
+            }
+        }
+        final OptionalLong nextCursor = iterator.hasNext() ? OptionalLong.of(lastSequence) : OptionalLong.empty();
+        return new CustomerPage(Collections.unmodifiableList(customers), nextCursor);
+    }
+
+    @Override
+    public void forEach(final Consumer<? super Customer> action) {
+        if (shards.length == 1) {
+            shards[0].customersBySequence.values().forEach(action);
+        } else {
+            iterator(CustomerFilter.NONE, 0).forEachRemaining(entry -> action.accept(entry.getValue()));
+        }
+    }
+
+    @Override
+    public Optional<Customer> findByName(final String name) {
+        final Entry entry = shardOf(name).customersByName.get(name);
+        return entry == null ? Optional.empty() : Optional.of(entry.customer);
+    }
+
+    @Override
+    public Optional<VersionedCustomer> findVersionedByName(final String name) {
+        final Entry entry = shardOf(name).customersByName.get(name);
+        return entry == null ? Optional.empty() : Optional.of(new VersionedCustomer(entry.customer, entry.sequence));
+    }
+
+    @Override
+    public boolean addIfAbsent(final Customer customer) {
+        return addIfAbsentVersioned(customer) != NOT_ADDED;
+    }
+
+    @Override
+    public long addIfAbsentVersioned(final Customer customer) {
+        final Shard shard = shardOf(customer.getName());
+        synchronized (shard) {
+            if (shard.customersByName.containsKey(customer.getName())) {
+                return NOT_ADDED;
+            }
+            final Entry created = new Entry(nextSequence(shard), customer);
+            shard.customersBySequence.put(created.sequence, customer);
+            shard.customersByCategory.computeIfAbsent(customer.getCategory(), category -> new IndexBucket())
+                                     .add(created.sequence, customer);
+            final String mailDomain = CustomerFilter.mailDomainOf(customer.getMailAddress());
+            if (mailDomain != null) {
+                shard.customersByMailDomain.computeIfAbsent(mailDomain, domain -> new IndexBucket())
+                                           .add(created.sequence, customer);
+            }
+            shard.customersByName.put(customer.getName(), created);
+            shard.version++;
+            listeners.forEach(listener -> listener.customerAdded(customer));
+            return created.sequence;
+        }
+    }
+
+    @Override
+    public Optional<Customer> remove(final String name) {
+        return removeIf(name, anyVersion -> true);
+    }
+
+    @Override
+    public Optional<Customer> removeIf(final String name, final LongPredicate expectedVersion) {
+        final Shard shard = shardOf(name);
+        synchronized (shard) {
+            final Entry entry = shard.customersByName.get(name);
+            if (entry == null || !expectedVersion.test(entry.sequence)) {
+                return Optional.empty();
+            }
+            shard.customersBySequence.remove(entry.sequence);
+            final IndexBucket categoryBucket = shard.customersByCategory.get(entry.customer.getCategory());
+            categoryBucket.remove(entry.sequence);
+            if (categoryBucket.isEmpty()) {
+                shard.customersByCategory.remove(entry.customer.getCategory());
+            }
+            final String mailDomain = CustomerFilter.mailDomainOf(entry.customer.getMailAddress());
+            if (mailDomain != null) {
+                final IndexBucket bucket = shard.customersByMailDomain.get(mailDomain);
+                bucket.remove(entry.sequence);
+                if (bucket.isEmpty()) {
+                    shard.customersByMailDomain.remove(mailDomain);
+                }
+            }
+            shard.customersByName.remove(name);
+            shard.version++;
+            listeners.forEach(listener -> listener.customerRemoved(entry.customer));
+            return Optional.of(entry.customer);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (final Shard shard : shards) {
+            size += shard.customersByName.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long version() {
+        long version = 0;
+        for (final Shard shard : shards) {
+            version += shard.version;
+        }
+        return version;
+    }
+
+    @Override
+    public void addListener(final CustomerRepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(final CustomerRepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("customer.store.size", this, InMemoryCustomerRepository::size)
+             .description("The number of stored customers")
+             .register(registry);
+        Gauge.builder("customer.store.version", this, InMemoryCustomerRepository::version)
+             .description("The number of changes applied to the store")
+             .register(registry);
+        Gauge.builder("customer.store.shards", shards, array -> array.length)
+             .description("The number of partitions of the store with a lock of their own")
+             .register(registry);
+        Gauge.builder("customer.index.buckets", this, InMemoryCustomerRepository::countCategories)
+             .tag("index", "category")
+             .description("The number of distinct keys of a secondary index")
+             .register(registry);
+        Gauge.builder("customer.index.buckets", this, InMemoryCustomerRepository::countMailDomains)
+             .tag("index", "mailDomain")
+             .description("The number of distinct keys of a secondary index")
+             .register(registry);
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    private static int defaultShards() {
+        return Math.min(MAX_SHARDS, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private Shard shardOf(final String name) {
+        final int hash = name.hashCode();
+        return shards[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /**
+     * Must be called while holding the lock of the shard.
+     */
+    private static long nextSequence(final Shard shard) {
+        final long[] lastTickOfThread = LAST_TICK_OF_THREAD.get();
+        final long now = (System.nanoTime() - EPOCH_NANOS) >>> TICK_SHIFT;
+        final long tick = Math.max(now, Math.max(shard.lastTick, lastTickOfThread[0]) + 1);
+        shard.lastTick = tick;
+        lastTickOfThread[0] = tick;
+        return tick << SHARD_BITS | shard.index;
+    }
+
+    /**
+     * Iterates the smallest index of each shard that covers the filter; the caller still has to apply the
+     * filter to skip customers that only match the index of the other criterion.
+     */
+    private Iterator<Map.Entry<Long, Customer>> iterator(final CustomerFilter filter, final long afterCursor) {
+        if (shards.length == 1) {
+            return shards[0].iterator(filter, afterCursor);
+        }
+        final List<Iterator<Map.Entry<Long, Customer>>> iterators = new ArrayList<>(shards.length);
+        for (final Shard shard : shards) {
+            iterators.add(shard.iterator(filter, afterCursor));
+        }
+        return new MergingIterator(iterators);
+    }
+
+    private double countCategories() {
+        final Set<Integer> categories = new HashSet<>();
+        for (final Shard shard : shards) {
+            shard.customersByCategory.forEachKey(categories::add);
+        }
+        return categories.size();
+    }
+
+    private double countMailDomains() {
+        final Set<String> mailDomains = new HashSet<>();
+        for (final Shard shard : shards) {
+            mailDomains.addAll(shard.customersByMailDomain.keySet());
+        }
+        return mailDomains.size();
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final ConcurrentMap<String, Entry> customersByName = new ConcurrentHashMap<>();
+        private final ConcurrentNavigableMap<Long, Customer> customersBySequence = new ConcurrentSkipListMap<>();
+        private final CopyOnWriteIntMap<IndexBucket> customersByCategory = new CopyOnWriteIntMap<>();
+        private final ConcurrentMap<String, IndexBucket> customersByMailDomain = new ConcurrentHashMap<>();
+        // written while holding the lock of the shard
+        private volatile long version;
+        private long lastTick;
+
+        private Shard(final int index) {
+            this.index = index;
+        }
+
+        private Iterator<Map.Entry<Long, Customer>> iterator(final CustomerFilter filter, final long afterCursor) {
+            ConcurrentNavigableMap<Long, Customer> source = customersBySequence;
+            int sourceSize = Integer.MAX_VALUE;
+            if (filter.getCategory().isPresent()) {
+                final IndexBucket bucket = customersByCategory.get(filter.getCategory().getAsInt());
+                if (bucket == null) {
+                    return Collections.emptyIterator();
+                }
+                source = bucket.customers;
+                sourceSize = bucket.size.get();
+            }
+            if (filter.getMailDomain().isPresent()) {
+                final IndexBucket bucket = customersByMailDomain.get(filter.getMailDomain().get());
+                if (bucket == null) {
+                    return Collections.emptyIterator();
+                }
+                if (bucket.size.get() < sourceSize) {
+                    source = bucket.customers;
+                }
+            }
+            return source.tailMap(afterCursor, false).entrySet().iterator();
+        }
+    }
+
+    /**
+     * Merges the sequence ordered iterators of the shards into one, keeping the next entry of each shard in
+     * a heap.
+     */
+    private static final class MergingIterator implements Iterator<Map.Entry<Long, Customer>> {
+        private final PriorityQueue<Source> sources;
+
+        private MergingIterator(final List<Iterator<Map.Entry<Long, Customer>>> iterators) {
+            this.sources = new PriorityQueue<>(iterators.size(), Comparator.comparingLong(Source::sequence));
+            for (final Iterator<Map.Entry<Long, Customer>> iterator : iterators) {
+                final Source source = new Source(iterator);
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !sources.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<Long, Customer> next() {
+            final Source source = sources.poll();
+            if (source == null) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<Long, Customer> next = source.head;
+            if (source.advance()) {
+                sources.add(source);
+            }
+            return next;
+        }
+    }
+
+    private static final class Source {
+        private final Iterator<Map.Entry<Long, Customer>> iterator;
+        private Map.Entry<Long, Customer> head;
+
+        private Source(final Iterator<Map.Entry<Long, Customer>> iterator) {
+            this.iterator = iterator;
+        }
+
+        private boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            head = iterator.next();
+            return true;
+        }
+
+        private long sequence() {
+            return head.getKey();
+        }
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final Customer customer;
+
+        private Entry(final long sequence, final Customer customer) {
+            this.sequence = sequence;
+            this.customer = customer;
+        }
+    }
+
+    private static final class IndexBucket {
+        private final ConcurrentNavigableMap<Long, Customer> customers = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private void add(final long sequence, final Customer customer) {
+            customers.put(sequence, customer);
+            size.incrementAndGet();
+        }
+
+        private void remove(final long sequence) {
+            customers.remove(sequence);
+            size.decrementAndGet();
+        }
+
+        private boolean isEmpty() {
+            return size.get() == 0;
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package de.tutorial.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+
+/**
+ * Packs customers into compact records in direct byte buffers outside of the heap, for stores so large that
+ * the objects of {@link InMemoryCustomerRepository} dominate heap size and GC pauses. A record holds the
+ * sequence, the category and the UTF-8 encoded name and mail address; {@link Customer} objects are only
+ * materialized when customers are read. Records are appended to fixed-size slabs in insertion order, found
+ * by name through an open addressing table of record addresses and by sequence through a primitive array in
+ * insertion order. Removing a customer only marks its record; the slabs are compacted once most of their
+ * bytes belong to removed records.
+ * <p>
+ * A read-write lock guards the store, so reads wait while a customer is added or removed. There are no
+ * secondary indexes; filtered queries scan all records, but only materialize the ones of the requested
+ * category.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "customer.store", name = "off-heap", havingValue = "true")
+public class OffHeapCustomerRepository implements CustomerRepository, MeterBinder {
+    static final int SLAB_SIZE = 1 << 20;
+    static final int MAX_STRING_BYTES = Customer.MAX_FIELD_BYTES;
+
+    private static final int SLAB_SHIFT = Integer.numberOfTrailingZeros(SLAB_SIZE);
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int CATEGORY_OFFSET = 8;
+    private static final int NAME_LENGTH_OFFSET = 12;
+    private static final int MAIL_LENGTH_OFFSET = 14;
+    private static final int HEADER_SIZE = 16;
+    private static final int NULL_LENGTH = 0xffff;
+    private static final long EMPTY = -1;
+    private static final long REMOVED = -2;
+    private static final int FOR_EACH_CHUNK = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock readLock = lock.readLock();
+    private final Lock writeLock = lock.writeLock();
+    private final List<CustomerRepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by lock
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private int slabPosition = SLAB_SIZE;
+    private long[] tableAddresses = emptyTable(16);
+    private int[] tableHashes = new int[16];
+    private int tableUsed;
+    private long[] orderSequences = new long[16];
+    private long[] orderAddresses = new long[16];
+    private int orderSize;
+    private int size;
+    private long sequence;
+    private long liveBytes;
+    private long removedBytes;
+    // written while holding the write lock
+    private volatile long version;
+
+    @Override
+    public List<Customer> findAll() {
+        readLock.lock();
+        try {
+            final List<Customer> customers = new ArrayList<>(size);
+            for (int index = 0; index < orderSize; index++) {
+                if (orderAddresses[index] != REMOVED) {
+                    customers.add(materialize(orderAddresses[index]));
+                }
+            }
+            return Collections.unmodifiableList(customers);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> findAll(final CustomerFilter filter) {
+        readLock.lock();
+        try {
+            final List<Customer> customers = new ArrayList<>();
+            for (int index = 0; index < orderSize; index++) {
+                final Customer customer = materializeIfMatching(orderAddresses[index], filter);
+                if (customer != null) {
+                    customers.add(customer);
+                }
+            }
+            return Collections.unmodifiableList(customers);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public CustomerPage findPage(final CustomerFilter filter, final long afterCursor, final int limit) {
+        readLock.lock();
+        try {
+            final List<Customer> customers = new ArrayList<>(limit);
+            long lastSequence = afterCursor;
+            int index = firstIndexAfter(afterCursor);
+            for (; index < orderSize && customers.size() < limit; index++) {
+                final Customer customer = materializeIfMatching(orderAddresses[index], filter);
+                if (customer != null) {
+                    customers.add(customer);
+                    lastSequence = orderSequences[index];
+                }
+            }
+            while (index < orderSize && materializeIfMatching(orderAddresses[index], filter) == null) {
+                index++;
+            }
+            final OptionalLong nextCursor = index < orderSize ? OptionalLong.of(lastSequence) : OptionalLong.empty();
+            return new CustomerPage(Collections.unmodifiableList(customers), nextCursor);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Passes the customers in chunks, so writers only wait for the materialization of a chunk and never for
+     * the action.
+     */
+    @Override
+    public void forEach(final Consumer<? super Customer> action) {
+        long afterSequence = 0;
+        List<Customer> chunk;
+        do {
+            chunk = new ArrayList<>(FOR_EACH_CHUNK);
+            readLock.lock();
+            try {
+                for (int index = firstIndexAfter(afterSequence); index < orderSize; index++) {
+                    if (orderAddresses[index] != REMOVED) {
+                        chunk.add(materialize(orderAddresses[index]));
+                        afterSequence = orderSequences[index];
+                        if (chunk.size() == FOR_EACH_CHUNK) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+            chunk.forEach(action);
+        } while (chunk.size() == FOR_EACH_CHUNK);
+    }
+
+    @Override
+    public Optional<Customer> findByName(final String name) {
+        final byte[] encodedName = encode(name);
+        readLock.lock();
+        try {
+            final int slot = find(encodedName, hash(name));
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(tableAddresses[slot]));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<VersionedCustomer> findVersionedByName(final String name) {
+        final byte[] encodedName = encode(name);
+        readLock.lock();
+        try {
+            final int slot = find(encodedName, hash(name));
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            final long address = tableAddresses[slot];
+            return Optional.of(new VersionedCustomer(materialize(address), sequenceOf(address)));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(final Customer customer) {
+        return addIfAbsentVersioned(customer) != NOT_ADDED;
+    }
+
+    @Override
+    public long addIfAbsentVersioned(final Customer customer) {
+        final byte[] name = encode(customer.getName());
+        final byte[] mailAddress = customer.getMailAddress() == null ? null : encode(customer.getMailAddress());
+        Assert.isTrue(name.length <= MAX_STRING_BYTES
+                      && (mailAddress == null || mailAddress.length <= MAX_STRING_BYTES),
+                      "Names and mail addresses are limited to " + MAX_STRING_BYTES + " bytes");
+        final int hash = hash(customer.getName());
+        writeLock.lock();
+        try {
+            if (find(name, hash) >= 0) {
+                return NOT_ADDED;
+            }
+            final int recordSize = HEADER_SIZE + name.length + (mailAddress == null ? 0 : mailAddress.length);
+            final long address = allocate(recordSize);
+            final long created = ++sequence;
+            final ByteBuffer record = slab(address).duplicate();
+            record.position(offset(address));
+            record.putLong(created)
+                  .putInt(customer.getCategory())
+                  .putShort((short) name.length)
+                  .putShort((short) (mailAddress == null ? NULL_LENGTH : mailAddress.length))
+                  .put(name);
+            if (mailAddress != null) {
+                record.put(mailAddress);
+            }
+            insert(address, hash);
+            appendToOrder(created, address);
+            size++;
+            liveBytes += recordSize;
+            version++;
+            listeners.forEach(listener -> listener.customerAdded(customer));
+            return created;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Customer> remove(final String name) {
+        return removeIf(name, anyVersion -> true);
+    }
+
+    @Override
+    public Optional<Customer> removeIf(final String name, final LongPredicate expectedVersion) {
+        final byte[] encodedName = encode(name);
+        final int hash = hash(name);
+        writeLock.lock();
+        try {
+            final int slot = find(encodedName, hash);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            final long address = tableAddresses[slot];
+            final long removedSequence = sequenceOf(address);
+            if (!expectedVersion.test(removedSequence)) {
+                return Optional.empty();
+            }
+            final Customer customer = materialize(address);
+            tableAddresses[slot] = REMOVED;
+            orderAddresses[Arrays.binarySearch(orderSequences, 0, orderSize, removedSequence)] = REMOVED;
+            final int recordSize = recordSize(address);
+            size--;
+            liveBytes -= recordSize;
+            removedBytes += recordSize;
+            version++;
+            listeners.forEach(listener -> listener.customerRemoved(customer));
+            if (removedBytes >= SLAB_SIZE && removedBytes > liveBytes) {
+                compact();
+            }
+            return Optional.of(customer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public void addListener(final CustomerRepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(final CustomerRepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("customer.store.size", this, OffHeapCustomerRepository::size)
+             .description("The number of stored customers")
+             .register(registry);
+        Gauge.builder("customer.store.version", this, OffHeapCustomerRepository::version)
+             .description("The number of changes applied to the store")
+             .register(registry);
+        Gauge.builder("customer.store.offheap.bytes", this, OffHeapCustomerRepository::allocatedBytes)
+             .tag("state", "allocated")
+             .description("The bytes of the slabs that hold the customer records")
+             .register(registry);
+        Gauge.builder("customer.store.offheap.bytes", this, OffHeapCustomerRepository::liveBytes)
+             .tag("state", "live")
+             .description("The bytes of the slabs that hold the customer records")
+             .register(registry);
+    }
+
+    long allocatedBytes() {
+        readLock.lock();
+        try {
+            return (long) slabs.size() * SLAB_SIZE;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    long liveBytes() {
+        readLock.lock();
+        try {
+            return liveBytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the slot of the record with the given name, or {@code -1}
+     */
+    private int find(final byte[] name, final int hash) {
+        final int mask = tableAddresses.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final long address = tableAddresses[slot];
+            if (address == EMPTY) {
+                return -1;
+            }
+            if (address != REMOVED && tableHashes[slot] == hash && hasName(address, name)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(final long address, final int hash) {
+        if ((tableUsed + 1) * 2 > tableAddresses.length) {
+            rehash(size + 1);
+        }
+        final int mask = tableAddresses.length - 1;
+        int slot = hash & mask;
+        while (tableAddresses[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (tableAddresses[slot] == EMPTY) {
+            tableUsed++;
+        }
+        tableAddresses[slot] = address;
+        tableHashes[slot] = hash;
+    }
+
+    /**
+     * Rebuilds the table for the given number of customers, dropping the slots of removed records.
+     */
+    private void rehash(final int customers) {
+        final long[] oldAddresses = tableAddresses;
+        final int[] oldHashes = tableHashes;
+        final int capacity = Math.max(16, Integer.highestOneBit(customers * 4 - 1) << 1);
+        tableAddresses = emptyTable(capacity);
+        tableHashes = new int[capacity];
+        tableUsed = 0;
+        for (int slot = 0; slot < oldAddresses.length; slot++) {
+            if (oldAddresses[slot] >= 0) {
+                insert(oldAddresses[slot], oldHashes[slot]);
+            }
+        }
+    }
+
+    private void appendToOrder(final long recordSequence, final long address) {
+        if (orderSize == orderSequences.length) {
+            orderSequences = Arrays.copyOf(orderSequences, orderSize * 2);
+            orderAddresses = Arrays.copyOf(orderAddresses, orderSize * 2);
+        }
+        orderSequences[orderSize] = recordSequence;
+        orderAddresses[orderSize] = address;
+        orderSize++;
+    }
+
+    private int firstIndexAfter(final long afterSequence) {
+        final int index = Arrays.binarySearch(orderSequences, 0, orderSize, afterSequence);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private long allocate(final int recordSize) {
+        if (slabPosition + recordSize > SLAB_SIZE) {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            slabPosition = 0;
+        }
+        final long address = (long) (slabs.size() - 1) << SLAB_SHIFT | slabPosition;
+        slabPosition += recordSize;
+        return address;
+    }
+
+    /**
+     * Copies the records of the stored customers into new slabs in insertion order, so the slabs of removed
+     * records can be freed.
+     */
+    private void compact() {
+        final List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+        final long[] oldSequences = orderSequences;
+        final long[] oldAddresses = orderAddresses;
+        final int oldOrderSize = orderSize;
+        slabs.clear();
+        slabPosition = SLAB_SIZE;
+        orderSequences = new long[Math.max(16, size)];
+        orderAddresses = new long[orderSequences.length];
+        orderSize = 0;
+        tableAddresses = emptyTable(tableAddresses.length);
+        tableUsed = 0;
+        for (int index = 0; index < oldOrderSize; index++) {
+            final long oldAddress = oldAddresses[index];
+            if (oldAddress == REMOVED) {
+                continue;
+            }
+            final ByteBuffer source = oldSlabs.get((int) (oldAddress >>> SLAB_SHIFT)).duplicate();
+            final int recordSize = recordSize(source, offset(oldAddress));
+            source.position(offset(oldAddress)).limit(offset(oldAddress) + recordSize);
+            final long address = allocate(recordSize);
+            final ByteBuffer target = slab(address).duplicate();
+            target.position(offset(address));
+            target.put(source);
+            insert(address, hash(nameOf(address)));
+            appendToOrder(oldSequences[index], address);
+        }
+        removedBytes = 0;
+    }
+
+    private Customer materializeIfMatching(final long address, final CustomerFilter filter) {
+        if (address == REMOVED) {
+            return null;
+        }
+        if (filter.getCategory().isPresent()
+            && slab(address).getInt(offset(address) + CATEGORY_OFFSET) != filter.getCategory().getAsInt()) {
+            return null;
+        }
+        final Customer customer = materialize(address);
+        return filter.matches(customer) ? customer : null;
+    }
+
+    private Customer materialize(final long address) {
+        final ByteBuffer slab = slab(address);
+        final int offset = offset(address);
+        final int nameLength = slab.getShort(offset + NAME_LENGTH_OFFSET) & 0xffff;
+        final int mailLength = slab.getShort(offset + MAIL_LENGTH_OFFSET) & 0xffff;
+        final String name = decode(slab, offset + HEADER_SIZE, nameLength);
+        final String mailAddress = mailLength == NULL_LENGTH
+                                   ? null
+                                   : decode(slab, offset + HEADER_SIZE + nameLength, mailLength);
+        return new Customer(name, mailAddress, slab.getInt(offset + CATEGORY_OFFSET));
+    }
+
+    private String nameOf(final long address) {
+        final ByteBuffer slab = slab(address);
+        final int offset = offset(address);
+        return decode(slab, offset + HEADER_SIZE, slab.getShort(offset + NAME_LENGTH_OFFSET) & 0xffff);
+    }
+
+    private boolean hasName(final long address, final byte[] name) {
+        final ByteBuffer slab = slab(address);
+        final int offset = offset(address);
+        if ((slab.getShort(offset + NAME_LENGTH_OFFSET) & 0xffff) != name.length) {
+            return false;
+        }
+        for (int index = 0; index < name.length; index++) {
+            if (slab.get(offset + HEADER_SIZE + index) != name[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long sequenceOf(final long address) {
+        return slab(address).getLong(offset(address) + SEQUENCE_OFFSET);
+    }
+
+    private int recordSize(final long address) {
+        return recordSize(slab(address), offset(address));
+    }
+
+    private ByteBuffer slab(final long address) {
+        return slabs.get((int) (address >>> SLAB_SHIFT));
+    }
+
+    private static int recordSize(final ByteBuffer slab, final int offset) {
+        final int mailLength = slab.getShort(offset + MAIL_LENGTH_OFFSET) & 0xffff;
+        return HEADER_SIZE + (slab.getShort(offset + NAME_LENGTH_OFFSET) & 0xffff)
+               + (mailLength == NULL_LENGTH ? 0 : mailLength);
+    }
+
+    private static int offset(final long address) {
+        return (int) (address & (SLAB_SIZE - 1));
+    }
+
+    private static String decode(final ByteBuffer slab, final int offset, final int length) {
+        final byte[] bytes = new byte[length];
+        for (int index = 0; index < length; index++) {
+            bytes[index] = slab.get(offset + index);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(final String name) {
+        final int hash = name.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long[] emptyTable(final int capacity) {
+        final long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
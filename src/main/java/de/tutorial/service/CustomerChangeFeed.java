@@ -0,0 +1,186 @@
+package de.tutorial.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerChange;
+import de.tutorial.repository.CustomerRepositoryListener;
+
+/**
+ * Retains the latest changes of the customers in a ring buffer, so consumers can follow them instead of
+ * polling and diffing all customers. Every customer added or removed through the {@link CustomerService},
+ * including batch imports and their rollbacks, is published with the next sequence number.
+ * <p>
+ * Publishing only stores the change and notifies the listeners, which must return immediately. It takes no
+ * lock, since the store publishes while it holds the lock of the changed shard: a writer claims the next
+ * sequence, stores its change and then advances the published sequence over every stored change, so
+ * readers never see a gap. Reading is lock-free and never delays writers; a consumer that falls behind by
+ * more than the capacity finds its changes overwritten and has to start over with the current customers.
+ * <p>
+ * Sequences start over when the application is restarted, so consumers resume with event ids that carry a
+ * random epoch of the feed, like {@code EntityTags}; an id of an earlier run is reported as expired.
+ */
+@Component
+public class CustomerChangeFeed implements CustomerRepositoryListener {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final AtomicReferenceArray<CustomerChange> changes;
+    private final int mask;
+    private final String epochPrefix;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong claimedSequence;
+    private final AtomicLong lastSequence;
+
+    public CustomerChangeFeed(final CustomerService customerService) {
+        this(customerService, DEFAULT_CAPACITY);
+    }
+
+    @Autowired
+    public CustomerChangeFeed(final CustomerService customerService,
+                              @Value("${customer.change-feed.capacity:" + DEFAULT_CAPACITY + "}")
+                              final int capacity) {
+        Assert.notNull(customerService, "CustomerService must not be null");
+        Assert.isTrue(capacity > 0 && Integer.bitCount(capacity) == 1, "Capacity must be a power of two");
+        this.changes = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.epochPrefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36) + "-";
+        this.claimedSequence = new AtomicLong();
+        this.lastSequence = new AtomicLong();
+        customerService.addListener(this);
+    }
+
+    public int getCapacity() {
+        return changes.length();
+    }
+
+    /**
+     * @return the sequence of the latest change; consumers that only want new changes resume after it
+     */
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * @return the id of the change with the given sequence, which only this instance of the feed resolves
+     */
+    public String eventId(final long sequence) {
+        return epochPrefix + sequence;
+    }
+
+    /**
+     * Resolves an id returned by {@link #eventId(long)}.
+     *
+     * @throws CustomerChangesExpiredException if the id has not been issued by this instance of the feed
+     */
+    public long sequenceOf(final String eventId) throws CustomerChangesExpiredException {
+        if (eventId.startsWith(epochPrefix)) {
+            try {
+                return Long.parseLong(eventId.substring(epochPrefix.length()));
+            } catch (final NumberFormatException exception) {
+                // an id this instance never issued
+            }
+        }
+        throw CustomerChangesExpiredException.after(eventId);
+    }
+
+    /**
+     * Returns up to {@code limit} changes following the given sequence, oldest first.
+     *
+     * @throws CustomerChangesExpiredException if the change following the sequence is no longer retained
+     */
+    public List<CustomerChange> getChanges(final long afterSequence, final int limit)
+        throws CustomerChangesExpiredException {
+
+        final long last = lastSequence.get();
+        if (afterSequence > last || afterSequence < Math.max(0, last - changes.length())) {
+            throw CustomerChangesExpiredException.after(eventId(afterSequence));
+        }
+        final int count = (int) Math.min(limit, last - afterSequence);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        final List<CustomerChange> result = new ArrayList<>(count);
+        for (long sequence = afterSequence + 1; result.size() < count; sequence++) {
+            final CustomerChange change = changes.get((int) sequence & mask);
+            if (change == null || change.getSequence() != sequence) {
+                throw CustomerChangesExpiredException.after(eventId(afterSequence));
+            }
+            result.add(change);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a callback that is run after every published change, while the store still holds the lock
+     * of the changed customer; it must not block.
+     */
+    public void addListener(final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void customerAdded(final Customer customer) {
+        publish(CustomerChange.Type.ADDED, customer);
+    }
+
+    @Override
+    public void customerRemoved(final Customer customer) {
+        publish(CustomerChange.Type.REMOVED, customer);
+    }
+
+    private void publish(final CustomerChange.Type type, final Customer customer) {
+        final long sequence = claimedSequence.incrementAndGet();
+        store(new CustomerChange(sequence, type, customer));
+        advance();
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Stores the change unless a writer that claimed its sequence a whole ring later has already stored its
+     * own in the slot, in which case the change has expired before it was published.
+     */
+    private void store(final CustomerChange change) {
+        final int slot = (int) change.getSequence() & mask;
+        CustomerChange current;
+        do {
+            current = changes.get(slot);
+            if (current != null && current.getSequence() > change.getSequence()) {
+                return;
+            }
+        } while (!changes.compareAndSet(slot, current, change));
+    }
+
+    /**
+     * Publishes the changes following the last published one for as long as they have been stored. The
+     * writer of every change advances after storing it, so the last one to store a change of a contiguous
+     * run publishes the run, whichever order the writers store in.
+     */
+    private void advance() {
+        long last = lastSequence.get();
+        while (last < claimedSequence.get()) {
+            final CustomerChange next = changes.get((int) (last + 1) & mask);
+            if (next == null || next.getSequence() <= last) {
+                return;
+            }
+            // a later sequence in the slot means the next change expired before it was stored
+            lastSequence.compareAndSet(last, last + 1);
+            last = lastSequence.get();
+        }
+    }
+}
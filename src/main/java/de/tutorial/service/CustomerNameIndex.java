@@ -0,0 +1,225 @@
+package de.tutorial.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.repository.CustomerRepositoryListener;
+
+/**
+ * Finds customers by the start of their name or by a misspelled name, ignoring case. The lower case names
+ * are kept in a sorted map, which serves as a trie: all names with a common prefix are adjacent, and the
+ * characters following a prefix are found by seeking past the names that continue with the previous one.
+ * <p>
+ * A fuzzy search walks this trie depth first and extends one row of the edit distance matrix per character.
+ * A branch is abandoned as soon as every entry of its row exceeds the allowed distance, since appending
+ * characters never decreases the minimum of the row; only the prefixes within the distance of a prefix of
+ * the query are visited. Adjacent swapped characters count as one edit. Changes are applied while the
+ * repository holds the lock of the name, searches never block.
+ * <p>
+ * The index only holds the names, so it keeps no second copy of the customers on the heap, which matters
+ * most for the off-heap store. A name that is already lower case is its own key and costs no extra string.
+ * Found names are resolved through the repository; customers removed in the meantime are skipped.
+ */
+final class CustomerNameIndex implements CustomerRepositoryListener {
+    private static final Comparator<Match> BEST_FIRST =
+        Comparator.<Match>comparingInt(match -> match.distance).thenComparing(match -> match.key);
+    private static final String[] NO_NAMES = new String[0];
+
+    private final ConcurrentNavigableMap<String, String[]> namesByKey = new ConcurrentSkipListMap<>();
+    private final Function<String, Optional<Customer>> lookup;
+
+    /**
+     * @param lookup finds the stored customer of a name
+     */
+    CustomerNameIndex(final Function<String, Optional<Customer>> lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    public void customerAdded(final Customer customer) {
+        final String name = customer.getName();
+        namesByKey.compute(key(name), (key, names) -> {
+            final String[] current = names == null ? NO_NAMES : names;
+            for (final String other : current) {
+                if (other.equals(name)) {
+                    return current;
+                }
+            }
+            final String[] added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = name.equals(key) ? key : name;
+            return added;
+        });
+    }
+
+    @Override
+    public void customerRemoved(final Customer customer) {
+        namesByKey.computeIfPresent(key(customer.getName()), (key, names) -> {
+            final List<String> remaining = new ArrayList<>(Arrays.asList(names));
+            remaining.removeIf(other -> other.equals(customer.getName()));
+            return remaining.isEmpty() ? null : remaining.toArray(NO_NAMES);
+        });
+    }
+
+    /**
+     * @return up to {@code limit} customers whose lower case name starts with the lower case prefix, ordered
+     * by their lower case name
+     */
+    List<Customer> findByPrefix(final String prefix, final int limit) {
+        final String keyPrefix = key(prefix);
+        final List<Customer> customers = new ArrayList<>(Math.min(limit, 64));
+        for (final Map.Entry<String, String[]> entry : namesByKey.tailMap(keyPrefix).entrySet()) {
+            if (!entry.getKey().startsWith(keyPrefix)) {
+                break;
+            }
+            for (final String name : entry.getValue()) {
+                if (customers.size() == limit) {
+                    return Collections.unmodifiableList(customers);
+                }
+                lookup.apply(name).ifPresent(customers::add);
+            }
+        }
+        return Collections.unmodifiableList(customers);
+    }
+
+    /**
+     * @return up to {@code limit} customers whose name is at most {@code maxDistance} edits away from the query,
+     * the closest first and equally close ones ordered by their lower case name
+     */
+    List<CustomerMatch> findSimilar(final String query, final int maxDistance, final int limit) {
+        final Search search = new Search(key(query), maxDistance, limit);
+        final int[] firstRow = new int[search.query.length() + 1];
+        for (int column = 0; column < firstRow.length; column++) {
+            firstRow[column] = column;
+        }
+        search.visitChildren("", null, firstRow);
+        final List<Match> matches = new ArrayList<>(search.best);
+        matches.sort(BEST_FIRST);
+        final List<CustomerMatch> result = new ArrayList<>(matches.size());
+        for (final Match match : matches) {
+            for (final String name : match.names) {
+                if (result.size() < limit) {
+                    lookup.apply(name).ifPresent(customer -> result.add(new CustomerMatch(customer, match.distance)));
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    int size() {
+        return namesByKey.size();
+    }
+
+    private static String key(final String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private final class Search {
+        private final String query;
+        private final int limit;
+        private final PriorityQueue<Match> best;
+        private int maxDistance;
+
+        private Search(final String query, final int maxDistance, final int limit) {
+            this.query = query;
+            this.maxDistance = maxDistance;
+            this.limit = limit;
+            this.best = new PriorityQueue<>(limit, BEST_FIRST.reversed());
+        }
+
+        /**
+         * Visits the prefixes that extend the given one by a single character, in ascending order.
+         */
+        private void visitChildren(final String prefix, final int[] previousRow, final int[] row) {
+            String next = namesByKey.higherKey(prefix);
+            while (next != null && next.startsWith(prefix)) {
+                final char character = next.charAt(prefix.length());
+                visit(prefix + character, previousRow, row);
+                if (character == Character.MAX_VALUE) {
+                    return;
+                }
+                next = namesByKey.ceilingKey(prefix + (char) (character + 1));
+            }
+        }
+
+        private void visit(final String prefix, final int[] previousRow, final int[] parentRow) {
+            final int[] row = nextRow(prefix, previousRow, parentRow);
+            int minimum = row[0];
+            for (final int distance : row) {
+                minimum = Math.min(minimum, distance);
+            }
+            if (minimum > maxDistance) {
+                return;
+            }
+            final int distance = row[query.length()];
+            if (distance <= maxDistance) {
+                final String[] names = namesByKey.get(prefix);
+                if (names != null) {
+                    offer(new Match(prefix, names, distance));
+                }
+            }
+            visitChildren(prefix, parentRow, row);
+        }
+
+        /**
+         * Computes the row of the last character of the prefix from the rows of the two characters before it.
+         */
+        private int[] nextRow(final String prefix, final int[] previousRow, final int[] parentRow) {
+            final int length = prefix.length();
+            final char character = prefix.charAt(length - 1);
+            final int[] row = new int[parentRow.length];
+            row[0] = parentRow[0] + 1;
+            for (int column = 1; column < row.length; column++) {
+                final int replaced = parentRow[column - 1] + (query.charAt(column - 1) == character ? 0 : 1);
+                int distance = Math.min(Math.min(row[column - 1] + 1, parentRow[column] + 1), replaced);
+                if (previousRow != null && column > 1 && query.charAt(column - 2) == character
+                    && query.charAt(column - 1) == prefix.charAt(length - 2)) {
+                    distance = Math.min(distance, previousRow[column - 2] + 1);
+                }
+                row[column] = distance;
+            }
+            return row;
+        }
+
+        /**
+         * Keeps the best matches found so far. Matches are found in ascending order of their keys, so once
+         * the limit is reached, only closer matches can replace one, and the search narrows accordingly.
+         */
+        private void offer(final Match match) {
+            best.add(match);
+            int names = 0;
+            for (final Match kept : best) {
+                names += kept.names.length;
+            }
+            while (names - best.peek().names.length >= limit) {
+                names -= best.poll().names.length;
+            }
+            if (names >= limit) {
+                maxDistance = Math.min(maxDistance, best.peek().distance - 1);
+            }
+        }
+    }
+
+    private static final class Match {
+        private final String key;
+        private final String[] names;
+        private final int distance;
+
+        private Match(final String key, final String[] names, final int distance) {
+            this.key = key;
+            this.names = names;
+            this.distance = distance;
+        }
+    }
+}
@@ -1,44 +1,482 @@
 package de.tutorial.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 
 import de.tutorial.exception.CustomerAlreadyExistsException;
 import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.ServiceOverloadedException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.BatchImportResult;
+import de.tutorial.model.BatchItemError;
 import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.persistence.CustomerJournal;
+import de.tutorial.repository.CustomerRepository;
+import de.tutorial.repository.CustomerRepositoryListener;
 
 @Service
 public class CustomerService {
-    private final List<Customer> customers = new ArrayList<>();
+    static final int IMPORT_BATCH_SIZE = 1_000;
+    static final int MAX_REPORTED_IMPORT_ERRORS = 1_000;
+    public static final int MAX_SEARCH_DISTANCE = 2;
+
+    private final CustomerRepository customerRepository;
+    private final Optional<CustomerJournal> customerJournal;
+    private final Timer addTimer;
+    private final Timer deleteTimer;
+    private final Timer durableTimer;
+    private final CustomerNameIndex nameIndex;
+    private final Optional<CustomerWriteBatcher> writeBatcher;
+
+    public CustomerService(final CustomerRepository customerRepository) {
+        this(customerRepository, Optional.empty());
+    }
+
+    /**
+     * Creates a service without metrics; the meters of an empty composite registry record nothing.
+     */
+    public CustomerService(final CustomerRepository customerRepository,
+                           final Optional<CustomerJournal> customerJournal) {
+        this(customerRepository, customerJournal, new CompositeMeterRegistry());
+    }
+
+    public CustomerService(final CustomerRepository customerRepository,
+                           final Optional<CustomerJournal> customerJournal,
+                           final MeterRegistry meterRegistry) {
+        this(customerRepository, customerJournal, meterRegistry, 0);
+    }
+
+    /**
+     * @param writeBatchSize the maximum number of additions and deletions a single writer applies at once,
+     *                       or {@code 0} to let every caller apply its own
+     */
+    @Autowired
+    public CustomerService(final CustomerRepository customerRepository,
+                           final Optional<CustomerJournal> customerJournal,
+                           final MeterRegistry meterRegistry,
+                           @Value("${customer.writes.batch-size:0}") final int writeBatchSize) {
+        Assert.notNull(customerRepository, "CustomerRepository must not be null");
+        Assert.notNull(customerJournal, "CustomerJournal must not be null");
+        Assert.notNull(meterRegistry, "MeterRegistry must not be null");
+        Assert.isTrue(writeBatchSize >= 0, "The write batch size must not be negative");
+        this.customerRepository = customerRepository;
+        this.customerJournal = customerJournal;
+        this.addTimer = writeTimer(meterRegistry, "add");
+        this.deleteTimer = writeTimer(meterRegistry, "delete");
+        this.durableTimer = Timer.builder("customer.journal.await")
+                                 .description("Time spent waiting for changes to become durable")
+                                 .register(meterRegistry);
+        this.writeBatcher = writeBatchSize == 0 ? Optional.empty() : Optional.of(new CustomerWriteBatcher(
+            writeBatchSize, this::whenDurable, DistributionSummary.builder("customer.writes.batch")
+                                                                  .description("Changes applied per write batch")
+                                                                  .register(meterRegistry)));
+        this.nameIndex = new CustomerNameIndex(customerRepository::findByName);
+        customerRepository.addListener(nameIndex);
+        customerRepository.forEach(nameIndex::customerAdded);
+    }
 
     public List<Customer> getCustomers() {
-        return customers.stream().collect(Collectors.collectingAndThen(
-            Collectors.toList(), Collections::unmodifiableList));
+        return customerRepository.findAll();
+    }
+
+    public List<Customer> getCustomers(final CustomerFilter filter) {
+        return filter.isEmpty() ? customerRepository.findAll() : customerRepository.findAll(filter);
+    }
+
+    public CustomerPage getCustomers(final CustomerFilter filter, final long afterCursor, final int limit) {
+        return customerRepository.findPage(filter, afterCursor, limit);
+    }
+
+    public void forEachCustomer(final Consumer<? super Customer> action) {
+        customerRepository.forEach(action);
+    }
+
+    /**
+     * @return up to {@code limit} customers whose name starts with the prefix, ignoring case, ordered by name
+     */
+    public List<Customer> searchCustomersByPrefix(final String prefix, final int limit) {
+        return nameIndex.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * Finds customers by a possibly misspelled name, ignoring case. Inserted, deleted, replaced and swapped
+     * adjacent characters count as one edit each.
+     *
+     * @return up to {@code limit} customers at most {@code maxDistance} edits away from the query, the closest
+     * first
+     */
+    public List<CustomerMatch> searchCustomersByName(final String query, final int maxDistance, final int limit) {
+        Assert.isTrue(maxDistance >= 0 && maxDistance <= MAX_SEARCH_DISTANCE,
+                      "The distance must be between 0 and " + MAX_SEARCH_DISTANCE);
+        return nameIndex.findSimilar(query, maxDistance, limit);
     }
 
     public Optional<Customer> getCustomer(final String name) {
-        return customers.stream().filter(customer -> customer.getName().equals(name)).findFirst();
+        return customerRepository.findByName(name);
+    }
+
+    public Optional<VersionedCustomer> getVersionedCustomer(final String name) {
+        return customerRepository.findVersionedByName(name);
+    }
+
+    /**
+     * @return the version of all customers; read it before the customers, so it never claims a state that is
+     * newer than what has been read
+     */
+    public long getVersion() {
+        return customerRepository.version();
     }
 
-    public void addCustomer(final Customer customer) throws CustomerAlreadyExistsException {
-        final boolean customerAlreadyExists = customers
-            .stream().anyMatch(cus -> cus.getName().equals(customer.getName()));
-        if (customerAlreadyExists) {
-            throw new CustomerAlreadyExistsException(
-                String.format("A customer with name %s already exists", customer.getName()));
+    public void addCustomer(final Customer customer)
+        throws CustomerAlreadyExistsException, CustomerTooLargeException {
+
+        checkSize(customer);
+        if (writeBatcher.isPresent()) {
+            final Throwable failure = failureOf(writeBatcher.get().submit(addition(customer)));
+            if (failure != null) {
+                throw (CustomerAlreadyExistsException) failure;
+            }
+            return;
+        }
+        if (!add(customer)) {
+            throw CustomerAlreadyExistsException.forName(customer.getName());
+        }
+        awaitDurable();
+    }
+
+    /**
+     * Adds the customer without blocking the caller. The returned future completes once the customer is
+     * durable, or exceptionally with a {@link CustomerAlreadyExistsException} or a
+     * {@link CustomerTooLargeException}. With a write batch size it also completes with a
+     * {@link ServiceOverloadedException} while the queue of the writer is full.
+     */
+    public CompletableFuture<Void> addCustomerAsync(final Customer customer) {
+        if (isTooLarge(customer)) {
+            return failed(CustomerTooLargeException.withLimit(Customer.MAX_FIELD_BYTES));
+        }
+        if (writeBatcher.isPresent()) {
+            return writeBatcher.get().trySubmit(addition(customer));
         }
-        customers.add(customer);
+        if (!add(customer)) {
+            return failed(CustomerAlreadyExistsException.forName(customer.getName()));
+        }
+        return whenDurable();
+    }
+
+    /**
+     * Adds the customers in batches while they are read from the given iterator, so the import never holds
+     * more than one batch of parsed customers. In {@link BatchImportMode#ALL_OR_NOTHING} mode the customers
+     * added so far are removed again once a conflict is found or reading fails; the remaining input is only
+     * checked for further conflicts. Concurrent readers may observe an all-or-nothing import before it is
+     * rolled back. With persistence enabled, the import waits once per batch for its changes to become durable.
+     * A customer that is too large ends the import like input that cannot be read.
+     */
+    public BatchImportResult importCustomers(final Iterator<Customer> customers, final BatchImportMode mode)
+        throws CustomerTooLargeException {
+
+        final BatchImport batchImport = new BatchImport(mode);
+        boolean completed = false;
+        try {
+            final List<Customer> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            while (customers.hasNext()) {
+                final Customer customer = customers.next();
+                checkSize(customer);
+                batch.add(customer);
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    batchImport.apply(batch);
+                    awaitDurable();
+                    batch.clear();
+                }
+            }
+            batchImport.apply(batch);
+            completed = true;
+        } finally {
+            if (!completed || batchImport.failed) {
+                batchImport.rollback();
+            }
+        }
+        awaitDurable();
+        return batchImport.result();
     }
 
     public void deleteCustomer(final String name) throws CustomerNotFoundException {
-        final boolean hasRemoved = customers.removeIf(customer -> customer.getName().equals(name));
-        if (!hasRemoved) {
-            throw new CustomerNotFoundException(String.format("A customer with name %s does not exist", name));
+        if (writeBatcher.isPresent()) {
+            final Throwable failure = failureOf(writeBatcher.get().submit(deletion(name, null)));
+            if (failure != null) {
+                throw (CustomerNotFoundException) failure;
+            }
+            return;
+        }
+        if (!remove(name, null)) {
+            throw CustomerNotFoundException.forName(name);
+        }
+        awaitDurable();
+    }
+
+    /**
+     * Deletes the customer only if its current version is one of the expected versions.
+     */
+    public void deleteCustomer(final String name, final Collection<Long> expectedVersions)
+        throws CustomerNotFoundException, CustomerVersionMismatchException {
+
+        Assert.notNull(expectedVersions, "Expected versions must not be null");
+        if (writeBatcher.isPresent()) {
+            final Throwable failure = failureOf(writeBatcher.get().submit(deletion(name, expectedVersions)));
+            if (failure instanceof CustomerNotFoundException) {
+                throw (CustomerNotFoundException) failure;
+            }
+            if (failure != null) {
+                throw (CustomerVersionMismatchException) failure;
+            }
+            return;
+        }
+        if (!remove(name, expectedVersions)) {
+            if (customerRepository.findByName(name).isPresent()) {
+                throw CustomerVersionMismatchException.forName(name);
+            }
+            throw CustomerNotFoundException.forName(name);
+        }
+        awaitDurable();
+    }
+
+    /**
+     * Deletes the customer without blocking the caller; {@code null} expected versions accept any version.
+     * The returned future completes once the deletion is durable, or exceptionally with a
+     * {@link CustomerNotFoundException} or {@link CustomerVersionMismatchException}, or like
+     * {@link #addCustomerAsync(Customer)} with a {@link ServiceOverloadedException}.
+     */
+    public CompletableFuture<Void> deleteCustomerAsync(final String name, final Collection<Long> expectedVersions) {
+        if (writeBatcher.isPresent()) {
+            return writeBatcher.get().trySubmit(deletion(name, expectedVersions));
+        }
+        if (!remove(name, expectedVersions)) {
+            return failed(expectedVersions == null ? CustomerNotFoundException.forName(name) : deleteFailure(name));
+        }
+        return whenDurable();
+    }
+
+    public void addListener(final CustomerRepositoryListener listener) {
+        customerRepository.addListener(listener);
+    }
+
+    /**
+     * Applies the additions and deletions queued for the writer and stops it.
+     */
+    @PreDestroy
+    public void close() {
+        writeBatcher.ifPresent(CustomerWriteBatcher::close);
+    }
+
+    private CustomerWriteBatcher.Write addition(final Customer customer) {
+        return () -> add(customer) ? null : CustomerAlreadyExistsException.forName(customer.getName());
+    }
+
+    private CustomerWriteBatcher.Write deletion(final String name, final Collection<Long> expectedVersions) {
+        return () -> {
+            if (remove(name, expectedVersions)) {
+                return null;
+            }
+            return expectedVersions == null ? CustomerNotFoundException.forName(name) : deleteFailure(name);
+        };
+    }
+
+    private static void checkSize(final Customer customer) throws CustomerTooLargeException {
+        if (isTooLarge(customer)) {
+            throw CustomerTooLargeException.withLimit(Customer.MAX_FIELD_BYTES);
+        }
+    }
+
+    private static boolean isTooLarge(final Customer customer) {
+        return isTooLarge(customer.getName()) || isTooLarge(customer.getMailAddress());
+    }
+
+    /**
+     * Counts the bytes of UTF-8 without encoding, and only for strings long enough to possibly exceed the
+     * limit, since nearly every customer is far below it.
+     */
+    private static boolean isTooLarge(final String value) {
+        if (value == null || value.length() * 3L <= Customer.MAX_FIELD_BYTES) {
+            return false;
+        }
+        long length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            final char character = value.charAt(index);
+            if (character < 0x80) {
+                length++;
+            } else if (character < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(character) && index + 1 < value.length()
+                       && Character.isLowSurrogate(value.charAt(index + 1))) {
+                length += 4;
+                index++;
+            } else {
+                length += 3;
+            }
+        }
+        return length > Customer.MAX_FIELD_BYTES;
+    }
+
+    private boolean add(final Customer customer) {
+        final long started = System.nanoTime();
+        final boolean added = customerRepository.addIfAbsent(customer);
+        addTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return added;
+    }
+
+    private boolean remove(final String name, final Collection<Long> expectedVersions) {
+        final long started = System.nanoTime();
+        final Optional<Customer> removed = expectedVersions == null
+                                           ? customerRepository.remove(name)
+                                           : customerRepository.removeIf(name, expectedVersions::contains);
+        deleteTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return removed.isPresent();
+    }
+
+    private Exception deleteFailure(final String name) {
+        if (customerRepository.findByName(name).isPresent()) {
+            return CustomerVersionMismatchException.forName(name);
+        }
+        return CustomerNotFoundException.forName(name);
+    }
+
+    private CompletableFuture<Void> whenDurable() {
+        if (!customerJournal.isPresent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final long started = System.nanoTime();
+        return customerJournal.get().whenDurable().whenComplete(
+            (ignored, failure) -> durableTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Waits for the future and returns the checked exception it completed with, rethrowing unchecked ones.
+     */
+    private static Throwable failureOf(final CompletableFuture<Void> future) {
+        try {
+            future.join();
+            return null;
+        } catch (final CompletionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return cause;
+        }
+    }
+
+    private static CompletableFuture<Void> failed(final Throwable failure) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    private void awaitDurable() {
+        if (customerJournal.isPresent()) {
+            final long started = System.nanoTime();
+            customerJournal.get().awaitDurable();
+            durableTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Times a change of the repository including the wait for the lock of the shard of the name, which is
+     * where writers of the same shard contend.
+     */
+    private static Timer writeTimer(final MeterRegistry meterRegistry, final String operation) {
+        return Timer.builder("customer.store.writes")
+                    .tag("operation", operation)
+                    .description("Time spent adding or removing a customer in the store")
+                    .register(meterRegistry);
+    }
+
+    private final class BatchImport {
+        private final boolean allOrNothing;
+        private final Map<String, Long> addedVersions = new LinkedHashMap<>();
+        private final Set<String> checkedNames = new HashSet<>();
+        private final List<BatchItemError> errors = new ArrayList<>();
+        private long index;
+        private long created;
+        private long conflicts;
+        private boolean failed;
+
+        private BatchImport(final BatchImportMode mode) {
+            this.allOrNothing = mode == BatchImportMode.ALL_OR_NOTHING;
+        }
+
+        private void apply(final List<Customer> batch) {
+            for (final Customer customer : batch) {
+                final String name = customer.getName();
+                if (failed) {
+                    if (!checkedNames.add(name) || customerRepository.findByName(name).isPresent()) {
+                        conflict(name);
+                    }
+                } else {
+                    final long version = customerRepository.addIfAbsentVersioned(customer);
+                    if (version == CustomerRepository.NOT_ADDED) {
+                        conflict(name);
+                    } else {
+                        created++;
+                        if (allOrNothing) {
+                            addedVersions.put(name, version);
+                        }
+                    }
+                }
+                index++;
+            }
+        }
+
+        private void conflict(final String name) {
+            conflicts++;
+            if (errors.size() < MAX_REPORTED_IMPORT_ERRORS) {
+                errors.add(new BatchItemError(index, name, CustomerAlreadyExistsException.message(name)));
+            }
+            failed = allOrNothing;
+        }
+
+        /**
+         * Removes only the customers this import added, not ones that concurrent requests have removed and
+         * added again with the same name in the meantime.
+         */
+        private void rollback() {
+            addedVersions.forEach((name, version) -> customerRepository.removeIf(name, current -> current == version));
+            addedVersions.clear();
+            created = 0;
+        }
+
+        private BatchImportResult result() {
+            return new BatchImportResult(!failed, created, conflicts, Collections.unmodifiableList(errors));
         }
     }
 }
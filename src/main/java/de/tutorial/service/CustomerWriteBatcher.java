@@ -0,0 +1,164 @@
+package de.tutorial.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import org.springframework.util.Assert;
+
+import de.tutorial.exception.ServiceOverloadedException;
+
+/**
+ * Applies the changes of all requests on a single writer thread. The writer takes every change queued while
+ * it applied the previous batch, up to {@code maxBatchSize}, applies them one after another without other
+ * writers contending for the locks of the store, and asks once per batch for the changes to become durable.
+ * The futures of a batch complete together, on the thread that completes the durability of the batch, so
+ * their dependent actions must not block.
+ * <p>
+ * The queue holds {@value #QUEUED_BATCHES} batches. Blocking callers wait for room, the others are rejected
+ * with a {@link ServiceOverloadedException} rather than queueing changes that would only time out.
+ */
+final class CustomerWriteBatcher {
+    static final int QUEUED_BATCHES = 64;
+
+    private final int maxBatchSize;
+    private final Supplier<CompletableFuture<Void>> durable;
+    private final DistributionSummary batchSizes;
+    private final BlockingQueue<PendingWrite> queue;
+    private final PendingWrite stop = new PendingWrite(null);
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * A change of the store that is applied by the writer.
+     */
+    interface Write {
+        /**
+         * @return {@code null} if the change has been applied, otherwise the exception to complete it with
+         */
+        Exception apply();
+    }
+
+    /**
+     * @param durable returns a future that completes once the changes applied so far are durable
+     */
+    CustomerWriteBatcher(final int maxBatchSize, final Supplier<CompletableFuture<Void>> durable,
+                         final DistributionSummary batchSizes) {
+        Assert.isTrue(maxBatchSize > 0, "The batch size must be positive");
+        this.maxBatchSize = maxBatchSize;
+        this.durable = durable;
+        this.batchSizes = batchSizes;
+        this.queue = new ArrayBlockingQueue<>(maxBatchSize * QUEUED_BATCHES);
+        this.writer = new Thread(this::writeLoop, "customer-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the change, waiting while the queue is full.
+     */
+    CompletableFuture<Void> submit(final Write write) {
+        final PendingWrite pending = new PendingWrite(write);
+        try {
+            queue.put(pending);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(new IllegalStateException("Interrupted while queueing a change"));
+            return pending.future;
+        }
+        return rejectIfClosed(pending);
+    }
+
+    /**
+     * Queues the change, or rejects it with a {@link ServiceOverloadedException} if the queue is full.
+     */
+    CompletableFuture<Void> trySubmit(final Write write) {
+        final PendingWrite pending = new PendingWrite(write);
+        if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(ServiceOverloadedException.withLimit(maxBatchSize * QUEUED_BATCHES));
+            return pending.future;
+        }
+        return rejectIfClosed(pending);
+    }
+
+    /**
+     * Applies the changes queued so far and stops the writer. Later changes are rejected.
+     */
+    void close() {
+        closed = true;
+        try {
+            queue.put(stop);
+            writer.join();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> rejectIfClosed(final PendingWrite pending) {
+        if (closed && queue.remove(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException("The writer has been closed"));
+        }
+        return pending.future;
+    }
+
+    private void writeLoop() {
+        final List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (final InterruptedException exception) {
+                return;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            stopped = batch.remove(stop);
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(final List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizes.record(batch.size());
+        final List<CompletableFuture<Void>> applied = new ArrayList<>(batch.size());
+        for (final PendingWrite pending : batch) {
+            Exception failure;
+            try {
+                failure = pending.write.apply();
+            } catch (final RuntimeException exception) {
+                failure = exception;
+            }
+            if (failure == null) {
+                applied.add(pending.future);
+            } else {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+        if (!applied.isEmpty()) {
+            durable.get().whenComplete((ignored, failure) -> {
+                for (final CompletableFuture<Void> future : applied) {
+                    if (failure == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(failure);
+                    }
+                }
+            });
+        }
+    }
+
+    private static final class PendingWrite {
+        private final Write write;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(final Write write) {
+            this.write = write;
+        }
+    }
+}
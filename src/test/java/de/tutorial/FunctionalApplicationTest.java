@@ -0,0 +1,46 @@
+package de.tutorial;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import de.tutorial.controller.CustomerController;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FunctionalApplicationTest {
+    private ConfigurableApplicationContext context;
+
+    @Before
+    public void setUp() {
+        context = FunctionalApplication.application().run("--server.port=0", "--spring.main.banner-mode=off");
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void run_shouldCreateController_onFirstRequest() throws Exception {
+        assertTrue(context.getBeanFactory().containsSingleton("customerService"));
+        assertFalse(context.getBeanFactory().containsSingleton("customerController"));
+
+        final int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        final HttpURLConnection connection =
+            (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/customers").openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            assertEquals(200, connection.getResponseCode());
+            assertEquals('[', body.read());
+        }
+        assertTrue(context.getBeanFactory().containsSingleton("customerController"));
+        assertEquals(1, context.getBeansOfType(CustomerController.class).size());
+    }
+}
@@ -0,0 +1,46 @@
+package de.tutorial;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void prometheus_shouldExposeRequestStoreAndErrorMetrics() throws Exception {
+        final String customer = "{\"name\":\"metrics\",\"mailAddress\":\"m@mail.com\",\"category\":1}";
+        mockMvc.perform(post("/customers").contentType(MediaType.APPLICATION_JSON).content(customer))
+               .andExpect(status().isCreated());
+        mockMvc.perform(post("/customers").contentType(MediaType.APPLICATION_JSON).content(customer))
+               .andExpect(status().isConflict());
+        mockMvc.perform(get("/customers/{name}", "missing")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString(
+                   "http_server_requests_seconds{exception=\"CustomerNotFoundException\",method=\"GET\",status=\"404\","
+                   + "uri=\"/customers/{name}\",quantile=\"0.99\",}")))
+               .andExpect(content().string(containsString("customer_errors_total{reason=\"notFound\",} 1.0")))
+               .andExpect(content().string(containsString("customer_errors_total{reason=\"alreadyExists\",} 1.0")))
+               .andExpect(content().string(containsString(
+                   "customer_store_writes_seconds_count{operation=\"add\",} 2.0")))
+               .andExpect(content().string(containsString("customer_store_size 1.0")))
+               .andExpect(content().string(containsString("customer_index_buckets{index=\"category\",} 1.0")));
+    }
+}
@@ -0,0 +1,47 @@
+package de.tutorial;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The {@code reactive} profile needs the web application type as an inline property as well, since the test
+ * framework decides on the type of the context before the profile's properties are read.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactive")
+public class ReactiveApplicationTest {
+    @Autowired
+    private ReactiveWebServerApplicationContext context;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    public void reactiveProfile_shouldServeCustomersFromNetty() {
+        assertTrue(context.getWebServer() instanceof NettyWebServer);
+
+        final String customer = "{\"name\":\"reactive\",\"mailAddress\":\"r@mail.com\",\"category\":1}";
+        webTestClient.post().uri("/customers").contentType(MediaType.APPLICATION_JSON).syncBody(customer)
+                     .exchange()
+                     .expectStatus().isCreated();
+        webTestClient.get().uri("/customers/{name}", "reactive")
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectBody().json(customer);
+        webTestClient.get().uri("/actuator/prometheus")
+                     .exchange()
+                     .expectStatus().isOk();
+    }
+}
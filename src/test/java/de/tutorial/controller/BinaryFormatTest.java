@@ -0,0 +1,69 @@
+package de.tutorial.controller;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+
+public class BinaryFormatTest {
+
+    @Test
+    public void negotiate_withoutBinaryMediaType_shouldChooseJson() {
+        assertNull(BinaryFormat.negotiate(null));
+        assertNull(BinaryFormat.negotiate("application/json"));
+        assertNull(BinaryFormat.negotiate("*/*"));
+    }
+
+    @Test
+    public void negotiate_withBinaryMediaType_shouldChooseThatFormat() {
+        assertEquals(BinaryFormat.SMILE, BinaryFormat.negotiate("application/x-jackson-smile"));
+        assertEquals(BinaryFormat.CBOR, BinaryFormat.negotiate("application/json;q=0.5, application/cbor"));
+        assertEquals(BinaryFormat.PROTOBUF, BinaryFormat.negotiate("application/x-protobuf, */*;q=0.1"));
+    }
+
+    @Test
+    public void negotiate_whenJsonIsPreferred_shouldChooseJson() {
+        assertNull(BinaryFormat.negotiate("application/cbor;q=0.5, application/json"));
+        assertNull(BinaryFormat.negotiate("application/json, application/x-protobuf"));
+        assertNull(BinaryFormat.negotiate("application/x-protobuf;q=high"));
+    }
+
+    @Test
+    public void writeAndRead_shouldRoundTripCustomersInEveryFormat() throws Exception {
+        final Customer customer = new Customer("customerA", "example@mail.com", 1);
+        final List<Customer> customers = Arrays.asList(customer, new Customer("customerB", "example2@mail.com", 3));
+        for (final BinaryFormat format : BinaryFormat.values()) {
+            assertSameCustomer(customer, format.readCustomer(new ByteArrayInputStream(format.writeCustomer(customer))));
+            final List<Customer> read = format.readCustomers(format.writeCustomers(customers));
+            assertEquals(customers.size(), read.size());
+            for (int index = 0; index < customers.size(); index++) {
+                assertSameCustomer(customers.get(index), read.get(index));
+            }
+            assertTrue(format.readCustomers(format.writeCustomers(Collections.emptyList())).isEmpty());
+        }
+    }
+
+    @Test
+    public void writeCustomer_shouldBeSmallerThanJson() throws Exception {
+        final Customer customer = new Customer("customerA", "example@mail.com", 1);
+        final int json = new ObjectMapper().writeValueAsBytes(customer).length;
+        for (final BinaryFormat format : BinaryFormat.values()) {
+            assertTrue(format + " is not smaller than JSON", format.writeCustomer(customer).length < json);
+        }
+    }
+
+    private static void assertSameCustomer(final Customer expected, final Customer actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getMailAddress(), actual.getMailAddress());
+        assertEquals(expected.getCategory(), actual.getCategory());
+    }
+}
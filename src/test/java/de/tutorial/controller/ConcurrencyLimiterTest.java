@@ -0,0 +1,77 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ConcurrencyLimiter limiterUnderTest = new ConcurrencyLimiter(20, 4, 100, 2.0, WINDOW);
+    private long now = System.nanoTime();
+
+    @Test
+    public void tryAcquire_shouldAdmitUpToTheLimit() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiterUnderTest.tryAcquire());
+        }
+        assertFalse(limiterUnderTest.tryAcquire());
+        assertEquals(20, limiterUnderTest.getInFlight());
+
+        limiterUnderTest.release(LATENCY, now);
+
+        assertTrue(limiterUnderTest.tryAcquire());
+    }
+
+    @Test
+    public void release_withStableLatencyUnderLoad_shouldRaiseTheLimit() {
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiterUnderTest, limiterUnderTest.getLimit(), LATENCY);
+        }
+
+        assertTrue(limiterUnderTest.getLimit() > 20);
+    }
+
+    @Test
+    public void release_withRisingLatency_shouldLowerTheLimit() {
+        for (int window = 0; window < 5; window++) {
+            runWindow(limiterUnderTest, limiterUnderTest.getLimit(), LATENCY);
+        }
+        final int limit = limiterUnderTest.getLimit();
+
+        for (int window = 0; window < 5; window++) {
+            runWindow(limiterUnderTest, limiterUnderTest.getLimit(), 10 * LATENCY);
+        }
+
+        assertTrue(limiterUnderTest.getLimit() < limit);
+        assertTrue(limiterUnderTest.getLimit() >= 4);
+    }
+
+    @Test
+    public void release_withLittleLoad_shouldKeepTheLimit() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(40, 4, 100, 2.0, WINDOW);
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 12, LATENCY);
+        }
+
+        assertEquals(40, limiter.getLimit());
+    }
+
+    /**
+     * Admits the requests at once, then completes them with the latency in the next window.
+     */
+    private void runWindow(final ConcurrencyLimiter limiter, final int requests, final long latency) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        now += WINDOW;
+        for (int i = 0; i < requests; i++) {
+            limiter.release(latency, now);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.tutorial.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.Customer;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerChangeFeed;
+import de.tutorial.service.CustomerService;
+
+public class CustomerChangeBroadcasterTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private CustomerService service;
+    private CustomerChangeFeed feed;
+    private CustomerChangeBroadcaster broadcasterUnderTest;
+
+    @Before
+    public void setUp() {
+        service = new CustomerService(new InMemoryCustomerRepository());
+        feed = new CustomerChangeFeed(service, 16);
+        broadcasterUnderTest = new CustomerChangeBroadcaster(feed, new ObjectMapper().writerFor(Customer.class), 2,
+                                                             Duration.ZERO);
+    }
+
+    @After
+    public void tearDown() {
+        broadcasterUnderTest.close();
+    }
+
+    @Test
+    public void subscribe_withoutSequence_shouldSendNewChangesAsSharedEvents() throws Exception {
+        service.addCustomer(testCustomer("customerA"));
+        final RecordingSink first = new RecordingSink(Long.MAX_VALUE, 2);
+        final RecordingSink second = new RecordingSink(Long.MAX_VALUE, 2);
+        broadcasterUnderTest.subscribe(null).start(first);
+        broadcasterUnderTest.subscribe(null).start(second);
+
+        service.addCustomer(testCustomer("customerB"));
+        service.deleteCustomer("customerB");
+
+        first.await();
+        second.await();
+        final long sequence = feed.getLastSequence() - 1;
+        assertEquals("id:" + feed.eventId(sequence) + "\nevent:added\ndata:{\"name\":\"customerB\",\"mailAddress\":\"b@mail.com\","
+                     + "\"category\":1}\n\n", first.event(0));
+        assertTrue(first.event(1).startsWith("id:" + feed.eventId(sequence + 1) + "\nevent:removed\n"));
+        assertSame(first.events.get(0), second.events.get(0));
+        assertSame(first.events.get(1), second.events.get(1));
+    }
+
+    @Test
+    public void subscribe_withSequence_shouldResumeAfterIt() throws Exception {
+        service.addCustomer(testCustomer("customerA"));
+        final long after = feed.getLastSequence();
+        service.addCustomer(testCustomer("customerB"));
+        final RecordingSink sink = new RecordingSink(Long.MAX_VALUE, 1);
+
+        broadcasterUnderTest.subscribe(feed.eventId(after)).start(sink);
+
+        sink.await();
+        assertTrue(sink.event(0).contains("customerB"));
+    }
+
+    @Test(expected = CustomerChangesExpiredException.class)
+    public void subscribe_withExpiredSequence_shouldThrowException() throws Exception {
+        broadcasterUnderTest.subscribe(feed.eventId(feed.getLastSequence() - 1));
+    }
+
+    @Test(expected = CustomerChangesExpiredException.class)
+    public void subscribe_withEventIdOfAnotherEpoch_shouldThrowException() throws Exception {
+        broadcasterUnderTest.subscribe(new CustomerChangeFeed(service, 16).eventId(feed.getLastSequence()));
+    }
+
+    @Test
+    public void schedule_shouldOnlySendWhatTheSinkDemands() throws Exception {
+        final RecordingSink sink = new RecordingSink(1, 1);
+        final CustomerChangeBroadcaster.Subscription subscription = broadcasterUnderTest.subscribe(null);
+        subscription.start(sink);
+        service.addCustomer(testCustomer("customerA"));
+        service.addCustomer(testCustomer("customerB"));
+        sink.await();
+        Thread.sleep(100);
+        assertEquals(1, sink.events.size());
+
+        sink.expect(1);
+        sink.demand.set(1);
+        subscription.schedule();
+
+        sink.await();
+        assertTrue(sink.event(1).contains("customerB"));
+    }
+
+    @Test
+    public void subscription_fallingBehindTheFeed_shouldBeClosed() throws Exception {
+        final RecordingSink sink = new RecordingSink(0, 0);
+        final CustomerChangeBroadcaster.Subscription subscription = broadcasterUnderTest.subscribe(null);
+        subscription.start(sink);
+        for (int i = 0; i < 20; i++) {
+            service.addCustomer(testCustomer("customer" + i));
+        }
+
+        sink.demand.set(Long.MAX_VALUE);
+        subscription.schedule();
+
+        assertTrue(sink.closed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, sink.events.size());
+        assertEquals(0, broadcasterUnderTest.subscribers());
+    }
+
+    @Test
+    public void heartbeat_whenSubscriptionWithoutDemandFallsBehindTheFeed_shouldCloseIt() throws Exception {
+        final CustomerChangeBroadcaster heartbeating =
+            new CustomerChangeBroadcaster(feed, new ObjectMapper().writerFor(Customer.class), 1, Duration.ofMillis(10));
+        try {
+            final RecordingSink stalled = new RecordingSink(0, 0);
+            heartbeating.subscribe(null).start(stalled);
+            for (int i = 0; i < 20; i++) {
+                service.addCustomer(testCustomer("customer" + i));
+            }
+
+            assertTrue(stalled.closed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(0, heartbeating.subscribers());
+        } finally {
+            heartbeating.close();
+        }
+    }
+
+    @Test
+    public void encode_shouldEncodeEveryChangeOnce() throws Exception {
+        service.addCustomer(testCustomer("customerA"));
+        final long sequence = feed.getLastSequence();
+        final byte[] event = broadcasterUnderTest.encode(feed.getChanges(sequence - 1, 1).get(0));
+
+        assertSame(event, broadcasterUnderTest.encode(feed.getChanges(sequence - 1, 1).get(0)));
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, "b@mail.com", 1);
+    }
+
+    private static final class RecordingSink implements CustomerChangeBroadcaster.Sink {
+        private final List<byte[]> events = new CopyOnWriteArrayList<>();
+        private final AtomicLong demand;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile CountDownLatch expected;
+
+        private RecordingSink(final long demand, final int expected) {
+            this.demand = new AtomicLong(demand);
+            this.expected = new CountDownLatch(expected);
+        }
+
+        @Override
+        public long demand() {
+            return demand.get();
+        }
+
+        @Override
+        public void send(final byte[] event) {
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            events.add(event);
+            expected.countDown();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        private void expect(final int count) {
+            expected = new CountDownLatch(count);
+        }
+
+        private void await() throws InterruptedException {
+            assertTrue(expected.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        private String event(final int index) {
+            return new String(events.get(index), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.tutorial.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.tutorial.model.ErrorResponse;
+import de.tutorial.service.CustomerChangeFeed;
+import de.tutorial.service.CustomerService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static de.tutorial.controller.RestControllerExceptionHandler.CHANGES_EXPIRED_HINT;
+import static org.springframework.restdocs.headers.HeaderDocumentation.headerWithName;
+import static org.springframework.restdocs.headers.HeaderDocumentation.requestHeaders;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(CustomerChangeController.class)
+@Import(CustomerChangeFeed.class)
+@AutoConfigureRestDocs(outputDir = "target/snippets")
+public class CustomerChangeControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    public void streamChanges_afterEventIdOfEarlierRun_shouldReturnErrorResponse_withGoneStatus() throws Exception {
+        final String after = "earlierrun-1";
+        mockMvc.perform(get("/customers/changes").accept(MediaType.TEXT_EVENT_STREAM)
+                                                 .header(CustomerChangeController.LAST_EVENT_ID, after))
+               .andExpect(status().isGone())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(
+                   new ErrorResponse("The changes after " + after + " are no longer available",
+                                     CHANGES_EXPIRED_HINT))))
+               .andDo(document(
+                   "{class_name}/get_customer_changes_gone",
+                   requestHeaders(
+                       headerWithName(CustomerChangeController.LAST_EVENT_ID)
+                           .description("The id of the last event received before the connection was lost"))));
+    }
+
+}
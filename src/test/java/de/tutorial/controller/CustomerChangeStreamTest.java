@@ -0,0 +1,154 @@
+package de.tutorial.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+import de.tutorial.service.CustomerChangeFeed;
+import de.tutorial.service.CustomerService;
+
+/**
+ * Streams the changes through Tomcat, since the events are written with its non-blocking output. A single
+ * broadcaster thread shows whether a client that stops reading holds it.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = {"customer.change-feed.threads=1", "customer.limits.enabled=false"})
+public class CustomerChangeStreamTest {
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerChangeFeed changeFeed;
+
+    @Test
+    public void streamChanges_shouldSendNewChangesAsEvents() throws Exception {
+        final HttpURLConnection connection = openStream(null);
+        try (BufferedReader events = reader(connection)) {
+            assertTrue(connection.getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+            customerService.addCustomer(new Customer("streamA", "a@mail.com", 1));
+            customerService.deleteCustomer("streamA");
+
+            final long added = changeFeed.getLastSequence() - 1;
+            assertEquals("id:" + changeFeed.eventId(added) + "\nevent:added\ndata:{\"name\":\"streamA\",\"mailAddress\":\"a@mail.com\","
+                         + "\"category\":1}\n", readEvent(events));
+            assertEquals("id:" + changeFeed.eventId(added + 1) + "\nevent:removed\ndata:{\"name\":\"streamA\",\"mailAddress\":"
+                         + "\"a@mail.com\",\"category\":1}\n", readEvent(events));
+        }
+    }
+
+    @Test
+    public void streamChanges_withLastEventId_shouldResumeAfterIt() throws Exception {
+        customerService.addCustomer(new Customer("resumeA", "a@mail.com", 1));
+        final long after = changeFeed.getLastSequence();
+        customerService.addCustomer(new Customer("resumeB", "b@mail.com", 2));
+
+        try (BufferedReader events = reader(openStream(changeFeed.eventId(after)))) {
+            final String event = readEvent(events);
+            assertTrue(event.startsWith("id:" + changeFeed.eventId(after + 1) + "\nevent:added\n"));
+            assertTrue(event.contains("resumeB"));
+        }
+    }
+
+    @Test
+    public void streamChanges_whenOtherClientStopsReading_shouldStillSendEvents() throws Exception {
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("127.0.0.1", port), TIMEOUT_MILLIS);
+            stalled.setSoTimeout(TIMEOUT_MILLIS);
+            final OutputStream request = stalled.getOutputStream();
+            request.write(("GET /customers/changes HTTP/1.1\r\nHost: 127.0.0.1\r\nAccept: text/event-stream\r\n\r\n")
+                              .getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+            awaitHeaders(stalled.getInputStream());
+
+            // far more than the socket buffers of the client that does not read hold
+            final long before = changeFeed.getLastSequence();
+            final char[] padding = new char[8192];
+            Arrays.fill(padding, 'x');
+            final String mailAddress = new String(padding) + "@mail.com";
+            for (int index = 0; index < 2000; index++) {
+                customerService.addCustomer(new Customer("stalled" + index, mailAddress, 1));
+            }
+
+            final String last = "id:" + changeFeed.eventId(changeFeed.getLastSequence());
+            try (BufferedReader events = reader(openStream(changeFeed.eventId(before)))) {
+                String line;
+                while ((line = events.readLine()) != null && !line.equals(last)) {
+                    continue;
+                }
+                assertEquals(last, line);
+            }
+        }
+    }
+
+    /**
+     * Reads the response up to the end of the headers, so the stream has been subscribed.
+     */
+    private static void awaitHeaders(final InputStream response) throws IOException {
+        int matched = 0;
+        int next;
+        while (matched < 4 && (next = response.read()) >= 0) {
+            matched = next == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : next == '\r' ? 1 : 0;
+        }
+    }
+
+    private HttpURLConnection openStream(final String lastEventId) throws IOException {
+        final HttpURLConnection connection =
+            (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/customers/changes").openConnection();
+        connection.setRequestProperty("Accept", MediaType.TEXT_EVENT_STREAM_VALUE);
+        if (lastEventId != null) {
+            connection.setRequestProperty(CustomerChangeController.LAST_EVENT_ID, lastEventId);
+        }
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private static BufferedReader reader(final HttpURLConnection connection) throws IOException {
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the lines of the next event, skipping heartbeats
+     */
+    private static String readEvent(final BufferedReader events) throws IOException {
+        final StringBuilder event = new StringBuilder();
+        String line;
+        while ((line = events.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (event.length() > 0) {
+                    return event.toString();
+                }
+            } else if (!line.startsWith(":")) {
+                event.append(line).append('\n');
+            }
+        }
+        return event.toString();
+    }
+}
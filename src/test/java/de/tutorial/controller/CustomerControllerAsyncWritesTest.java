@@ -0,0 +1,115 @@
+package de.tutorial.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.model.Customer;
+import de.tutorial.model.ErrorResponse;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.service.CustomerService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static de.tutorial.controller.RestControllerExceptionHandler.ALREADY_EXISTS_HINT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(CustomerController.class)
+@TestPropertySource(properties = "customer.writes.async=true")
+public class CustomerControllerAsyncWritesTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    public void addCustomer_shouldReturnCreatedStatus_onceAdded() throws Exception {
+        final CompletableFuture<Void> added = new CompletableFuture<>();
+        when(customerService.addCustomerAsync(any())).thenReturn(added);
+        final MvcResult result = mockMvc.perform(post("/customers").content(testCustomerJson())
+                                                                   .contentType(MediaType.APPLICATION_JSON))
+                                        .andExpect(request().asyncStarted())
+                                        .andReturn();
+
+        added.complete(null);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isCreated());
+        verify(customerService, never()).addCustomer(any());
+    }
+
+    @Test
+    public void addCustomer_whenAlreadyExists_shouldReturnErrorResponse_withConflictStatus() throws Exception {
+        final CompletableFuture<Void> conflict = new CompletableFuture<>();
+        conflict.completeExceptionally(CustomerAlreadyExistsException.forName("customerA"));
+        when(customerService.addCustomerAsync(any())).thenReturn(conflict);
+        final MvcResult result = mockMvc.perform(post("/customers").content(testCustomerJson())
+                                                                   .contentType(MediaType.APPLICATION_JSON))
+                                        .andExpect(request().asyncStarted())
+                                        .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isConflict())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(
+                   new ErrorResponse(CustomerAlreadyExistsException.message("customerA"), ALREADY_EXISTS_HINT))));
+    }
+
+    @Test
+    public void deleteCustomer_withCurrentETag_shouldDeleteThatVersion_withOkStatus() throws Exception {
+        when(customerService.getVersionedCustomer("customerA"))
+            .thenReturn(Optional.of(new VersionedCustomer(testCustomer(), 7)));
+        when(customerService.deleteCustomerAsync("customerA", Collections.singletonList(7L)))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        final String etag = mockMvc.perform(get("/customers/{name}", "customerA"))
+                                   .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        final MvcResult result = mockMvc.perform(delete("/customers/{name}", "customerA")
+                                                     .header(HttpHeaders.IF_MATCH, etag))
+                                        .andExpect(request().asyncStarted())
+                                        .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        verify(customerService, never()).deleteCustomer(any(), any());
+    }
+
+    @Test
+    public void deleteCustomer_whenNotExists_shouldReturnNotFoundStatus() throws Exception {
+        final CompletableFuture<Void> missing = new CompletableFuture<>();
+        missing.completeExceptionally(CustomerNotFoundException.forName("customerA"));
+        when(customerService.deleteCustomerAsync("customerA", null)).thenReturn(missing);
+        final MvcResult result = mockMvc.perform(delete("/customers/{name}", "customerA"))
+                                        .andExpect(request().asyncStarted())
+                                        .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isNotFound());
+    }
+
+    private static Customer testCustomer() {
+        return new Customer("customerA", "example@mail.com", 1);
+    }
+
+    private static String testCustomerJson() throws Exception {
+        return new ObjectMapper().writeValueAsString(testCustomer());
+    }
+}
@@ -4,8 +4,18 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.tutorial.exception.CustomerAlreadyExistsException;
 import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.BatchImportResult;
+import de.tutorial.model.BatchItemError;
 import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.model.CustomerPage;
 import de.tutorial.model.ErrorResponse;
+import de.tutorial.model.VersionedCustomer;
 import de.tutorial.service.CustomerService;
 import org.junit.Before;
 import org.junit.Test;
@@ -14,25 +24,54 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.restdocs.operation.preprocess.ContentModifyingOperationPreprocessor;
+import org.springframework.restdocs.operation.preprocess.OperationPreprocessor;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
 import static de.tutorial.controller.RestControllerExceptionHandler.ALREADY_EXISTS_HINT;
+import static de.tutorial.controller.RestControllerExceptionHandler.TOO_LARGE_HINT;
+import static de.tutorial.controller.RestControllerExceptionHandler.MALFORMED_BATCH_HINT;
 import static de.tutorial.controller.RestControllerExceptionHandler.NOT_FOUND_HINT;
+import static de.tutorial.controller.RestControllerExceptionHandler.VERSION_MISMATCH_HINT;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.Mockito.*;
+import static org.springframework.restdocs.headers.HeaderDocumentation.headerWithName;
+import static org.springframework.restdocs.headers.HeaderDocumentation.requestHeaders;
+import static org.springframework.restdocs.headers.HeaderDocumentation.responseHeaders;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.*;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessRequest;
+import static org.springframework.restdocs.operation.preprocess.Preprocessors.preprocessResponse;
 import static org.springframework.restdocs.payload.PayloadDocumentation.fieldWithPath;
+import static org.springframework.restdocs.payload.PayloadDocumentation.subsectionWithPath;
 import static org.springframework.restdocs.payload.PayloadDocumentation.responseFields;
 import static org.springframework.restdocs.request.RequestDocumentation.parameterWithName;
 import static org.springframework.restdocs.request.RequestDocumentation.pathParameters;
+import static org.springframework.restdocs.request.RequestDocumentation.requestParameters;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -58,11 +97,179 @@ public class CustomerControllerTest {
                .andDo(document("{class_name}/get_customers_ok"));
     }
 
+    @Test
+    public void getCustomers_withCurrentETag_shouldReturnNotModifiedStatus_withoutReadingCustomers() throws Exception {
+        when(customerService.getVersion()).thenReturn(5L);
+        final String etag = mockMvc.perform(get("/customers").accept(MediaType.APPLICATION_JSON))
+                                   .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/customers").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+               .andExpect(status().isNotModified())
+               .andExpect(header().string(HttpHeaders.ETAG, etag))
+               .andExpect(content().string(""))
+               .andDo(document(
+                   "{class_name}/get_customers_not_modified",
+                   requestHeaders(
+                       headerWithName(HttpHeaders.IF_NONE_MATCH)
+                           .description("The ETag of a previous response"))));
+        verify(customerService, times(1)).getCustomers();
+    }
+
+    @Test
+    public void getCustomers_withOutdatedETag_shouldReturnCustomersAndNewETag() throws Exception {
+        when(customerService.getVersion()).thenReturn(5L, 6L);
+        final String etag = mockMvc.perform(get("/customers").accept(MediaType.APPLICATION_JSON))
+                                   .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        final MvcResult result = mockMvc.perform(get("/customers").header(HttpHeaders.IF_NONE_MATCH, etag))
+                                        .andExpect(status().isOk())
+                                        .andExpect(content().json(testCustomersJson()))
+                                        .andReturn();
+        assertNotEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void getCustomers_withoutAcceptHeader_shouldReturnCustomersAsJson() throws Exception {
+        mockMvc.perform(get("/customers"))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+               .andExpect(content().json(testCustomersJson()));
+    }
+
+    @Test
+    public void getCustomers_withLimit_shouldReturnPageAndNextLink_withOkStatus() throws Exception {
+        final List<Customer> page = testCustomers().subList(0, 2);
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, 2)).thenReturn(new CustomerPage(page, OptionalLong.of(2)));
+        mockMvc.perform(get("/customers").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(page)))
+               .andExpect(header().string("Link", "<http://localhost:8080/customers?limit=2&after=2>; rel=\"next\""))
+               .andDo(document(
+                   "{class_name}/get_customers_page_ok",
+                   requestParameters(
+                       parameterWithName("limit")
+                           .description("The maximum number of customers to return, at most "
+                                        + CustomerController.MAX_PAGE_SIZE),
+                       parameterWithName("after")
+                           .description("The cursor of the previous page; omit to start at the first customer")
+                           .optional()),
+                   responseHeaders(
+                       headerWithName("Link")
+                           .description("The URI of the next page; absent on the last page"))));
+    }
+
+    @Test
+    public void getCustomers_withLimitOnLastPage_shouldNotReturnNextLink() throws Exception {
+        final List<Customer> page = testCustomers().subList(2, 3);
+        when(customerService.getCustomers(CustomerFilter.NONE, 2, 2)).thenReturn(new CustomerPage(page, OptionalLong.empty()));
+        mockMvc.perform(get("/customers").param("limit", "2").param("after", "2").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(page)))
+               .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    public void getCustomers_withFilter_shouldReturnMatchingCustomers_withOkStatus() throws Exception {
+        final List<Customer> matching = testCustomers().subList(1, 2);
+        when(customerService.getCustomers(CustomerFilter.of(2, "mail.com"))).thenReturn(matching);
+        mockMvc.perform(get("/customers").param("category", "2").param("mailDomain", "Mail.com")
+                                         .accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(matching)))
+               .andDo(document(
+                   "{class_name}/get_customers_filtered_ok",
+                   requestParameters(
+                       parameterWithName("category")
+                           .description("Only return customers of this category")
+                           .optional(),
+                       parameterWithName("mailDomain")
+                           .description("Only return customers whose mail address belongs to this domain, "
+                                        + "ignoring case")
+                           .optional())));
+    }
+
+    @Test
+    public void getCustomers_withInvalidLimit_shouldReturnBadRequestStatus() throws Exception {
+        mockMvc.perform(get("/customers").param("limit", "0").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchCustomers_byPrefix_shouldReturnMatchingCustomers_withOkStatus() throws Exception {
+        when(customerService.searchCustomersByPrefix("Cust", 2)).thenReturn(testCustomers().subList(0, 2));
+        mockMvc.perform(get("/customers/search").param("prefix", "Cust").param("limit", "2")
+                                                .accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(testCustomers().subList(0, 2))))
+               .andDo(document(
+                   "{class_name}/search_customers_prefix_ok",
+                   requestParameters(
+                       parameterWithName("prefix")
+                           .description("Only return customers whose name starts with this prefix, ignoring case"),
+                       parameterWithName("limit")
+                           .description("The maximum number of customers to return, ordered by name; 10 by "
+                                        + "default, at most " + CustomerController.MAX_PAGE_SIZE)
+                           .optional())));
+    }
+
+    @Test
+    public void searchCustomers_byName_shouldReturnClosestCustomers_withOkStatus() throws Exception {
+        final List<CustomerMatch> matches = Arrays.asList(new CustomerMatch(testCustomers().get(0), 1),
+                                                          new CustomerMatch(testCustomers().get(1), 2));
+        when(customerService.searchCustomersByName("custmoerA", 2, 10)).thenReturn(matches);
+        mockMvc.perform(get("/customers/search").param("q", "custmoerA").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(matches)))
+               .andDo(document(
+                   "{class_name}/search_customers_fuzzy_ok",
+                   requestParameters(
+                       parameterWithName("q")
+                           .description("The name of the customer, possibly misspelled; case is ignored"),
+                       parameterWithName("distance")
+                           .description("The maximum number of inserted, deleted, replaced or swapped adjacent "
+                                        + "characters; 2 by default, at most " + CustomerService.MAX_SEARCH_DISTANCE)
+                           .optional(),
+                       parameterWithName("limit")
+                           .description("The maximum number of customers to return, the closest first; 10 by "
+                                        + "default, at most " + CustomerController.MAX_PAGE_SIZE)
+                           .optional()),
+                   responseFields(
+                       subsectionWithPath("[].customer").description("The matching customer"),
+                       fieldWithPath("[].distance")
+                           .description("The number of edits between the name of the customer and the query"))));
+    }
+
+    @Test
+    public void searchCustomers_byName_withInvalidDistance_shouldReturnBadRequestStatus() throws Exception {
+        mockMvc.perform(get("/customers/search").param("q", "customerA").param("distance", "3")
+                                                .accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/customers/search").param("q", "").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest());
+        verify(customerService, never()).searchCustomersByName(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void getCustomers_asNdjson_shouldStreamOneCustomerPerLine_withOkStatus() throws Exception {
+        doAnswer(invocation -> {
+            testCustomers().forEach(invocation.<Consumer<Customer>>getArgument(0));
+            return null;
+        }).when(customerService).forEachCustomer(any());
+        final MvcResult result = mockMvc.perform(get("/customers").accept(CustomerController.APPLICATION_NDJSON_VALUE))
+                                        .andExpect(request().asyncStarted())
+                                        .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().contentType(CustomerController.APPLICATION_NDJSON_VALUE))
+               .andExpect(content().string(testCustomersNdjson()))
+               .andDo(document("{class_name}/get_customers_ndjson_ok"));
+    }
+
     @Test
     public void getCustomer_whenExists_shouldReturnCustomerAsJson_withOkStatus() throws Exception {
-        when(customerService.getCustomer("customerA")).thenReturn(Optional.of(testCustomer()));
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.of(testVersionedCustomer()));
         mockMvc.perform(get("/customers/{name}", "customerA").accept(MediaType.APPLICATION_JSON))
                .andExpect(status().isOk())
+               .andExpect(header().exists(HttpHeaders.ETAG))
                .andExpect(content().json(testCustomerJson()))
                .andDo(document(
                    "{class_name}/get_customer_ok",
@@ -79,7 +286,7 @@ public class CustomerControllerTest {
 
     @Test
     public void getCustomer_whenNotExists_shouldReturnErrorResponse_withNotFoundStatus() throws Exception {
-        when(customerService.getCustomer("customerA")).thenReturn(Optional.empty());
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.empty());
         mockMvc.perform(get("/customers/{name}", "customerA").accept(MediaType.APPLICATION_JSON))
                .andExpect(status().isNotFound())
                .andExpect(content().json(notFoundResponseJson()))
@@ -89,6 +296,62 @@ public class CustomerControllerTest {
                        parameterWithName("name").description("The name of the customer that is requested"))));
     }
 
+    @Test
+    public void getCustomer_withCurrentETag_shouldReturnNotModifiedStatus() throws Exception {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.of(testVersionedCustomer()));
+        final String etag = customerETag();
+        mockMvc.perform(get("/customers/{name}", "customerA").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+               .andExpect(status().isNotModified())
+               .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getCustomer_asSmile_shouldReturnSmileWithItsOwnETag_withOkStatus() throws Exception {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.of(testVersionedCustomer()));
+        final MvcResult result =
+            mockMvc.perform(get("/customers/{name}", "customerA").accept(BinaryFormat.SMILE_VALUE))
+                   .andExpect(status().isOk())
+                   .andExpect(content().contentType(BinaryFormat.SMILE_VALUE))
+                   .andExpect(content().bytes(BinaryFormat.SMILE.writeCustomer(testCustomer())))
+                   .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                   .andDo(document(
+                       "{class_name}/get_customer_smile",
+                       preprocessResponse(binaryContent()),
+                       requestHeaders(
+                           headerWithName(HttpHeaders.ACCEPT)
+                               .description("application/x-jackson-smile, application/cbor or "
+                                            + "application/x-protobuf instead of JSON"))))
+                   .andReturn();
+        assertNotEquals(customerETag(), result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void getCustomer_whenNotExists_asProtobuf_shouldReturnProtobufErrorResponse_withNotFoundStatus()
+        throws Exception {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.empty());
+        final ErrorResponse response = new ErrorResponse("A customer with name customerA does not exist",
+                                                         NOT_FOUND_HINT);
+        mockMvc.perform(get("/customers/{name}", "customerA").accept(BinaryFormat.PROTOBUF_VALUE))
+               .andExpect(status().isNotFound())
+               .andExpect(content().contentType(BinaryFormat.PROTOBUF_VALUE))
+               .andExpect(content().bytes(BinaryFormat.PROTOBUF.writeError(response)));
+    }
+
+    @Test
+    public void getCustomers_asProtobuf_shouldReturnCustomerList_withOkStatus() throws Exception {
+        final MvcResult result = mockMvc.perform(get("/customers").accept(BinaryFormat.PROTOBUF_VALUE))
+                                        .andExpect(status().isOk())
+                                        .andExpect(content().contentType(BinaryFormat.PROTOBUF_VALUE))
+                                        .andDo(document("{class_name}/get_customers_protobuf",
+                                                        preprocessResponse(binaryContent())))
+                                        .andReturn();
+        final List<Customer> customers =
+            BinaryFormat.PROTOBUF.readCustomers(result.getResponse().getContentAsByteArray());
+        assertEquals(testCustomers().size(), customers.size());
+        assertEquals("customerC", customers.get(2).getName());
+        assertEquals(3, customers.get(2).getCategory());
+    }
+
     @Test
     public void addCustomer_whenNotExists_shouldReturnCreatedStatus() throws Exception {
         doNothing().when(customerService).addCustomer(any());
@@ -97,6 +360,15 @@ public class CustomerControllerTest {
                .andDo(document("{class_name}/post_customer_created"));
     }
 
+    @Test
+    public void addCustomer_asCbor_shouldAddDecodedCustomer_withCreatedStatus() throws Exception {
+        mockMvc.perform(post("/customers").content(BinaryFormat.CBOR.writeCustomer(testCustomer()))
+                                          .contentType(BinaryFormat.CBOR_VALUE))
+               .andExpect(status().isCreated())
+               .andDo(document("{class_name}/post_customer_cbor", preprocessRequest(binaryContent())));
+        verify(customerService).addCustomer(argThat(customer -> customer.getMailAddress().equals("example@mail.com")));
+    }
+
     @Test
     public void addCustomer_whenAlreadyExists_shouldReturnErrorResponse_withConflictStatus() throws Exception {
         final String message = "A customer with name customerA already exists";
@@ -107,6 +379,90 @@ public class CustomerControllerTest {
                .andDo(document("{class_name}/post_customer_conflict"));
     }
 
+    @Test
+    public void addCustomer_whenTooLarge_shouldReturnErrorResponse_withBadRequestStatus() throws Exception {
+        doThrow(CustomerTooLargeException.withLimit(Customer.MAX_FIELD_BYTES)).when(customerService).addCustomer(any());
+        mockMvc.perform(post("/customers").content(testCustomerJson()).contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest())
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(new ErrorResponse(
+                   CustomerTooLargeException.message(Customer.MAX_FIELD_BYTES), TOO_LARGE_HINT))));
+    }
+
+    @Test
+    public void importCustomers_withJsonArray_shouldImportEachCustomer_withOkStatus() throws Exception {
+        final List<Customer> imported = new ArrayList<>();
+        when(customerService.importCustomers(any(), eq(BatchImportMode.BEST_EFFORT)))
+            .thenAnswer(invocation -> drainIntoResult(invocation.getArgument(0), imported, true));
+        mockMvc.perform(post("/customers/batch").content(testCustomersJson()).contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.applied").value(true))
+               .andExpect(jsonPath("$.created").value(2))
+               .andExpect(jsonPath("$.errors[0].index").value(2))
+               .andDo(document(
+                   "{class_name}/post_customers_batch_ok",
+                   requestParameters(
+                       parameterWithName("mode")
+                           .description("BEST_EFFORT (default) to add every customer that does not conflict, "
+                                        + "ALL_OR_NOTHING to add the customers only if none of them conflicts")
+                           .optional()),
+                   responseFields(
+                       fieldWithPath("applied")
+                           .description("Whether the created customers have been kept"),
+                       fieldWithPath("created")
+                           .description("The number of customers that have been added"),
+                       fieldWithPath("conflicts")
+                           .description("The number of customers whose name already existed"),
+                       fieldWithPath("errors[].index")
+                           .description("The position of the conflicting customer in the request"),
+                       fieldWithPath("errors[].name")
+                           .description("The name of the conflicting customer"),
+                       fieldWithPath("errors[].reason")
+                           .description("Why the customer has not been added"))));
+        assertEquals(3, imported.size());
+        assertEquals("customerC", imported.get(2).getName());
+    }
+
+    @Test
+    public void importCustomers_withNdjson_shouldImportEachCustomer() throws Exception {
+        final List<Customer> imported = new ArrayList<>();
+        when(customerService.importCustomers(any(), eq(BatchImportMode.ALL_OR_NOTHING)))
+            .thenAnswer(invocation -> drainIntoResult(invocation.getArgument(0), imported, false));
+        mockMvc.perform(post("/customers/batch").param("mode", "ALL_OR_NOTHING")
+                                                .content(testCustomersNdjson())
+                                                .contentType(CustomerController.APPLICATION_NDJSON_VALUE))
+               .andExpect(status().isConflict())
+               .andExpect(jsonPath("$.applied").value(false))
+               .andDo(document(
+                   "{class_name}/post_customers_batch_conflict",
+                   responseFields(subsectionWithPath("errors").description("The conflicting customers"))
+                       .and(fieldWithPath("applied").ignored(),
+                            fieldWithPath("created").ignored(),
+                            fieldWithPath("conflicts").ignored())));
+        assertEquals(3, imported.size());
+    }
+
+    @Test
+    public void importCustomers_withMalformedJson_shouldReturnErrorResponse_withBadRequestStatus() throws Exception {
+        when(customerService.importCustomers(any(), any()))
+            .thenAnswer(invocation -> drainIntoResult(invocation.getArgument(0), new ArrayList<>(), true));
+        mockMvc.perform(post("/customers/batch").content("[{\"name\": ").contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isBadRequest())
+               .andExpect(jsonPath("$.reason").value(MalformedCustomerBatchException.message(0, 1)))
+               .andExpect(jsonPath("$.hint").value(MALFORMED_BATCH_HINT));
+    }
+
+    @Test
+    public void importCustomers_withMalformedNdjsonLine_shouldNameOnlyItsPosition() throws Exception {
+        when(customerService.importCustomers(any(), any()))
+            .thenAnswer(invocation -> drainIntoResult(invocation.getArgument(0), new ArrayList<>(), true));
+        mockMvc.perform(post("/customers/batch")
+                            .content("{\"name\":\"customerA\",\"mailAddress\":\"a@mail.com\",\"category\":1}\n"
+                                     + "{\"name\":\"customerB\",\"category\":\"secret\"}\n")
+                            .contentType(CustomerController.APPLICATION_NDJSON_VALUE))
+               .andExpect(status().isBadRequest())
+               .andExpect(jsonPath("$.reason").value(MalformedCustomerBatchException.message(1, 2)));
+    }
+
     @Test
     public void deleteCustomer_whenExists_shouldReturnOkStatus() throws Exception {
         doNothing().when(customerService).deleteCustomer("customerA");
@@ -131,10 +487,78 @@ public class CustomerControllerTest {
                        parameterWithName("name").description("The name of the customer that shall be deleted"))));
     }
 
+    @Test
+    public void deleteCustomer_withCurrentETag_shouldDeleteThatVersion() throws Exception {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.of(testVersionedCustomer()));
+        final String etag = customerETag();
+        mockMvc.perform(delete("/customers/{name}", "customerA").header(HttpHeaders.IF_MATCH, etag))
+               .andExpect(status().isOk())
+               .andDo(document(
+                   "{class_name}/delete_customer_conditional_ok",
+                   requestHeaders(
+                       headerWithName(HttpHeaders.IF_MATCH)
+                           .description("The ETag of the customer; the customer is only deleted if it is unchanged"))));
+        verify(customerService).deleteCustomer("customerA", Collections.singletonList(7L));
+        verify(customerService, never()).deleteCustomer("customerA");
+    }
+
+    @Test
+    public void deleteCustomer_withOutdatedETag_shouldReturnErrorResponse_withPreconditionFailedStatus()
+        throws Exception {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.of(testVersionedCustomer()));
+        final String etag = customerETag();
+        doThrow(new CustomerVersionMismatchException("The customer with name customerA has been modified"))
+            .when(customerService).deleteCustomer(eq("customerA"), any());
+        mockMvc.perform(delete("/customers/{name}", "customerA").header(HttpHeaders.IF_MATCH, etag))
+               .andExpect(status().isPreconditionFailed())
+               .andExpect(content().json(versionMismatchResponseJson()))
+               .andDo(document("{class_name}/delete_customer_precondition_failed"));
+    }
+
+    @Test
+    public void deleteCustomer_withForeignETag_shouldNotExpectAnyVersion() throws Exception {
+        mockMvc.perform(delete("/customers/{name}", "customerA").header(HttpHeaders.IF_MATCH, "\"foreign-7\""))
+               .andExpect(status().isOk());
+        verify(customerService).deleteCustomer("customerA", Collections.emptyList());
+    }
+
+    @Test
+    public void deleteCustomer_withAnyETag_shouldDeleteUnconditionally() throws Exception {
+        mockMvc.perform(delete("/customers/{name}", "customerA").header(HttpHeaders.IF_MATCH, "*"))
+               .andExpect(status().isOk());
+        verify(customerService).deleteCustomer("customerA");
+    }
+
+    private String customerETag() throws Exception {
+        return mockMvc.perform(get("/customers/{name}", "customerA"))
+                      .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Replaces binary bodies in the snippets by a placeholder; their size is in the Content-Length header.
+     */
+    private static OperationPreprocessor binaryContent() {
+        return new ContentModifyingOperationPreprocessor(
+            (content, contentType) -> ("<binary " + contentType + ">").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static BatchImportResult drainIntoResult(final Iterator<Customer> customers, final List<Customer> into,
+                                                     final boolean applied) {
+        customers.forEachRemaining(into::add);
+        final Customer last = into.get(into.size() - 1);
+        final BatchItemError error = new BatchItemError(into.size() - 1, last.getName(),
+                                                        "A customer with name " + last.getName() + " already exists");
+        return new BatchImportResult(applied, applied ? into.size() - 1 : 0, 1, Collections.singletonList(error));
+    }
+
     private static Customer testCustomer() {
         return new Customer("customerA", "example@mail.com", 1);
     }
 
+    private static VersionedCustomer testVersionedCustomer() {
+        return new VersionedCustomer(testCustomer(), 7);
+    }
+
     private static List<Customer> testCustomers() {
         final List<Customer> customers = new ArrayList<>();
         customers.add(new Customer("customerA", "example1@mail.com", 1));
@@ -153,6 +577,15 @@ public class CustomerControllerTest {
         return mapper.writeValueAsString(testCustomers());
     }
 
+    private static String testCustomersNdjson() throws JsonProcessingException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final StringBuilder ndjson = new StringBuilder();
+        for (final Customer customer : testCustomers()) {
+            ndjson.append(mapper.writeValueAsString(customer)).append('\n');
+        }
+        return ndjson.toString();
+    }
+
     private static String notFoundResponseJson() throws JsonProcessingException {
         final ObjectMapper mapper = new ObjectMapper();
         final String reason = "A customer with name customerA does not exist";
@@ -160,6 +593,13 @@ public class CustomerControllerTest {
         return mapper.writeValueAsString(response);
     }
 
+    private static String versionMismatchResponseJson() throws JsonProcessingException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final String reason = "The customer with name customerA has been modified";
+        final ErrorResponse response = new ErrorResponse(reason, VERSION_MISMATCH_HINT);
+        return mapper.writeValueAsString(response);
+    }
+
     private static String conflictResponseJson(final String reason) throws JsonProcessingException {
         final ObjectMapper mapper = new ObjectMapper();
         final ErrorResponse response = new ErrorResponse(reason, ALREADY_EXISTS_HINT);
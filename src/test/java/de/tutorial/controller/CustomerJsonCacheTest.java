@@ -0,0 +1,59 @@
+package de.tutorial.controller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+
+public class CustomerJsonCacheTest {
+    private static final byte[] JSON = new byte[100];
+
+    private final CustomerJsonCache cacheUnderTest = new CustomerJsonCache(16 * 1024, 1024);
+
+    @Test
+    public void getCustomer_withOtherVersion_shouldReturnNull() {
+        cacheUnderTest.putCustomer("customerA", 1, JSON);
+        assertArrayEquals(JSON, cacheUnderTest.getCustomer("customerA", 1));
+        assertNull(cacheUnderTest.getCustomer("customerA", 2));
+    }
+
+    @Test
+    public void customerRemoved_shouldDropCustomerAndList() {
+        cacheUnderTest.putCustomer("customerA", 1, JSON);
+        cacheUnderTest.putCustomers(5, JSON);
+        cacheUnderTest.customerRemoved(new Customer("customerA", "a@mail.com", 1));
+
+        assertNull(cacheUnderTest.getCustomer("customerA", 1));
+        assertNull(cacheUnderTest.getCustomers(5));
+        assertEquals(0, cacheUnderTest.customerBytes());
+    }
+
+    @Test
+    public void customerAdded_shouldDropList() {
+        cacheUnderTest.putCustomers(5, JSON);
+        cacheUnderTest.customerAdded(new Customer("customerA", "a@mail.com", 1));
+        assertNull(cacheUnderTest.getCustomers(5));
+    }
+
+    @Test
+    public void putCustomers_whenLargerThanBudget_shouldNotCache() {
+        cacheUnderTest.putCustomers(5, new byte[1025]);
+        assertNull(cacheUnderTest.getCustomers(5));
+    }
+
+    @Test
+    public void putCustomer_beyondBudget_shouldEvictLeastRecentlyReadFirst() {
+        for (int i = 0; i < 1000; i++) {
+            cacheUnderTest.putCustomer("customer" + i, i, JSON);
+            cacheUnderTest.getCustomer("customer0", 0);
+        }
+
+        assertTrue(cacheUnderTest.customerBytes() <= 16 * 1024);
+        assertArrayEquals(JSON, cacheUnderTest.getCustomer("customer0", 0));
+        assertNull(cacheUnderTest.getCustomer("customer1", 1));
+    }
+}
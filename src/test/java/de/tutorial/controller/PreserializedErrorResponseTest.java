@@ -0,0 +1,61 @@
+package de.tutorial.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.model.ErrorResponse;
+
+public class PreserializedErrorResponseTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void render_shouldMatchSerializedErrorResponse() throws Exception {
+        assertRendersLikeObjectMapper("A customer with name customer-A_1 does not exist", "Consider GET /customers");
+    }
+
+    @Test
+    public void render_withCharactersToEscape_shouldMatchSerializedErrorResponse() throws Exception {
+        assertRendersLikeObjectMapper("A customer with name \"Müller\\\n\u0001\" already exists", "hint \"quoted\" €");
+    }
+
+    @Test
+    public void render_forName_shouldMatchSerializedMessageOfTheName() throws Exception {
+        final PreserializedErrorResponse body =
+            PreserializedErrorResponse.forName(CustomerNotFoundException::message, "hint");
+
+        assertArrayEquals(serialized(CustomerNotFoundException.message("customer-A_1"), "hint"),
+                          body.render("customer-A_1"));
+        assertArrayEquals(serialized(CustomerNotFoundException.message("\"Müller\""), "hint"),
+                          body.render("\"Müller\""));
+    }
+
+    @Test
+    public void render_forNumber_shouldMatchSerializedMessageOfTheNumber() throws Exception {
+        final PreserializedErrorResponse body =
+            PreserializedErrorResponse.forNumber(CustomerTooLargeException::message, "hint");
+        final CustomerTooLargeException exception = CustomerTooLargeException.withLimit(42);
+
+        assertArrayEquals(serialized(exception.getMessage(), "hint"), body.render(exception.getLimit(), exception));
+    }
+
+    @Test
+    public void render_whenExceptionHasItsOwnMessage_shouldUseIt() throws Exception {
+        final PreserializedErrorResponse body =
+            PreserializedErrorResponse.forName(CustomerNotFoundException::message, "hint");
+        final CustomerNotFoundException exception = new CustomerNotFoundException("Gone \"for good\"");
+
+        assertArrayEquals(serialized("Gone \"for good\"", "hint"), body.render(exception.getName(), exception));
+    }
+
+    private byte[] serialized(final String reason, final String hint) throws Exception {
+        return objectMapper.writeValueAsBytes(new ErrorResponse(reason, hint));
+    }
+
+    private void assertRendersLikeObjectMapper(final String reason, final String hint) throws Exception {
+        assertArrayEquals(serialized(reason, hint), new PreserializedErrorResponse(hint).render(reason));
+    }
+}
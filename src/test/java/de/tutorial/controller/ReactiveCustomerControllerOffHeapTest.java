@@ -0,0 +1,50 @@
+package de.tutorial.controller;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.service.CustomerService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(ReactiveCustomerController.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, CodecsAutoConfiguration.class})
+@ActiveProfiles("reactive")
+@TestPropertySource(properties = "customer.store.off-heap=true")
+public class ReactiveCustomerControllerOffHeapTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    public void getCustomer_withOffHeapStore_shouldReadOffTheEventLoop() {
+        final AtomicReference<Thread> reader = new AtomicReference<>();
+        when(customerService.getVersionedCustomer("customerA")).thenAnswer(invocation -> {
+            reader.set(Thread.currentThread());
+            return Optional.of(new VersionedCustomer(new Customer("customerA", "customerA@mail.com", 1), 7));
+        });
+        webTestClient.get().uri("/customers/{name}", "customerA")
+                     .exchange()
+                     .expectStatus().isOk();
+
+        assertTrue(reader.get().getName().startsWith("elastic-"));
+    }
+}
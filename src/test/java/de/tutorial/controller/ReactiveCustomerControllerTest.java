@@ -0,0 +1,239 @@
+package de.tutorial.controller;
+
+import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.exception.MalformedCustomerBatchException;
+import de.tutorial.model.BatchImportResult;
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.service.CustomerService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+
+import static de.tutorial.controller.RestControllerExceptionHandler.NOT_FOUND_HINT;
+import static de.tutorial.controller.RestControllerExceptionHandler.VERSION_MISMATCH_HINT;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(ReactiveCustomerController.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, CodecsAutoConfiguration.class})
+@ActiveProfiles("reactive")
+public class ReactiveCustomerControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    public void getCustomer_whenExists_shouldReturnCustomerWithETag() {
+        when(customerService.getVersionedCustomer("customerA"))
+            .thenReturn(Optional.of(new VersionedCustomer(testCustomer("customerA"), 7)));
+        webTestClient.get().uri("/customers/{name}", "customerA")
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectHeader().valueMatches(HttpHeaders.ETAG, "\"[0-9a-z]+-7\"")
+                     .expectBody()
+                     .json("{\"name\":\"customerA\",\"mailAddress\":\"customerA@mail.com\",\"category\":1}");
+    }
+
+    @Test
+    public void getCustomer_whenNotExists_shouldReturnPreserializedNotFound() {
+        when(customerService.getVersionedCustomer("customerA")).thenReturn(Optional.empty());
+        webTestClient.get().uri("/customers/{name}", "customerA")
+                     .exchange()
+                     .expectStatus().isNotFound()
+                     .expectBody()
+                     .jsonPath("$.reason").isEqualTo("A customer with name customerA does not exist")
+                     .jsonPath("$.hint").isEqualTo(NOT_FOUND_HINT);
+    }
+
+    @Test
+    public void getCustomers_withLimit_shouldReturnPageAndNextLink() {
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, 1))
+            .thenReturn(new CustomerPage(Collections.singletonList(testCustomer("customerA")), OptionalLong.of(1)));
+        webTestClient.get().uri("http://localhost:8080/customers?limit=1")
+                     .accept(MediaType.APPLICATION_JSON)
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectHeader().valueEquals(HttpHeaders.LINK,
+                                                 "<http://localhost:8080/customers?limit=1&after=1>; rel=\"next\"")
+                     .expectBody().jsonPath("$[0].name").isEqualTo("customerA");
+    }
+
+    @Test
+    public void getCustomers_withoutLimit_shouldWriteEveryPageAsJsonArrayAndCacheIt() {
+        final int pageSize = ReactiveCustomerController.STREAM_PAGE_SIZE;
+        when(customerService.getVersion()).thenReturn(5L);
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, pageSize))
+            .thenReturn(new CustomerPage(Arrays.asList(testCustomer("customerA"), testCustomer("customerB")),
+                                         OptionalLong.of(2)));
+        when(customerService.getCustomers(CustomerFilter.NONE, 2, pageSize))
+            .thenReturn(new CustomerPage(Collections.singletonList(testCustomer("customerC")), OptionalLong.empty()));
+        final String expected = "[{\"name\":\"customerA\",\"mailAddress\":\"customerA@mail.com\",\"category\":1},"
+                                + "{\"name\":\"customerB\",\"mailAddress\":\"customerB@mail.com\",\"category\":1},"
+                                + "{\"name\":\"customerC\",\"mailAddress\":\"customerC@mail.com\",\"category\":1}]";
+
+        for (int request = 0; request < 2; request++) {
+            webTestClient.get().uri("/customers")
+                         .accept(MediaType.APPLICATION_JSON)
+                         .exchange()
+                         .expectStatus().isOk()
+                         .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8)
+                         .expectHeader().exists(HttpHeaders.ETAG)
+                         .expectBody(String.class).isEqualTo(expected);
+        }
+        verify(customerService, times(1)).getCustomers(CustomerFilter.NONE, 0, pageSize);
+    }
+
+    @Test
+    public void getCustomers_withoutCustomers_shouldReturnEmptyJsonArray() {
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, ReactiveCustomerController.STREAM_PAGE_SIZE))
+            .thenReturn(new CustomerPage(Collections.emptyList(), OptionalLong.empty()));
+        webTestClient.get().uri("/customers")
+                     .accept(MediaType.APPLICATION_JSON)
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectBody(String.class).isEqualTo("[]");
+    }
+
+    @Test
+    public void getCustomers_withCurrentETag_shouldReturnNotModified() {
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, ReactiveCustomerController.STREAM_PAGE_SIZE))
+            .thenReturn(new CustomerPage(Collections.emptyList(), OptionalLong.empty()));
+        final String etag = webTestClient.get().uri("/customers").accept(MediaType.APPLICATION_JSON)
+                                         .exchange()
+                                         .returnResult(String.class).getResponseHeaders().getETag();
+        webTestClient.get().uri("/customers")
+                     .accept(MediaType.APPLICATION_JSON)
+                     .header(HttpHeaders.IF_NONE_MATCH, etag)
+                     .exchange()
+                     .expectStatus().isNotModified();
+    }
+
+    @Test
+    public void streamCustomers_shouldWriteEveryPageAsNdjson() {
+        final int pageSize = ReactiveCustomerController.STREAM_PAGE_SIZE;
+        when(customerService.getCustomers(CustomerFilter.NONE, 0, pageSize))
+            .thenReturn(new CustomerPage(Arrays.asList(testCustomer("customerA"), testCustomer("customerB")),
+                                         OptionalLong.of(2)));
+        when(customerService.getCustomers(CustomerFilter.NONE, 2, pageSize))
+            .thenReturn(new CustomerPage(Collections.singletonList(testCustomer("customerC")), OptionalLong.empty()));
+        webTestClient.get().uri("/customers")
+                     .accept(MediaType.parseMediaType(CustomerController.APPLICATION_NDJSON_VALUE))
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectHeader().contentType(CustomerController.APPLICATION_NDJSON_VALUE)
+                     .expectBody(String.class).isEqualTo(
+                         "{\"name\":\"customerA\",\"mailAddress\":\"customerA@mail.com\",\"category\":1}\n"
+                         + "{\"name\":\"customerB\",\"mailAddress\":\"customerB@mail.com\",\"category\":1}\n"
+                         + "{\"name\":\"customerC\",\"mailAddress\":\"customerC@mail.com\",\"category\":1}\n");
+    }
+
+    @Test
+    public void addCustomer_whenDurable_shouldReturnCreatedStatus() {
+        when(customerService.addCustomerAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+        webTestClient.post().uri("/customers")
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .syncBody("{\"name\":\"customerA\",\"mailAddress\":\"customerA@mail.com\",\"category\":1}")
+                     .exchange()
+                     .expectStatus().isCreated();
+        verify(customerService).addCustomerAsync(argThat(customer -> customer.getName().equals("customerA")));
+    }
+
+    @Test
+    public void addCustomer_whenExists_shouldReturnConflictStatus() {
+        final CompletableFuture<Void> conflict = new CompletableFuture<>();
+        conflict.completeExceptionally(CustomerAlreadyExistsException.forName("customerA"));
+        when(customerService.addCustomerAsync(any())).thenReturn(conflict);
+        webTestClient.post().uri("/customers")
+                     .contentType(MediaType.APPLICATION_JSON)
+                     .syncBody("{\"name\":\"customerA\",\"mailAddress\":\"customerA@mail.com\",\"category\":1}")
+                     .exchange()
+                     .expectStatus().isEqualTo(409)
+                     .expectBody().jsonPath("$.reason").isEqualTo("A customer with name customerA already exists");
+    }
+
+    @Test
+    public void deleteCustomer_withOutdatedETag_shouldReturnPreconditionFailedStatus() {
+        final CompletableFuture<Void> mismatch = new CompletableFuture<>();
+        mismatch.completeExceptionally(CustomerVersionMismatchException.forName("customerA"));
+        when(customerService.deleteCustomerAsync(eq("customerA"), any())).thenReturn(mismatch);
+        webTestClient.delete().uri("/customers/{name}", "customerA")
+                     .header(HttpHeaders.IF_MATCH, "\"outdated-3\"")
+                     .exchange()
+                     .expectStatus().isEqualTo(412)
+                     .expectBody().jsonPath("$.hint").isEqualTo(VERSION_MISMATCH_HINT);
+    }
+
+    @Test
+    public void deleteCustomer_withoutIfMatch_shouldDeleteAnyVersion() {
+        when(customerService.deleteCustomerAsync("customerA", null))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        webTestClient.delete().uri("/customers/{name}", "customerA")
+                     .exchange()
+                     .expectStatus().isOk();
+    }
+
+    @Test
+    public void importCustomers_withNdjson_shouldImportEveryLine() throws Exception {
+        when(customerService.importCustomers(any(), any())).thenAnswer(invocation -> {
+            final Iterator<Customer> customers = invocation.getArgument(0);
+            long created = 0;
+            while (customers.hasNext()) {
+                customers.next();
+                created++;
+            }
+            return new BatchImportResult(true, created, 0, Collections.emptyList());
+        });
+        webTestClient.post().uri("/customers/batch")
+                     .contentType(MediaType.parseMediaType(CustomerController.APPLICATION_NDJSON_VALUE))
+                     .syncBody("{\"name\":\"customerA\",\"mailAddress\":\"a@mail.com\",\"category\":1}\n"
+                               + "{\"name\":\"customerB\",\"mailAddress\":\"b@mail.com\",\"category\":2}\n")
+                     .exchange()
+                     .expectStatus().isOk()
+                     .expectBody().jsonPath("$.created").isEqualTo(2);
+    }
+
+    @Test
+    public void importCustomers_withMalformedNdjsonLine_shouldNameOnlyItsPosition() throws Exception {
+        when(customerService.importCustomers(any(), any())).thenAnswer(invocation -> {
+            invocation.<Iterator<Customer>>getArgument(0).forEachRemaining(customer -> { });
+            return new BatchImportResult(true, 0, 0, Collections.emptyList());
+        });
+        webTestClient.post().uri("/customers/batch")
+                     .contentType(MediaType.parseMediaType(CustomerController.APPLICATION_NDJSON_VALUE))
+                     .syncBody("{\"name\":\"customerA\",\"mailAddress\":\"a@mail.com\",\"category\":1}\n"
+                               + "{\"name\":customerB}\n")
+                     .exchange()
+                     .expectStatus().isBadRequest()
+                     .expectBody().jsonPath("$.reason").isEqualTo(MalformedCustomerBatchException.message(1, 2));
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, name + "@mail.com", 1);
+    }
+}
@@ -0,0 +1,103 @@
+package de.tutorial.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.tutorial.exception.RequestRateLimitedException;
+import de.tutorial.exception.ServiceOverloadedException;
+import de.tutorial.model.Customer;
+import de.tutorial.model.ErrorResponse;
+import de.tutorial.model.VersionedCustomer;
+import de.tutorial.service.CustomerService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Optional;
+
+import static de.tutorial.controller.RestControllerExceptionHandler.OVERLOADED_HINT;
+import static de.tutorial.controller.RestControllerExceptionHandler.RATE_LIMITED_HINT;
+import static org.mockito.Mockito.when;
+import static org.springframework.restdocs.headers.HeaderDocumentation.headerWithName;
+import static org.springframework.restdocs.headers.HeaderDocumentation.responseHeaders;
+import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(CustomerController.class)
+@AutoConfigureRestDocs(outputDir = "target/snippets")
+@TestPropertySource(properties = {
+    "customer.limits.enabled=true",
+    "customer.limits.routes[0].method=GET",
+    "customer.limits.routes[0].path=/customers/{name}",
+    "customer.limits.routes[0].rate=0.01",
+    "customer.limits.routes[0].burst=1",
+    "customer.limits.routes[0].concurrency-limited=false",
+    "customer.limits.routes[1].path=/customers",
+    "customer.limits.concurrency.initial-limit=1",
+    "customer.limits.concurrency.min-limit=1",
+    "customer.limits.concurrency.max-limit=1"})
+public class RequestLimitInterceptorTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    public void getCustomer_aboveRateOfClient_shouldReturnErrorResponse_withTooManyRequestsStatus() throws Exception {
+        when(customerService.getVersionedCustomer("customerA"))
+            .thenReturn(Optional.of(new VersionedCustomer(new Customer("customerA", "example@mail.com", 1), 1)));
+        mockMvc.perform(get("/customers/{name}", "customerA").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk());
+
+        mockMvc.perform(get("/customers/{name}", "customerA").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"))
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(
+                   new ErrorResponse(RequestRateLimitedException.message(100), RATE_LIMITED_HINT))))
+               .andDo(document(
+                   "{class_name}/get_customer_too_many_requests",
+                   responseHeaders(
+                       headerWithName(HttpHeaders.RETRY_AFTER)
+                           .description("The seconds until the client may send the next request"))));
+        mockMvc.perform(get("/customers/{name}", "customerB").accept(MediaType.APPLICATION_JSON)
+                                                             .with(request -> {
+                                                                 request.setRemoteAddr("192.0.2.1");
+                                                                 return request;
+                                                             }))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getCustomers_aboveConcurrencyLimit_shouldReturnErrorResponse_withServiceUnavailableStatus()
+        throws Exception {
+        final MvcResult streaming = mockMvc.perform(get("/customers")
+                                                        .accept(CustomerController.APPLICATION_NDJSON_VALUE))
+                                           .andExpect(request().asyncStarted())
+                                           .andReturn();
+
+        mockMvc.perform(get("/customers").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+               .andExpect(content().json(new ObjectMapper().writeValueAsString(
+                   new ErrorResponse(ServiceOverloadedException.message(1), OVERLOADED_HINT))))
+               .andDo(document("{class_name}/get_customers_service_unavailable"));
+
+        mockMvc.perform(asyncDispatch(streaming)).andExpect(status().isOk());
+        mockMvc.perform(get("/customers").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk());
+    }
+}
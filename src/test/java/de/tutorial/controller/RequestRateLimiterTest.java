@@ -0,0 +1,57 @@
+package de.tutorial.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final RequestRateLimiter limiterUnderTest = new RequestRateLimiter(2, 3, 2);
+
+    @Test
+    public void tryAcquire_shouldAllowBurstAndThenRate() {
+        final long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiterUnderTest.tryAcquire("clientA", now));
+        }
+        assertEquals(SECOND / 2, limiterUnderTest.tryAcquire("clientA", now));
+        assertEquals(SECOND / 4, limiterUnderTest.tryAcquire("clientA", now + SECOND / 4));
+
+        assertEquals(0, limiterUnderTest.tryAcquire("clientA", now + SECOND / 2));
+        assertTrue(limiterUnderTest.tryAcquire("clientA", now + SECOND / 2) > 0);
+    }
+
+    @Test
+    public void tryAcquire_shouldLimitEveryClientOnItsOwn() {
+        final long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            limiterUnderTest.tryAcquire("clientA", now);
+        }
+
+        assertTrue(limiterUnderTest.tryAcquire("clientA", now) > 0);
+        assertEquals(0, limiterUnderTest.tryAcquire("clientB", now));
+    }
+
+    @Test
+    public void tryAcquire_withTooManyClients_shouldDropFullBuckets() {
+        final long now = System.nanoTime() + 2 * SECOND;
+        limiterUnderTest.tryAcquire("clientA", now - 2 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            limiterUnderTest.tryAcquire("clientB", now);
+        }
+
+        limiterUnderTest.tryAcquire("clientC", now);
+
+        assertEquals(2, limiterUnderTest.clients());
+        assertTrue(limiterUnderTest.tryAcquire("clientB", now) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withoutRate_shouldFail() {
+        new RequestRateLimiter(0, 1, 1);
+    }
+}
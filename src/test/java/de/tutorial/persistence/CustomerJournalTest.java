@@ -0,0 +1,243 @@
+package de.tutorial.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.tutorial.model.Customer;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.service.CustomerService;
+
+public class CustomerJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private InMemoryCustomerRepository repository;
+    private CustomerJournal journalUnderTest;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+        repository = new InMemoryCustomerRepository();
+        journalUnderTest = CustomerJournal.open(repository, directory, Duration.ZERO);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journalUnderTest.close();
+    }
+
+    @Test
+    public void open_shouldRecoverAddedAndRemovedCustomersFromLog() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repository.addIfAbsent(new Customer("customerB", null, 2));
+        repository.addIfAbsent(new Customer("customerC", "c@mail.com", 3));
+        repository.remove("customerA");
+
+        final InMemoryCustomerRepository recovered = reopen();
+        assertEquals(2, recovered.size());
+        assertFalse(recovered.findByName("customerA").isPresent());
+        assertNull(recovered.findByName("customerB").get().getMailAddress());
+        assertEquals(3, recovered.findByName("customerC").get().getCategory());
+        assertEquals("customerB", recovered.findAll().get(0).getName());
+    }
+
+    @Test
+    public void open_shouldRecoverFromSnapshotAndFollowingLog() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repository.addIfAbsent(new Customer("customerB", "b@mail.com", 2));
+        journalUnderTest.snapshot();
+        repository.remove("customerA");
+        repository.addIfAbsent(new Customer("customerA", "new@mail.com", 3));
+        repository.addIfAbsent(new Customer("customerC", "c@mail.com", 3));
+
+        final InMemoryCustomerRepository recovered = reopen();
+        assertEquals(3, recovered.size());
+        assertEquals("new@mail.com", recovered.findByName("customerA").get().getMailAddress());
+    }
+
+    @Test
+    public void snapshot_shouldDeleteSupersededFiles() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        journalUnderTest.snapshot();
+        repository.addIfAbsent(new Customer("customerB", "b@mail.com", 1));
+        journalUnderTest.snapshot();
+
+        assertEquals(1, files(".snapshot").size());
+        assertEquals(1, files(".wal").size());
+        assertEquals(2, reopen().size());
+    }
+
+    @Test
+    public void open_withTornRecordAtEndOfLog_shouldRecoverCompleteRecords() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repository.addIfAbsent(new Customer("customerB", "b@mail.com", 1));
+        journalUnderTest.awaitDurable();
+        journalUnderTest.close();
+        final Path segment = files(".wal").get(0);
+        final byte[] record = CustomerRecords.added(new Customer("customerC", "c@mail.com", 1));
+        Files.write(segment, new byte[] {record[0], record[1], record[2], record[3], record[4], record[5]},
+                    StandardOpenOption.APPEND);
+
+        final InMemoryCustomerRepository recovered = new InMemoryCustomerRepository();
+        journalUnderTest = CustomerJournal.open(recovered, directory, Duration.ZERO);
+        assertEquals(2, recovered.size());
+        assertFalse(recovered.findByName("customerC").isPresent());
+    }
+
+    @Test
+    public void open_withCorruptRecordInOlderSegment_shouldFail() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repository.addIfAbsent(new Customer("customerB", "b@mail.com", 1));
+        reopen().addIfAbsent(new Customer("customerC", "c@mail.com", 1));
+        journalUnderTest.awaitDurable();
+        journalUnderTest.close();
+        final List<Path> segments = files(".wal");
+        Collections.sort(segments);
+        corruptFirstRecord(segments.get(0));
+
+        assertRecoveryFails(segments.get(0));
+    }
+
+    @Test
+    public void open_withCorruptRecordFollowedByValidRecords_shouldFail() throws Exception {
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repository.addIfAbsent(new Customer("customerB", "b@mail.com", 1));
+        journalUnderTest.awaitDurable();
+        journalUnderTest.close();
+        final Path segment = files(".wal").get(0);
+        corruptFirstRecord(segment);
+
+        assertRecoveryFails(segment);
+    }
+
+    @Test
+    public void awaitDurable_withConcurrentWriters_shouldPersistEveryChange() throws Exception {
+        final CustomerService service = new CustomerService(repository, Optional.of(journalUnderTest));
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int threadIndex = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        service.addCustomer(new Customer(threadIndex + "-" + i, "mail@mail.com", 1));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(4000, reopen().size());
+    }
+
+    @Test
+    public void whenDurable_withConcurrentWriters_shouldCompleteOncePersisted() throws Exception {
+        final CustomerService service = new CustomerService(repository, Optional.of(journalUnderTest));
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            futures.add(service.addCustomerAsync(new Customer("async-" + i, "mail@mail.com", 1)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        assertTrue(journalUnderTest.whenDurable().isDone());
+
+        assertEquals(2000, reopen().size());
+    }
+
+    @Test
+    public void open_withLargestCustomersInSnapshotAndOlderSegment_shouldRecoverThem() throws Exception {
+        final String mailAddress = largestField("mail");
+        repository.addIfAbsent(new Customer(largestField("snapshot"), mailAddress, 1));
+        journalUnderTest.snapshot();
+        repository.addIfAbsent(new Customer(largestField("segment"), mailAddress, 2));
+        journalUnderTest.snapshot();
+        repository.addIfAbsent(new Customer(largestField("log"), mailAddress, 3));
+        repository.addIfAbsent(new Customer("customerA", "a@mail.com", 4));
+
+        final InMemoryCustomerRepository recovered = reopen();
+        assertEquals(4, recovered.size());
+        assertEquals(mailAddress, recovered.findByName(largestField("snapshot")).get().getMailAddress());
+        assertEquals(3, recovered.findByName(largestField("log")).get().getCategory());
+        assertEquals(4, recovered.findByName("customerA").get().getCategory());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void added_withPayloadOverRecoveryLimit_shouldFail() {
+        final char[] name = new char[CustomerRecords.MAX_PAYLOAD_SIZE];
+        Arrays.fill(name, 'x');
+        CustomerRecords.added(new Customer(new String(name), null, 1));
+    }
+
+    /**
+     * @return the prefix padded to {@link Customer#MAX_FIELD_BYTES} bytes of UTF-8
+     */
+    private static String largestField(final String prefix) {
+        final char[] field = new char[Customer.MAX_FIELD_BYTES];
+        Arrays.fill(field, 'x');
+        prefix.getChars(0, prefix.length(), field, 0);
+        return new String(field);
+    }
+
+    private void assertRecoveryFails(final Path corruptFile) {
+        try {
+            CustomerJournal.open(new InMemoryCustomerRepository(), directory, Duration.ZERO);
+            fail("Expected the recovery to fail");
+        } catch (final IOException exception) {
+            assertTrue(exception.getMessage().contains(corruptFile.toString()));
+        }
+    }
+
+    /**
+     * Flips a byte of the payload of the first record, which leaves its length intact.
+     */
+    private static void corruptFirstRecord(final Path file) throws IOException {
+        final byte[] content = Files.readAllBytes(file);
+        content[10] ^= 0x55;
+        Files.write(file, content);
+    }
+
+    private InMemoryCustomerRepository reopen() throws IOException {
+        journalUnderTest.close();
+        final InMemoryCustomerRepository recovered = new InMemoryCustomerRepository();
+        journalUnderTest = CustomerJournal.open(recovered, directory, Duration.ZERO);
+        return recovered;
+    }
+
+    private List<Path> files(final String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(extension)).collect(Collectors.toList());
+        }
+    }
+}
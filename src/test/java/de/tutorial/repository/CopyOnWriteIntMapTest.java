@@ -0,0 +1,54 @@
+package de.tutorial.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CopyOnWriteIntMapTest {
+
+    @Test
+    public void get_whenNotExists_shouldReturnNull() {
+        assertNull(new CopyOnWriteIntMap<String>().get(1));
+    }
+
+    @Test
+    public void computeIfAbsent_shouldOnlyCreateMissingValues() {
+        final CopyOnWriteIntMap<String> map = new CopyOnWriteIntMap<>();
+        final String created = map.computeIfAbsent(3, key -> "three");
+        assertSame(created, map.computeIfAbsent(3, key -> "other"));
+        assertSame(created, map.get(3));
+    }
+
+    @Test
+    public void computeIfAbsent_withManyKeys_shouldGrowAndKeepAllValues() {
+        final CopyOnWriteIntMap<Integer> map = new CopyOnWriteIntMap<>();
+        for (int key = -500; key < 500; key++) {
+            map.computeIfAbsent(key * 31, Integer::valueOf);
+        }
+        for (int key = -500; key < 500; key++) {
+            assertEquals(Integer.valueOf(key * 31), map.get(key * 31));
+        }
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void remove_shouldOnlyRemoveTheKey() {
+        final CopyOnWriteIntMap<Integer> map = new CopyOnWriteIntMap<>();
+        for (int key = 0; key < 100; key++) {
+            map.computeIfAbsent(key * 8, Integer::valueOf);
+        }
+
+        map.remove(40);
+        map.remove(1);
+
+        assertNull(map.get(40));
+        assertEquals(99, map.size());
+        for (int key = 0; key < 100; key++) {
+            if (key != 5) {
+                assertEquals(Integer.valueOf(key * 8), map.get(key * 8));
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package de.tutorial.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+
+public class InMemoryCustomerRepositoryTest {
+    private static final int THREADS = 8;
+    private static final int CUSTOMERS_PER_THREAD = 10_000;
+
+    private InMemoryCustomerRepository repositoryUnderTest;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        repositoryUnderTest = new InMemoryCustomerRepository();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void addIfAbsentVersioned_shouldReturnVersionOfAddedCustomer() {
+        final long version = repositoryUnderTest.addIfAbsentVersioned(testCustomer("customerA"));
+
+        assertEquals(version, repositoryUnderTest.findVersionedByName("customerA").get().getVersion());
+        assertEquals(CustomerRepository.NOT_ADDED, repositoryUnderTest.addIfAbsentVersioned(testCustomer("customerA")));
+        assertFalse(repositoryUnderTest.removeIf("customerA", current -> current != version).isPresent());
+    }
+
+    @Test
+    public void findAll_shouldReturnCustomersInInsertionOrder() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerC"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerB"));
+        repositoryUnderTest.remove("customerA");
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+
+        final List<Customer> customers = repositoryUnderTest.findAll();
+        assertEquals("customerC", customers.get(0).getName());
+        assertEquals("customerB", customers.get(1).getName());
+        assertEquals("customerA", customers.get(2).getName());
+    }
+
+    @Test
+    public void remove_lastCustomerOfCategoryOrMailDomain_shouldRemoveItsIndexBucket() {
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repositoryUnderTest.bindTo(registry);
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(new Customer("customerB", "b@other.com", 2));
+
+        repositoryUnderTest.remove("customerB");
+
+        assertEquals(1, registry.get("customer.index.buckets").tag("index", "category").gauge().value(), 0);
+        assertEquals(1, registry.get("customer.index.buckets").tag("index", "mailDomain").gauge().value(), 0);
+        assertTrue(repositoryUnderTest.findAll(CustomerFilter.of(2, null)).isEmpty());
+        repositoryUnderTest.addIfAbsent(new Customer("customerB", "b@other.com", 2));
+        assertEquals(1, repositoryUnderTest.findAll(CustomerFilter.of(2, null)).size());
+    }
+
+    @Test
+    public void findPage_shouldFollowCursorsUntilLastPage() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerB"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerC"));
+
+        final CustomerPage firstPage = repositoryUnderTest.findPage(CustomerFilter.NONE, 0, 2);
+        assertEquals(2, firstPage.getCustomers().size());
+        assertEquals("customerB", firstPage.getCustomers().get(1).getName());
+        assertTrue(firstPage.getNextCursor().isPresent());
+
+        final CustomerPage lastPage = repositoryUnderTest.findPage(CustomerFilter.NONE, firstPage.getNextCursor().getAsLong(), 2);
+        assertEquals(1, lastPage.getCustomers().size());
+        assertEquals("customerC", lastPage.getCustomers().get(0).getName());
+        assertFalse(lastPage.getNextCursor().isPresent());
+    }
+
+    @Test
+    public void findPage_whenCursorCustomerWasRemoved_shouldContinueAfterIt() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerB"));
+        final CustomerPage firstPage = repositoryUnderTest.findPage(CustomerFilter.NONE, 0, 1);
+        repositoryUnderTest.remove("customerA");
+
+        final CustomerPage nextPage = repositoryUnderTest.findPage(CustomerFilter.NONE, firstPage.getNextCursor().getAsLong(), 1);
+        assertEquals("customerB", nextPage.getCustomers().get(0).getName());
+    }
+
+    @Test
+    public void findAll_withCategory_shouldOnlyReturnCustomersOfThatCategory() {
+        repositoryUnderTest.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repositoryUnderTest.addIfAbsent(new Customer("customerB", "b@mail.com", 2));
+        repositoryUnderTest.addIfAbsent(new Customer("customerC", "c@mail.com", 1));
+
+        final List<Customer> customers = repositoryUnderTest.findAll(CustomerFilter.of(1, null));
+        assertEquals(2, customers.size());
+        assertEquals("customerA", customers.get(0).getName());
+        assertEquals("customerC", customers.get(1).getName());
+        assertTrue(repositoryUnderTest.findAll(CustomerFilter.of(3, null)).isEmpty());
+    }
+
+    @Test
+    public void findAll_withMailDomainAndCategory_shouldReturnCustomersMatchingBoth() {
+        repositoryUnderTest.addIfAbsent(new Customer("customerA", "a@Mail.com", 1));
+        repositoryUnderTest.addIfAbsent(new Customer("customerB", "b@other.com", 1));
+        repositoryUnderTest.addIfAbsent(new Customer("customerC", "c@mail.com", 2));
+        repositoryUnderTest.addIfAbsent(new Customer("customerD", "no-domain", 1));
+
+        final List<Customer> customers = repositoryUnderTest.findAll(CustomerFilter.of(1, "MAIL.com"));
+        assertEquals(1, customers.size());
+        assertEquals("customerA", customers.get(0).getName());
+        assertEquals(2, repositoryUnderTest.findAll(CustomerFilter.of(null, "mail.com")).size());
+    }
+
+    @Test
+    public void remove_shouldRemoveCustomerFromIndexes() {
+        repositoryUnderTest.addIfAbsent(new Customer("customerA", "a@mail.com", 1));
+        repositoryUnderTest.addIfAbsent(new Customer("customerB", "b@mail.com", 1));
+        repositoryUnderTest.remove("customerA");
+        repositoryUnderTest.remove("customerB");
+
+        assertTrue(repositoryUnderTest.findAll(CustomerFilter.of(1, null)).isEmpty());
+        assertTrue(repositoryUnderTest.findAll(CustomerFilter.of(null, "mail.com")).isEmpty());
+    }
+
+    @Test
+    public void findPage_withFilter_shouldOnlyPageThroughMatchingCustomers() {
+        for (int i = 0; i < 10; i++) {
+            repositoryUnderTest.addIfAbsent(new Customer("customer" + i, "c@mail.com", i % 2));
+        }
+
+        final CustomerPage firstPage = repositoryUnderTest.findPage(CustomerFilter.of(1, null), 0, 3);
+        assertEquals("customer5", firstPage.getCustomers().get(2).getName());
+        final CustomerPage lastPage = repositoryUnderTest.findPage(
+            CustomerFilter.of(1, null), firstPage.getNextCursor().getAsLong(), 3);
+        assertEquals(2, lastPage.getCustomers().size());
+        assertEquals("customer9", lastPage.getCustomers().get(1).getName());
+    }
+
+    @Test
+    public void addIfAbsent_withSameInstanceTwice_shouldOnlyAddOnce() {
+        final Customer customer = testCustomer("customerA");
+        assertTrue(repositoryUnderTest.addIfAbsent(customer));
+        assertFalse(repositoryUnderTest.addIfAbsent(customer));
+        assertEquals(1, repositoryUnderTest.size());
+    }
+
+    @Test
+    public void remove_whenNotExists_shouldReturnEmptyOptional() {
+        assertFalse(repositoryUnderTest.remove("customerA").isPresent());
+    }
+
+    @Test
+    public void version_shouldIncreaseWithEveryChangeOnly() {
+        final long initial = repositoryUnderTest.version();
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.remove("customerB");
+        assertEquals(initial + 1, repositoryUnderTest.version());
+        repositoryUnderTest.remove("customerA");
+        assertEquals(initial + 2, repositoryUnderTest.version());
+    }
+
+    @Test
+    public void findVersionedByName_whenAddedAgain_shouldReturnNewVersion() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        final long first = repositoryUnderTest.findVersionedByName("customerA").get().getVersion();
+        repositoryUnderTest.remove("customerA");
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        assertTrue(repositoryUnderTest.findVersionedByName("customerA").get().getVersion() != first);
+    }
+
+    @Test
+    public void removeIf_withOtherVersion_shouldKeepCustomer() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        final long version = repositoryUnderTest.findVersionedByName("customerA").get().getVersion();
+        final long versionOfRepository = repositoryUnderTest.version();
+
+        assertFalse(repositoryUnderTest.removeIf("customerA", other -> other == version + 1).isPresent());
+        assertEquals(versionOfRepository, repositoryUnderTest.version());
+        assertTrue(repositoryUnderTest.removeIf("customerA", current -> current == version).isPresent());
+        assertFalse(repositoryUnderTest.findByName("customerA").isPresent());
+    }
+
+    @Test
+    public void addIfAbsent_concurrentlyWithDistinctNames_shouldNotLoseUpdates() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < CUSTOMERS_PER_THREAD; i++) {
+                assertTrue(repositoryUnderTest.addIfAbsent(testCustomer(thread + "-" + i)));
+            }
+            return null;
+        });
+
+        assertEquals(THREADS * CUSTOMERS_PER_THREAD, repositoryUnderTest.size());
+        assertEquals(THREADS * CUSTOMERS_PER_THREAD, repositoryUnderTest.findAll().size());
+    }
+
+    @Test
+    public void addIfAbsent_concurrentlyWithSameNames_shouldAddEachNameExactlyOnce() throws Exception {
+        final List<Integer> addedPerThread = runConcurrently(thread -> {
+            int added = 0;
+            for (int i = 0; i < CUSTOMERS_PER_THREAD; i++) {
+                if (repositoryUnderTest.addIfAbsent(testCustomer("customer-" + i))) {
+                    added++;
+                }
+            }
+            return added;
+        });
+
+        assertEquals(CUSTOMERS_PER_THREAD, addedPerThread.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(CUSTOMERS_PER_THREAD, repositoryUnderTest.size());
+        assertEquals(CUSTOMERS_PER_THREAD, repositoryUnderTest.findAll().size());
+    }
+
+    @Test
+    public void addIfAbsentAndRemove_concurrentlyOnSameNames_shouldKeepIndexesConsistent() throws Exception {
+        final List<Integer> balancePerThread = runConcurrently(thread -> {
+            int balance = 0;
+            for (int i = 0; i < CUSTOMERS_PER_THREAD; i++) {
+                final String name = "customer-" + (i % 100);
+                if ((i + thread) % 2 == 0) {
+                    balance += repositoryUnderTest.addIfAbsent(testCustomer(name)) ? 1 : 0;
+                } else {
+                    balance -= repositoryUnderTest.remove(name).isPresent() ? 1 : 0;
+                }
+            }
+            return balance;
+        });
+
+        final int expectedSize = balancePerThread.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(expectedSize, repositoryUnderTest.size());
+        assertEquals(expectedSize, repositoryUnderTest.findAll().size());
+        repositoryUnderTest.findAll()
+                           .forEach(customer -> assertTrue(
+                               repositoryUnderTest.findByName(customer.getName()).isPresent()));
+        assertEquals(expectedSize, repositoryUnderTest.findAll(CustomerFilter.of(1, "mail.com")).size());
+    }
+
+    @Test
+    public void findAll_withManyShards_shouldMergeShardsInInsertionOrder() {
+        final InMemoryCustomerRepository sharded =
+            new InMemoryCustomerRepository(InMemoryCustomerRepository.MAX_SHARDS);
+        for (int i = 0; i < 1000; i++) {
+            sharded.addIfAbsent(new Customer("customer" + i, "c@mail.com", 1 + i % 3));
+        }
+
+        final List<Customer> customers = sharded.findAll();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("customer" + i, customers.get(i).getName());
+        }
+        final List<Customer> paged = new ArrayList<>();
+        long cursor = 0;
+        CustomerPage page;
+        do {
+            page = sharded.findPage(CustomerFilter.of(2, null), cursor, 7);
+            paged.addAll(page.getCustomers());
+            cursor = page.getNextCursor().orElse(-1);
+        } while (page.getNextCursor().isPresent());
+        assertEquals(sharded.findAll(CustomerFilter.of(2, null)), paged);
+        assertEquals(333, paged.size());
+        assertEquals("customer1", paged.get(0).getName());
+        assertEquals(1000, sharded.version());
+    }
+
+    @Test
+    public void findAll_withSingleShard_shouldReturnCustomersInInsertionOrder() {
+        final InMemoryCustomerRepository unsharded = new InMemoryCustomerRepository(1);
+        unsharded.addIfAbsent(testCustomer("customerB"));
+        unsharded.addIfAbsent(testCustomer("customerA"));
+
+        assertEquals(1, unsharded.getShardCount());
+        assertEquals("customerB", unsharded.findAll().get(0).getName());
+        assertEquals("customerA", unsharded.findAll().get(1).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_withTooManyShards_shouldFail() {
+        new InMemoryCustomerRepository(InMemoryCustomerRepository.MAX_SHARDS + 1);
+    }
+
+    private <T> List<T> runConcurrently(final ThreadTask<T> task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<T>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int threadIndex = thread;
+            final Callable<T> callable = () -> {
+                start.await();
+                return task.run(threadIndex);
+            };
+            futures.add(executor.submit(callable));
+        }
+        start.countDown();
+
+        final List<T> results = new ArrayList<>();
+        for (final Future<T> future : futures) {
+            results.add(future.get(60, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, "example@mail.com", 1);
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,172 @@
+package de.tutorial.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerFilter;
+import de.tutorial.model.CustomerPage;
+import de.tutorial.model.VersionedCustomer;
+
+public class OffHeapCustomerRepositoryTest {
+    private OffHeapCustomerRepository repositoryUnderTest;
+
+    @Before
+    public void setUp() {
+        repositoryUnderTest = new OffHeapCustomerRepository();
+    }
+
+    @Test
+    public void addIfAbsentVersioned_shouldReturnVersionOfAddedCustomer() {
+        final long version = repositoryUnderTest.addIfAbsentVersioned(testCustomer("customerA"));
+
+        assertEquals(version, repositoryUnderTest.findVersionedByName("customerA").get().getVersion());
+        assertEquals(CustomerRepository.NOT_ADDED, repositoryUnderTest.addIfAbsentVersioned(testCustomer("customerA")));
+        assertFalse(repositoryUnderTest.removeIf("customerA", current -> current != version).isPresent());
+    }
+
+    @Test
+    public void findByName_shouldMaterializeStoredCustomer() {
+        assertTrue(repositoryUnderTest.addIfAbsent(new Customer("Müller", "müller@mail.com", 2)));
+        assertTrue(repositoryUnderTest.addIfAbsent(new Customer("customerB", null, 3)));
+
+        final Customer customer = repositoryUnderTest.findByName("Müller").get();
+        assertEquals("Müller", customer.getName());
+        assertEquals("müller@mail.com", customer.getMailAddress());
+        assertEquals(2, customer.getCategory());
+        assertNull(repositoryUnderTest.findByName("customerB").get().getMailAddress());
+        assertFalse(repositoryUnderTest.findByName("customerC").isPresent());
+    }
+
+    @Test
+    public void addIfAbsent_whenAlreadyExists_shouldKeepFirstCustomer() {
+        assertTrue(repositoryUnderTest.addIfAbsent(new Customer("customerA", "first@mail.com", 1)));
+        assertFalse(repositoryUnderTest.addIfAbsent(new Customer("customerA", "second@mail.com", 1)));
+
+        assertEquals(1, repositoryUnderTest.size());
+        assertEquals("first@mail.com", repositoryUnderTest.findByName("customerA").get().getMailAddress());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addIfAbsent_withTooLongName_shouldFail() {
+        final StringBuilder name = new StringBuilder();
+        while (name.length() <= OffHeapCustomerRepository.MAX_STRING_BYTES) {
+            name.append("customer");
+        }
+        repositoryUnderTest.addIfAbsent(testCustomer(name.toString()));
+    }
+
+    @Test
+    public void findAll_shouldReturnCustomersInInsertionOrder() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerC"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        repositoryUnderTest.addIfAbsent(testCustomer("customerB"));
+        repositoryUnderTest.remove("customerA");
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+
+        final List<Customer> customers = repositoryUnderTest.findAll();
+        assertEquals(3, customers.size());
+        assertEquals("customerC", customers.get(0).getName());
+        assertEquals("customerB", customers.get(1).getName());
+        assertEquals("customerA", customers.get(2).getName());
+    }
+
+    @Test
+    public void findPage_withFilter_shouldOnlyPageThroughMatchingCustomers() {
+        for (int i = 0; i < 10; i++) {
+            repositoryUnderTest.addIfAbsent(new Customer("customer" + i, "c@mail.com", i % 2));
+        }
+
+        final CustomerPage firstPage = repositoryUnderTest.findPage(CustomerFilter.of(1, null), 0, 3);
+        assertEquals("customer5", firstPage.getCustomers().get(2).getName());
+        final CustomerPage lastPage = repositoryUnderTest.findPage(
+            CustomerFilter.of(1, null), firstPage.getNextCursor().getAsLong(), 3);
+        assertEquals(2, lastPage.getCustomers().size());
+        assertEquals("customer9", lastPage.getCustomers().get(1).getName());
+        assertFalse(lastPage.getNextCursor().isPresent());
+        assertEquals(5, repositoryUnderTest.findAll(CustomerFilter.of(0, "MAIL.com")).size());
+    }
+
+    @Test
+    public void removeIf_shouldOnlyRemoveExpectedVersion() {
+        repositoryUnderTest.addIfAbsent(testCustomer("customerA"));
+        final VersionedCustomer stored = repositoryUnderTest.findVersionedByName("customerA").get();
+        final long versionOfRepository = repositoryUnderTest.version();
+
+        assertFalse(repositoryUnderTest.removeIf("customerA", other -> other == stored.getVersion() + 1).isPresent());
+        assertEquals(versionOfRepository, repositoryUnderTest.version());
+        assertEquals("customerA", repositoryUnderTest.removeIf("customerA", current -> current == stored.getVersion())
+                                                     .get().getName());
+        assertEquals(versionOfRepository + 1, repositoryUnderTest.version());
+        assertFalse(repositoryUnderTest.findByName("customerA").isPresent());
+    }
+
+    @Test
+    public void remove_ofMostCustomers_shouldCompactSlabsAndKeepTheRest() {
+        final int customers = 50_000;
+        for (int i = 0; i < customers; i++) {
+            repositoryUnderTest.addIfAbsent(new Customer("customer" + i, "customer" + i + "@mail.com", 1 + i % 3));
+        }
+        final long allocated = repositoryUnderTest.allocatedBytes();
+        for (int i = 0; i < customers; i++) {
+            if (i % 10 != 0) {
+                repositoryUnderTest.remove("customer" + i);
+            }
+        }
+
+        assertTrue(repositoryUnderTest.allocatedBytes() < allocated);
+        assertEquals(customers / 10, repositoryUnderTest.size());
+        final List<Customer> remaining = new ArrayList<>();
+        repositoryUnderTest.forEach(remaining::add);
+        assertEquals(customers / 10, remaining.size());
+        for (int i = 0; i < remaining.size(); i++) {
+            assertEquals("customer" + i * 10, remaining.get(i).getName());
+            assertTrue(repositoryUnderTest.findByName("customer" + i * 10).isPresent());
+        }
+        assertTrue(repositoryUnderTest.addIfAbsent(testCustomer("customer1")));
+        assertEquals("customer1", repositoryUnderTest.findAll().get(customers / 10).getName());
+    }
+
+    @Test
+    public void addIfAbsent_concurrentlyWithSameNames_shouldAddEachNameExactlyOnce() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    int added = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        if (repositoryUnderTest.addIfAbsent(testCustomer("customer-" + i))) {
+                            added++;
+                        }
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for (final Future<Integer> future : futures) {
+                added += future.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(10_000, added);
+            assertEquals(10_000, repositoryUnderTest.findAll().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, "example@mail.com", 1);
+    }
+}
@@ -0,0 +1,158 @@
+package de.tutorial.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.tutorial.exception.CustomerChangesExpiredException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerChange;
+import de.tutorial.repository.InMemoryCustomerRepository;
+
+public class CustomerChangeFeedTest {
+    private CustomerService service;
+    private CustomerChangeFeed feedUnderTest;
+
+    @Before
+    public void setUp() {
+        service = new CustomerService(new InMemoryCustomerRepository());
+        feedUnderTest = new CustomerChangeFeed(service, 4);
+    }
+
+    @Test
+    public void getChanges_shouldReturnAddedAndDeletedCustomersInOrder() throws Exception {
+        final long start = feedUnderTest.getLastSequence();
+        service.addCustomer(testCustomer("customerA"));
+        service.addCustomer(testCustomer("customerB"));
+        service.deleteCustomer("customerA");
+
+        final List<CustomerChange> changes = feedUnderTest.getChanges(start, 10);
+        assertEquals(3, changes.size());
+        assertEquals(CustomerChange.Type.ADDED, changes.get(0).getType());
+        assertEquals("customerB", changes.get(1).getCustomer().getName());
+        assertEquals(CustomerChange.Type.REMOVED, changes.get(2).getType());
+        assertEquals("customerA", changes.get(2).getCustomer().getName());
+        assertEquals(start + 3, changes.get(2).getSequence());
+        assertEquals(start + 3, feedUnderTest.getLastSequence());
+        assertEquals(1, feedUnderTest.getChanges(start + 1, 1).size());
+        assertTrue(feedUnderTest.getChanges(start + 3, 10).isEmpty());
+    }
+
+    @Test
+    public void getChanges_afterRolledBackImport_shouldContainAdditionsAndRemovals() throws Exception {
+        service.addCustomer(testCustomer("customerB"));
+        final long start = feedUnderTest.getLastSequence();
+        service.importCustomers(Arrays.asList(testCustomer("customerA"), testCustomer("customerB")).iterator(),
+                                BatchImportMode.ALL_OR_NOTHING);
+
+        final List<CustomerChange> changes = feedUnderTest.getChanges(start, 10);
+        assertEquals(2, changes.size());
+        assertEquals(CustomerChange.Type.ADDED, changes.get(0).getType());
+        assertEquals(CustomerChange.Type.REMOVED, changes.get(1).getType());
+    }
+
+    @Test
+    public void getChanges_afterOverwrittenChange_shouldThrowException() throws Exception {
+        final long start = feedUnderTest.getLastSequence();
+        for (int i = 0; i < 5; i++) {
+            service.addCustomer(testCustomer("customer" + i));
+        }
+
+        assertEquals(4, feedUnderTest.getChanges(start + 1, 10).size());
+        assertExpired(start);
+    }
+
+    @Test
+    public void getChanges_afterUnknownSequence_shouldThrowException() throws Exception {
+        service.addCustomer(testCustomer("customerA"));
+
+        assertExpired(-1);
+        assertExpired(feedUnderTest.getLastSequence() + 1);
+    }
+
+    @Test
+    public void sequenceOf_withEventIdOfTheFeed_shouldReturnItsSequence() throws Exception {
+        service.addCustomer(testCustomer("customerA"));
+        final long sequence = feedUnderTest.getLastSequence();
+
+        assertEquals(sequence, feedUnderTest.sequenceOf(feedUnderTest.eventId(sequence)));
+    }
+
+    @Test
+    public void sequenceOf_withEventIdOfAnotherEpoch_shouldThrowException() throws Exception {
+        final String restarted = new CustomerChangeFeed(service, 4).eventId(0);
+        for (final String eventId : Arrays.asList(restarted, "0", "", feedUnderTest.eventId(0) + "x")) {
+            try {
+                feedUnderTest.sequenceOf(eventId);
+                fail("Expected the event id " + eventId + " to be unknown");
+            } catch (final CustomerChangesExpiredException exception) {
+                assertEquals(eventId, exception.getAfterEventId());
+            }
+        }
+    }
+
+    @Test
+    public void getChanges_afterConcurrentWritersOfAllShards_shouldReturnEveryChangeWithoutGap() throws Exception {
+        final CustomerChangeFeed feed = new CustomerChangeFeed(service, 1 << 14);
+        final long start = feed.getLastSequence();
+        final int writers = 8;
+        final int changesPerWriter = 1000;
+        final ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                final String prefix = "writer" + writer + "-";
+                futures.add(executor.submit(() -> {
+                    for (int index = 0; index < changesPerWriter; index++) {
+                        service.addCustomer(testCustomer(prefix + index));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(start + writers * changesPerWriter, feed.getLastSequence());
+        final List<CustomerChange> changes = feed.getChanges(start, writers * changesPerWriter);
+        assertEquals(writers * changesPerWriter, changes.size());
+        for (int index = 0; index < changes.size(); index++) {
+            assertEquals(start + 1 + index, changes.get(index).getSequence());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void new_withCapacityNotAPowerOfTwo_shouldFail() {
+        new CustomerChangeFeed(service, 100);
+    }
+
+    private void assertExpired(final long afterSequence) {
+        try {
+            feedUnderTest.getChanges(afterSequence, 10);
+            fail("Expected the changes after " + afterSequence + " to be expired");
+        } catch (final CustomerChangesExpiredException exception) {
+            assertEquals(CustomerChangesExpiredException.message(feedUnderTest.eventId(afterSequence)),
+                         exception.getMessage());
+            assertEquals(0, exception.getStackTrace().length);
+        }
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, "example@mail.com", 1);
+    }
+}
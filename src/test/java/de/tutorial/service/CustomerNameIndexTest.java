@@ -0,0 +1,108 @@
+package de.tutorial.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.repository.InMemoryCustomerRepository;
+
+public class CustomerNameIndexTest {
+    private InMemoryCustomerRepository repository;
+    private CustomerNameIndex indexUnderTest;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryCustomerRepository();
+        indexUnderTest = new CustomerNameIndex(repository::findByName);
+        repository.addListener(indexUnderTest);
+        for (final String name : new String[] {"Anna", "anne", "Annika", "Bernd", "Berta", "Hannah", "Johanna"}) {
+            repository.addIfAbsent(testCustomer(name));
+        }
+    }
+
+    @Test
+    public void findByPrefix_shouldReturnMatchingCustomersIgnoringCase_orderedByName() {
+        final List<Customer> actualCustomers = indexUnderTest.findByPrefix("ANN", 10);
+        assertEquals(3, actualCustomers.size());
+        assertEquals("Anna", actualCustomers.get(0).getName());
+        assertEquals("anne", actualCustomers.get(1).getName());
+        assertEquals("Annika", actualCustomers.get(2).getName());
+        assertEquals(2, indexUnderTest.findByPrefix("ann", 2).size());
+        assertTrue(indexUnderTest.findByPrefix("Anx", 10).isEmpty());
+        assertEquals(7, indexUnderTest.findByPrefix("", 10).size());
+    }
+
+    @Test
+    public void findByPrefix_withNamesDifferingInCase_shouldReturnBoth() {
+        repository.addIfAbsent(testCustomer("ANNA"));
+
+        assertEquals(2, indexUnderTest.findByPrefix("anna", 10).size());
+        assertEquals(7, indexUnderTest.size());
+    }
+
+    @Test
+    public void findSimilar_shouldReturnClosestCustomersFirst() {
+        final List<CustomerMatch> matches = indexUnderTest.findSimilar("Anan", 2, 10);
+        assertEquals(2, matches.size());
+        assertMatch("Anna", 1, matches.get(0));
+        assertMatch("anne", 2, matches.get(1));
+    }
+
+    @Test
+    public void findSimilar_shouldCountInsertionsDeletionsReplacementsAndSwapsAsOneEdit() {
+        assertMatch("Berta", 1, indexUnderTest.findSimilar("Bertha", 1, 1).get(0));
+        assertMatch("Berta", 1, indexUnderTest.findSimilar("Bert", 1, 1).get(0));
+        assertMatch("Berta", 1, indexUnderTest.findSimilar("Perta", 1, 1).get(0));
+        assertMatch("Berta", 1, indexUnderTest.findSimilar("Betra", 1, 1).get(0));
+        assertTrue(indexUnderTest.findSimilar("Brtea", 1, 10).isEmpty());
+    }
+
+    @Test
+    public void findSimilar_withLimit_shouldKeepTheClosestCustomers() {
+        final List<CustomerMatch> matches = indexUnderTest.findSimilar("hanah", 2, 1);
+        assertEquals(1, matches.size());
+        assertMatch("Hannah", 1, matches.get(0));
+    }
+
+    @Test
+    public void customerRemoved_shouldRemoveCustomerFromSearches() {
+        repository.remove("anne");
+
+        assertEquals(2, indexUnderTest.findByPrefix("ann", 10).size());
+        assertTrue(indexUnderTest.findSimilar("anne", 0, 10).isEmpty());
+        assertEquals(6, indexUnderTest.size());
+    }
+
+    @Test
+    public void findByPrefix_shouldReturnStoredCustomer() {
+        final Customer stored = repository.findByName("Bernd").get();
+
+        assertSame(stored, indexUnderTest.findByPrefix("bernd", 1).get(0));
+    }
+
+    @Test
+    public void findByPrefix_whenCustomerIsGoneFromStore_shouldSkipIt() {
+        final CustomerNameIndex detachedIndex = new CustomerNameIndex(name -> Optional.empty());
+        detachedIndex.customerAdded(testCustomer("Anna"));
+
+        assertTrue(detachedIndex.findByPrefix("anna", 10).isEmpty());
+        assertTrue(detachedIndex.findSimilar("anna", 0, 10).isEmpty());
+    }
+
+    private static void assertMatch(final String name, final int distance, final CustomerMatch match) {
+        assertEquals(name, match.getCustomer().getName());
+        assertEquals(distance, match.getDistance());
+    }
+
+    private static Customer testCustomer(final String name) {
+        return new Customer(name, "example@mail.com", 1);
+    }
+}
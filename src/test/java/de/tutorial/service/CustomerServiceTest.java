@@ -1,24 +1,40 @@
 package de.tutorial.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import de.tutorial.exception.CustomerAlreadyExistsException;
 import de.tutorial.exception.CustomerNotFoundException;
+import de.tutorial.exception.CustomerTooLargeException;
+import de.tutorial.exception.CustomerVersionMismatchException;
+import de.tutorial.model.BatchImportMode;
+import de.tutorial.model.BatchImportResult;
 import de.tutorial.model.Customer;
+import de.tutorial.model.CustomerMatch;
+import de.tutorial.repository.InMemoryCustomerRepository;
+import de.tutorial.repository.OffHeapCustomerRepository;
 
 public class CustomerServiceTest {
     private CustomerService serviceUnderTest;
 
     @Before
     public void setUp() {
-        serviceUnderTest = new CustomerService();
+        serviceUnderTest = new CustomerService(new InMemoryCustomerRepository());
     }
 
     @Test
@@ -62,6 +78,40 @@ public class CustomerServiceTest {
         serviceUnderTest.addCustomer(testCustomer("customerA", "example2@mail.com", 2));
     }
 
+    @Test
+    public void addCustomer_withNameAtLimit_shouldAdd() throws Exception {
+        final String name = repeat('\u00e9', Customer.MAX_FIELD_BYTES / 2);
+        serviceUnderTest.addCustomer(testCustomer(name, "example@mail.com", 1));
+        assertTrue(serviceUnderTest.getCustomer(name).isPresent());
+    }
+
+    @Test
+    public void addCustomer_withTooLongMailAddress_shouldThrowTooLarge_onEitherStore() throws Exception {
+        final String mailAddress = repeat('\u00e9', Customer.MAX_FIELD_BYTES / 2 + 1);
+        for (final CustomerService service : Arrays.asList(
+            serviceUnderTest, new CustomerService(new OffHeapCustomerRepository()))) {
+            try {
+                service.addCustomer(testCustomer("customerA", mailAddress, 1));
+                fail("Expected the customer to be rejected");
+            } catch (final CustomerTooLargeException expected) {
+                assertEquals(Customer.MAX_FIELD_BYTES, expected.getLimit());
+            }
+            assertFalse(service.getCustomer("customerA").isPresent());
+        }
+    }
+
+    @Test
+    public void addCustomerAsync_withTooLongName_shouldFailWithTooLarge() {
+        final String name = repeat('x', Customer.MAX_FIELD_BYTES + 1);
+        try {
+            serviceUnderTest.addCustomerAsync(testCustomer(name, "example@mail.com", 1)).get();
+            fail("Expected the customer to be rejected");
+        } catch (final InterruptedException | ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof CustomerTooLargeException);
+        }
+        assertEquals(0, serviceUnderTest.getCustomers().size());
+    }
+
     @Test
     public void getCustomer_whenNotExists_shouldReturnEmptyOptional() throws Exception {
         serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
@@ -87,6 +137,64 @@ public class CustomerServiceTest {
         serviceUnderTest.deleteCustomer("customerC");
     }
 
+    @Test
+    public void deleteCustomer_whenNotExists_shouldThrowStacklessExceptionWithMessage() {
+        try {
+            serviceUnderTest.deleteCustomer("customerC");
+            fail("Expected CustomerNotFoundException");
+        } catch (final CustomerNotFoundException expected) {
+            assertEquals("A customer with name customerC does not exist", expected.getMessage());
+            assertEquals(0, expected.getStackTrace().length);
+        }
+    }
+
+    @Test(expected = CustomerVersionMismatchException.class)
+    public void deleteCustomer_withOtherVersion_shouldThrowException() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
+        final long version = serviceUnderTest.getVersionedCustomer("customerA").get().getVersion();
+        serviceUnderTest.deleteCustomer("customerA", Collections.singletonList(version + 1));
+    }
+
+    @Test
+    public void deleteCustomer_withCurrentVersion_shouldDeleteTheCustomer() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
+        final long version = serviceUnderTest.getVersionedCustomer("customerA").get().getVersion();
+        final long versionOfAll = serviceUnderTest.getVersion();
+        serviceUnderTest.deleteCustomer("customerA", Arrays.asList(version - 1, version));
+        assertFalse(serviceUnderTest.getCustomer("customerA").isPresent());
+        assertTrue(serviceUnderTest.getVersion() > versionOfAll);
+    }
+
+    @Test
+    public void addCustomerAsync_withSameName_shouldCompleteExceptionally() throws Exception {
+        serviceUnderTest.addCustomerAsync(testCustomer("customerA", "example1@mail.com", 1)).get();
+        final CompletableFuture<Void> conflict =
+            serviceUnderTest.addCustomerAsync(testCustomer("customerA", "example2@mail.com", 2));
+        try {
+            conflict.get();
+            fail("Expected a conflict");
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof CustomerAlreadyExistsException);
+        }
+        assertEquals("example1@mail.com", serviceUnderTest.getCustomer("customerA").get().getMailAddress());
+    }
+
+    @Test
+    public void deleteCustomerAsync_withOtherVersion_shouldCompleteWithVersionMismatch() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
+        final long version = serviceUnderTest.getVersionedCustomer("customerA").get().getVersion();
+        final CompletableFuture<Void> mismatch =
+            serviceUnderTest.deleteCustomerAsync("customerA", Collections.singletonList(version + 1));
+        try {
+            mismatch.get();
+            fail("Expected a version mismatch");
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof CustomerVersionMismatchException);
+        }
+        serviceUnderTest.deleteCustomerAsync("customerA", null).get();
+        assertFalse(serviceUnderTest.getCustomer("customerA").isPresent());
+    }
+
     @Test
     public void deleteCustomer_whenExists_shouldDeleteTheCustomer() throws Exception {
         serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
@@ -96,6 +204,218 @@ public class CustomerServiceTest {
         assertFalse(customer.isPresent());
     }
 
+    @Test
+    public void importCustomers_bestEffort_shouldAddAllButConflictingCustomers() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerB", "example@mail.com", 1));
+        final BatchImportResult result = serviceUnderTest.importCustomers(
+            testCustomers("customerA", "customerB", "customerC", "customerA"), BatchImportMode.BEST_EFFORT);
+
+        assertTrue(result.isApplied());
+        assertEquals(2, result.getCreated());
+        assertEquals(2, result.getConflicts());
+        assertEquals(1, result.getErrors().get(0).getIndex());
+        assertEquals("customerB", result.getErrors().get(0).getName());
+        assertEquals(3, result.getErrors().get(1).getIndex());
+        assertEquals(3, serviceUnderTest.getCustomers().size());
+    }
+
+    @Test
+    public void importCustomers_allOrNothing_withoutConflicts_shouldAddAllCustomers() throws Exception {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < CustomerService.IMPORT_BATCH_SIZE * 2 + 1; i++) {
+            names.add("customer" + i);
+        }
+        final BatchImportResult result = serviceUnderTest.importCustomers(
+            testCustomers(names.toArray(new String[0])), BatchImportMode.ALL_OR_NOTHING);
+
+        assertTrue(result.isApplied());
+        assertEquals(names.size(), result.getCreated());
+        assertEquals(names.size(), serviceUnderTest.getCustomers().size());
+    }
+
+    @Test
+    public void importCustomers_allOrNothing_withConflict_shouldAddNothingAndReportAllConflicts() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerB", "example@mail.com", 1));
+        final BatchImportResult result = serviceUnderTest.importCustomers(
+            testCustomers("customerA", "customerB", "customerC", "customerC", "customerA"),
+            BatchImportMode.ALL_OR_NOTHING);
+
+        assertFalse(result.isApplied());
+        assertEquals(0, result.getCreated());
+        assertEquals(3, result.getConflicts());
+        assertEquals(1, serviceUnderTest.getCustomers().size());
+        assertFalse(serviceUnderTest.getCustomer("customerA").isPresent());
+    }
+
+    @Test
+    public void importCustomers_allOrNothing_whenReadingFails_shouldAddNothing() throws Exception {
+        final Iterator<Customer> failing = new Iterator<Customer>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Customer next() {
+                if (read == 2) {
+                    throw new IllegalStateException("malformed input");
+                }
+                return testCustomer("customer" + read++, "example@mail.com", 1);
+            }
+        };
+        try {
+            serviceUnderTest.importCustomers(failing, BatchImportMode.ALL_OR_NOTHING);
+        } catch (final IllegalStateException expected) {
+            assertEquals(0, serviceUnderTest.getCustomers().size());
+            return;
+        }
+        throw new AssertionError("Expected the import to fail");
+    }
+
+    @Test
+    public void searchCustomers_shouldFindAddedAndNotDeletedCustomers() throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
+        serviceUnderTest.addCustomer(testCustomer("customerB", "example2@mail.com", 2));
+        serviceUnderTest.addCustomer(testCustomer("other", "example3@mail.com", 3));
+        serviceUnderTest.deleteCustomer("customerB");
+
+        final List<Customer> byPrefix = serviceUnderTest.searchCustomersByPrefix("CUST", 10);
+        assertEquals(1, byPrefix.size());
+        assertEquals("customerA", byPrefix.get(0).getName());
+        final List<CustomerMatch> byName = serviceUnderTest.searchCustomersByName("custmoerB", 2, 10);
+        assertEquals(1, byName.size());
+        assertEquals("customerA", byName.get(0).getCustomer().getName());
+        assertEquals(2, byName.get(0).getDistance());
+    }
+
+    @Test
+    public void searchCustomers_shouldFindCustomersStoredBeforeTheService() throws Exception {
+        final InMemoryCustomerRepository repository = new InMemoryCustomerRepository();
+        repository.addIfAbsent(testCustomer("customerA", "example1@mail.com", 1));
+
+        final List<Customer> actualCustomers = new CustomerService(repository).searchCustomersByPrefix("c", 10);
+        assertEquals(1, actualCustomers.size());
+    }
+
+    @Test
+    public void addAndDeleteCustomer_withWriteBatches_shouldThrowSameExceptions() throws Exception {
+        final CustomerService batchingService =
+            new CustomerService(new InMemoryCustomerRepository(), Optional.empty(), new SimpleMeterRegistry(), 16);
+        try {
+            batchingService.addCustomer(testCustomer("customerA", "example1@mail.com", 1));
+            try {
+                batchingService.addCustomer(testCustomer("customerA", "example2@mail.com", 2));
+                fail("Expected a conflict");
+            } catch (final CustomerAlreadyExistsException expected) {
+                assertEquals(CustomerAlreadyExistsException.message("customerA"), expected.getMessage());
+            }
+            final long version = batchingService.getVersionedCustomer("customerA").get().getVersion();
+            try {
+                batchingService.deleteCustomer("customerA", Collections.singletonList(version + 1));
+                fail("Expected a version mismatch");
+            } catch (final CustomerVersionMismatchException expected) {
+                assertTrue(batchingService.getCustomer("customerA").isPresent());
+            }
+            batchingService.deleteCustomer("customerA");
+            assertFalse(batchingService.getCustomer("customerA").isPresent());
+            try {
+                batchingService.deleteCustomer("customerA");
+                fail("Expected the customer to be missing");
+            } catch (final CustomerNotFoundException expected) {
+                assertEquals(CustomerNotFoundException.message("customerA"), expected.getMessage());
+            }
+        } finally {
+            batchingService.close();
+        }
+    }
+
+    @Test
+    public void addCustomerAsync_withWriteBatches_shouldCompleteExceptionally() throws Exception {
+        final CustomerService batchingService =
+            new CustomerService(new InMemoryCustomerRepository(), Optional.empty(), new SimpleMeterRegistry(), 16);
+        try {
+            batchingService.addCustomerAsync(testCustomer("customerA", "example1@mail.com", 1)).get();
+            try {
+                batchingService.addCustomerAsync(testCustomer("customerA", "example2@mail.com", 2)).get();
+                fail("Expected a conflict");
+            } catch (final ExecutionException exception) {
+                assertTrue(exception.getCause() instanceof CustomerAlreadyExistsException);
+            }
+            batchingService.deleteCustomerAsync("customerA", null).get();
+            assertFalse(batchingService.getCustomer("customerA").isPresent());
+        } finally {
+            batchingService.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchCustomersByName_withTooLargeDistance_shouldFail() {
+        serviceUnderTest.searchCustomersByName("customerA", CustomerService.MAX_SEARCH_DISTANCE + 1, 10);
+    }
+
+    @Test
+    public void importCustomers_allOrNothing_whenImportedCustomerIsReplacedConcurrently_shouldKeepReplacement()
+        throws Exception {
+        serviceUnderTest.addCustomer(testCustomer("customerB", "example@mail.com", 1));
+        final Iterator<Customer> customers = new Iterator<Customer>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return read <= CustomerService.IMPORT_BATCH_SIZE;
+            }
+
+            @Override
+            public Customer next() {
+                if (read++ == 0) {
+                    return testCustomer("customerA", "imported@mail.com", 1);
+                }
+                if (read <= CustomerService.IMPORT_BATCH_SIZE) {
+                    return testCustomer("customer" + read, "example@mail.com", 1);
+                }
+                // the first batch has been added, so a concurrent request may replace customerA
+                try {
+                    serviceUnderTest.deleteCustomer("customerA");
+                    serviceUnderTest.addCustomer(testCustomer("customerA", "replacement@mail.com", 2));
+                } catch (final Exception exception) {
+                    throw new IllegalStateException(exception);
+                }
+                return testCustomer("customerB", "conflict@mail.com", 1);
+            }
+        };
+        final BatchImportResult result = serviceUnderTest.importCustomers(customers, BatchImportMode.ALL_OR_NOTHING);
+
+        assertFalse(result.isApplied());
+        assertEquals("replacement@mail.com", serviceUnderTest.getCustomer("customerA").get().getMailAddress());
+    }
+
+    @Test
+    public void importCustomers_allOrNothing_withTooLongName_shouldAddNothing() throws Exception {
+        final Iterator<Customer> customers = Arrays.asList(
+            testCustomer("customerA", "example@mail.com", 1),
+            testCustomer(repeat('x', Customer.MAX_FIELD_BYTES + 1), "example@mail.com", 1)).iterator();
+        try {
+            serviceUnderTest.importCustomers(customers, BatchImportMode.ALL_OR_NOTHING);
+            fail("Expected the import to be rejected");
+        } catch (final CustomerTooLargeException expected) {
+            assertEquals(0, serviceUnderTest.getCustomers().size());
+        }
+    }
+
+    private static String repeat(final char character, final int count) {
+        final char[] characters = new char[count];
+        Arrays.fill(characters, character);
+        return new String(characters);
+    }
+
+    private static Iterator<Customer> testCustomers(final String... names) {
+        final List<Customer> customers = new ArrayList<>();
+        Arrays.stream(names).forEach(name -> customers.add(testCustomer(name, "example@mail.com", 1)));
+        return customers.iterator();
+    }
+
     private static Customer testCustomer(final String name, final String mailAddress, final int category) {
         return new Customer(name, mailAddress, category);
     }
@@ -0,0 +1,126 @@
+package de.tutorial.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.tutorial.exception.CustomerAlreadyExistsException;
+import de.tutorial.exception.ServiceOverloadedException;
+
+public class CustomerWriteBatcherTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch firstWriteReleased = new CountDownLatch(1);
+    private final AtomicInteger durableRequests = new AtomicInteger();
+    private CompletableFuture<Void> durable;
+    private DistributionSummary batchSizes;
+    private CustomerWriteBatcher batcherUnderTest;
+
+    @Before
+    public void setUp() {
+        durable = new CompletableFuture<>();
+        batchSizes = DistributionSummary.builder("batch").register(new SimpleMeterRegistry());
+        batcherUnderTest = new CustomerWriteBatcher(4, () -> {
+            durableRequests.incrementAndGet();
+            return durable;
+        }, batchSizes);
+    }
+
+    @After
+    public void tearDown() {
+        firstWriteReleased.countDown();
+        durable.complete(null);
+        batcherUnderTest.close();
+    }
+
+    @Test
+    public void submit_whileWriterIsBusy_shouldApplyQueuedWritesInBatches() throws Exception {
+        final CompletableFuture<Void> first = batcherUnderTest.trySubmit(this::blockingWrite);
+        assertTrue(firstWriteStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final List<CompletableFuture<Void>> queued = new ArrayList<>();
+        for (int index = 0; index < 6; index++) {
+            queued.add(batcherUnderTest.trySubmit(() -> null));
+        }
+        firstWriteReleased.countDown();
+        durable.complete(null);
+
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (final CompletableFuture<Void> future : queued) {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(3, batchSizes.count());
+        assertEquals(4, batchSizes.max(), 0);
+        assertEquals(3, durableRequests.get());
+    }
+
+    @Test
+    public void submit_shouldCompleteOnlyOnceDurable() throws Exception {
+        final CompletableFuture<Void> applied = batcherUnderTest.submit(() -> null);
+        final CustomerAlreadyExistsException conflict = CustomerAlreadyExistsException.forName("customerA");
+        final CompletableFuture<Void> rejected = batcherUnderTest.submit(() -> conflict);
+
+        try {
+            rejected.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Expected a conflict");
+        } catch (final ExecutionException exception) {
+            assertSame(conflict, exception.getCause());
+        }
+        assertFalse(applied.isDone());
+        durable.complete(null);
+        applied.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void trySubmit_whenQueueIsFull_shouldRejectWithServiceOverloaded() throws Exception {
+        batcherUnderTest.trySubmit(this::blockingWrite);
+        assertTrue(firstWriteStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int index = 0; index < 4 * CustomerWriteBatcher.QUEUED_BATCHES; index++) {
+            assertFalse(batcherUnderTest.trySubmit(() -> null).isCompletedExceptionally());
+        }
+
+        final CompletableFuture<Void> rejected = batcherUnderTest.trySubmit(() -> null);
+        try {
+            rejected.get();
+            fail("Expected an overload");
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof ServiceOverloadedException);
+        }
+    }
+
+    @Test
+    public void close_shouldApplyQueuedWritesAndRejectLaterOnes() throws Exception {
+        durable.complete(null);
+        final CompletableFuture<Void> queued = batcherUnderTest.submit(() -> null);
+        batcherUnderTest.close();
+
+        queued.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(batcherUnderTest.trySubmit(() -> null).isCompletedExceptionally());
+    }
+
+    private Exception blockingWrite() {
+        firstWriteStarted.countDown();
+        try {
+            firstWriteReleased.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}